@@ -19,6 +19,10 @@ android {
         jvmTarget = JavaVersion.VERSION_11.toString()
     }
 
+    buildFeatures {
+        buildConfig = true
+    }
+
     defaultConfig {
         // TODO: Specify your own unique Application ID (https://developer.android.com/studio/build/application-id.html).
         applicationId = "com.example.grokscanner"
@@ -28,6 +32,9 @@ android {
         targetSdk = flutter.targetSdkVersion
         versionCode = flutter.versionCode
         versionName = flutter.versionName
+
+        // 是否收集扫描调试状态，生产版本关闭后扫描路径不做任何调试工作
+        buildConfigField("boolean", "SCAN_DEBUG_STATE", "true")
     }
 
     buildTypes {
@@ -35,6 +42,7 @@ android {
             // TODO: Add your own signing config for the release build.
             // Signing with the debug keys for now, so `flutter run --release` works.
             signingConfig = signingConfigs.getByName("debug")
+            buildConfigField("boolean", "SCAN_DEBUG_STATE", "false")
         }
     }
 }
@@ -42,3 +50,7 @@ android {
 flutter {
     source = "../.."
 }
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
@@ -0,0 +1,30 @@
+package com.example.grokscanner;
+
+import android.os.Bundle;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+import java.util.Collections;
+
+/**
+ * 以 Bundle 实现的 ScanExtras，可重复使用以避免每个广播创建新对象
+ */
+class BundleExtras implements ScanExtras {
+    private Bundle bundle;
+
+    BundleExtras wrap(Bundle bundle) {
+        this.bundle = bundle;
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Object get(String key) {
+        return bundle != null ? bundle.get(key) : null;
+    }
+
+    @Override
+    public Iterable<String> keys() {
+        return bundle != null ? bundle.keySet() : Collections.<String>emptySet();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.grokscanner;
+
+import android.app.Application;
+import android.util.Log;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.dart.DartExecutor;
+
+/**
+ * 应用启动入口
+ * 先启动扫描运行时 (读取器、广播接收器、扫描管线) 和班次中的扫描服务，再预热FlutterEngine并放入缓存，
+ * 冷启动后立即扫描的条码在Dart端监听前也不会丢失。
+ */
+public class GrokScannerApplication extends Application {
+    private static final String TAG = "GrokScanner";
+    /** FlutterEngineCache 中预热引擎的ID */
+    public static final String ENGINE_ID = "grokscanner_engine";
+
+    private ScannerRuntime scannerRuntime;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTimings startupTimings = new StartupTimings();
+        startupTimings.mark("applicationCreate");
+
+        // 扫描运行时不依赖Flutter，先于引擎启动；班次已结束 (下班) 时只初始化，不注册接收器
+        scannerRuntime = new ScannerRuntime(this, startupTimings);
+        scannerRuntime.prepare();
+        if (ScannerService.isShiftActive(this)) {
+            scannerRuntime.start();
+            ScannerService.resume(this);
+        }
+
+        // 预热引擎: 通道在执行Dart入口前设置，Dart端启动后即可监听
+        FlutterEngine engine = new FlutterEngine(this);
+        scannerRuntime.attachEngine(engine);
+        engine.getDartExecutor().executeDartEntrypoint(DartExecutor.DartEntrypoint.createDefault());
+        FlutterEngineCache.getInstance().put(ENGINE_ID, engine);
+        startupTimings.mark("engineWarmed");
+        Log.d(TAG, "Flutter engine pre-warmed: " + ENGINE_ID);
+    }
+
+    public ScannerRuntime getScannerRuntime() {
+        return scannerRuntime;
+    }
+}
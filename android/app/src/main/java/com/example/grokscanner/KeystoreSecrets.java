@@ -0,0 +1,111 @@
+package com.example.grokscanner;
+
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * 在 SharedPreferences 中保存加密的敏感字符串 (如上传的 Authorization)
+ * 密钥保存在 Android Keystore 中，不能导出；保存的值为 Base64(IV + AES-GCM密文)。
+ * Android 6.0 以下没有可用的 Keystore 对称密钥，不保存。
+ */
+class KeystoreSecrets {
+    private static final String TAG = "KeystoreSecrets";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final String alias;
+
+    /**
+     * @param alias Keystore 中的密钥别名，不存在时自动生成
+     */
+    KeystoreSecrets(String alias) {
+        this.alias = alias;
+    }
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    /**
+     * 读取并解密
+     * @return 明文，未保存或无法解密 (如密钥已被清除) 时返回null
+     */
+    String get(SharedPreferences preferences, String key) {
+        String stored = preferences.getString(key, null);
+        if (stored == null || !isSupported()) {
+            return null;
+        }
+        try {
+            byte[] data = Base64.decode(stored, Base64.NO_WRAP);
+            if (data.length <= IV_LENGTH) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getKey(), new GCMParameterSpec(TAG_BITS, data, 0, IV_LENGTH));
+            return new String(cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException | IOException e) {
+            Log.e(TAG, "Error decrypting " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 加密后写入，value为null时删除
+     * @return 是否已写入；加密失败或系统不支持时删除原有的值并返回false
+     */
+    boolean put(SharedPreferences.Editor editor, String key, String value) {
+        if (value == null || !isSupported()) {
+            editor.remove(key);
+            return value == null;
+        }
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            new SecureRandom().nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getKey(), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            byte[] data = new byte[IV_LENGTH + encrypted.length];
+            System.arraycopy(iv, 0, data, 0, IV_LENGTH);
+            System.arraycopy(encrypted, 0, data, IV_LENGTH, encrypted.length);
+            editor.putString(key, Base64.encodeToString(data, Base64.NO_WRAP));
+            return true;
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e(TAG, "Error encrypting " + key + ": " + e.getMessage());
+            editor.remove(key);
+            return false;
+        }
+    }
+
+    private SecretKey getKey() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        KeyStore.Entry entry = keyStore.getEntry(alias, null);
+        if (entry instanceof KeyStore.SecretKeyEntry) {
+            return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(alias, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.grokscanner;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.example.grokscanner.scan.FrameScheduler;
+
+/**
+ * 基于主线程Looper和Choreographer的调度器
+ */
+public class MainThreadScheduler implements FrameScheduler {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void postFrame(Runnable task) {
+        // Choreographer 只能在主线程获取
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Choreographer.getInstance().postFrameCallback(frameTimeNanos -> task.run());
+        } else {
+            mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> task.run()));
+        }
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        if (delayMs <= 0) {
+            mainHandler.post(task);
+        } else {
+            mainHandler.postDelayed(task, delayMs);
+        }
+    }
+}
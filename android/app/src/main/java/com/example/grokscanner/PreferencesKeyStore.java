@@ -0,0 +1,38 @@
+package com.example.grokscanner;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.grokscanner.scan.DataKeyResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用 SharedPreferences 保存已学习的条码数据键
+ */
+class PreferencesKeyStore implements DataKeyResolver.Store {
+    private static final String PREFS_NAME = "scan_data_keys";
+
+    private final SharedPreferences preferences;
+
+    PreferencesKeyStore(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public Map<String, String> load() {
+        Map<String, String> keys = new HashMap<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                keys.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void save(String cacheKey, String dataKey) {
+        preferences.edit().putString(cacheKey, dataKey).apply();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.grokscanner;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.grokscanner.pda.ReaderConfigurator;
+
+/**
+ * 用 SharedPreferences 保存期望的读取器输出配置和管理的字段
+ */
+class PreferencesReaderConfigStore implements ReaderConfigurator.Store {
+    private static final String PREFS_NAME = "reader_config";
+
+    private final SharedPreferences preferences;
+
+    PreferencesReaderConfigStore(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public String load(String key) {
+        return preferences.getString(key, null);
+    }
+
+    @Override
+    public void save(String key, String value) {
+        preferences.edit().putString(key, value).apply();
+    }
+
+    @Override
+    public void remove(String key) {
+        preferences.edit().remove(key).apply();
+    }
+}
@@ -0,0 +1,1290 @@
+package com.example.grokscanner;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 导入PDA厂商提供的类
+import com.example.grokscanner.pda.GeneralString;
+import com.example.grokscanner.pda.DataOutputType;
+import com.example.grokscanner.pda.ReaderConfigurator;
+import com.example.grokscanner.pda.ReaderManager;
+import com.example.grokscanner.pda.ReaderOutputConfiguration;
+import com.example.grokscanner.pda.KeyboardEmulationType;
+import com.example.grokscanner.pda.ScannerAdapter;
+import com.example.grokscanner.pda.ScannerAdapters;
+import com.example.grokscanner.pda.SoftTriggerController;
+import com.example.grokscanner.scan.DataKeyResolver;
+import com.example.grokscanner.scan.DebugState;
+import com.example.grokscanner.scan.DuplicateFilter;
+import com.example.grokscanner.scan.ExpectedSet;
+import com.example.grokscanner.scan.Gs1Parser;
+import com.example.grokscanner.scan.GtinKey;
+import com.example.grokscanner.scan.LookupIndex;
+import com.example.grokscanner.scan.PayloadDecoder;
+import com.example.grokscanner.scan.ScanBatcher;
+import com.example.grokscanner.scan.ScanDelivery;
+import com.example.grokscanner.scan.ScanJournal;
+import com.example.grokscanner.scan.ScanLoadGenerator;
+import com.example.grokscanner.scan.ScanLog;
+import com.example.grokscanner.scan.ScanMetrics;
+import com.example.grokscanner.scan.ScanOutbox;
+import com.example.grokscanner.scan.ScanPipeline;
+import com.example.grokscanner.scan.ScanRecord;
+import com.example.grokscanner.scan.ScanStages;
+import com.example.grokscanner.scan.ScanValidator;
+import com.example.grokscanner.scan.Symbology;
+
+/**
+ * 扫描运行时
+ * 读取器、广播接收器、扫描管线和平台通道都挂在Application上，不依赖Activity的生命周期；
+ * 接收器的运行由 {@link ScannerService} 保持，班次中Activity重建不会重新注册。
+ * Flutter端开始监听前收到的扫描保留在发送缓冲区和扫描日志中，监听后按序号补发。
+ */
+public class ScannerRuntime {
+    private static final String TAG = "GrokScanner";
+    private static final String SCAN_CHANNEL = "com.cympotek.grokscanner/scan_channel";
+    private static final String DEBUG_CHANNEL = "com.cympotek.grokscanner/debug_channel";
+    
+    private final Context context;
+    private final StartupTimings startupTimings;
+    private BroadcastReceiver scanReceiver;
+    // 扫描线程: 广播接收、解析和入队都在此线程执行，只有发送给EventSink的部分交给平台线程
+    private HandlerThread scannerThread;
+    private Handler scannerHandler;
+    private volatile EventChannel.EventSink eventSink;
+    private ReaderManager mReaderManager = null;
+    // 读取器输出配置的缓存和下发，不使用ReaderManager的适配器为null
+    private ReaderConfigurator readerConfigurator = null;
+    private volatile MethodChannel debugChannel;
+    // 已连接平台通道的引擎
+    private FlutterEngine attachedEngine;
+    // 首次收到广播、首次发送扫描 (用于启动耗时)
+    private volatile boolean firstIntentSeen = false;
+    private boolean firstScanDelivered = false;
+    // 读取器和扫描管线是否已初始化 (只在主线程上读写)
+    private boolean initialized = false;
+    
+    // 调试信息，合并更新后按帧推送增量给Flutter端
+    private final MainThreadScheduler uiScheduler = new MainThreadScheduler();
+    private final DebugState debugState = new DebugState(
+            BuildConfig.SCAN_DEBUG_STATE,
+            uiScheduler,
+            delta -> {
+                if (debugChannel != null) {
+                    debugChannel.invokeMethod("debugInfoDelta", delta);
+                }
+            },
+            DebugState.PUBLISH_PER_FRAME);
+
+    // 扫描路径日志，写入内存环形缓冲区，只有较高级别才转发到logcat
+    private final ScanLog scanLog = new ScanLog(ScanLog.DEFAULT_CAPACITY, BuildConfig.DEBUG ? ScanLog.DEBUG : ScanLog.INFO);
+
+    // 各阶段延迟及吞吐统计
+    private final ScanMetrics scanMetrics = new ScanMetrics();
+
+    // 条码校验 (默认关闭)
+    private final ScanValidator scanValidator = new ScanValidator();
+
+    // GS1应用标识符解析 (默认关闭)
+    private final Gs1Parser gs1Parser = new Gs1Parser();
+
+    // 拣货/收货/盘点的预期条码集合 (默认未加载)
+    private final ExpectedSet expectedSet = new ExpectedSet();
+
+    // 重复扫描过滤 (默认关闭)
+    private final DuplicateFilter duplicateFilter = new DuplicateFilter();
+
+    // 批量发送 (默认关闭，逐条发送)
+    private final ScanBatcher scanBatcher = new ScanBatcher(uiScheduler, batch -> {
+        if (eventSink == null) {
+            return false;
+        }
+        eventSink.success(batch);
+        this.scanDelivery.markSent(batch);
+        return true;
+    });
+    private final ScanDelivery.Transport scanTransport = new ScanDelivery.Transport() {
+        @Override
+        public boolean sendPrimary(Map<String, Object> scan) {
+            if (eventSink == null) {
+                // 未确认的扫描之后会重发
+                scanLog.log(ScanLog.WARN, ScanLog.EVT_SINK_NULL, (Long) scan.get("seq"));
+                updateDebugInfo("eventSinkStatus", "Null");
+                return false;
+            }
+            try {
+                eventSink.success(scan);
+                if (!firstScanDelivered) {
+                    firstScanDelivered = true;
+                    startupTimings.mark("firstScanDelivered");
+                }
+                updateDebugInfo("eventSinkStatus", "Active and used");
+                return true;
+            } catch (Exception e) {
+                scanLog.log(ScanLog.ERROR, ScanLog.EVT_SEND_FAILED, e.getMessage(), (Long) scan.get("seq"));
+                updateDebugInfo("lastError", "EventSink error: " + e.getMessage());
+                scanMetrics.recordError();
+                return false;
+            }
+        }
+
+        @Override
+        public boolean sendFallback(Map<String, Object> scan) {
+            if (debugChannel == null) {
+                return false;
+            }
+            try {
+                debugChannel.invokeMethod("directDataReceived", scan);
+                scanLog.log(ScanLog.INFO, ScanLog.EVT_RETRANSMIT, (Long) scan.get("seq"));
+                updateDebugInfo("lastRetransmitSeq", scan.get("seq"));
+                return true;
+            } catch (Exception e) {
+                scanLog.log(ScanLog.ERROR, ScanLog.EVT_RETRANSMIT_FAILED, e.getMessage(), (Long) scan.get("seq"));
+                return false;
+            }
+        }
+    };
+    private final ScanDelivery scanDelivery = new ScanDelivery(uiScheduler, scanTransport, scanBatcher, scanMetrics, ScanDelivery.DEFAULT_CAPACITY);
+    // 按设备厂商选择的适配器，只注册该厂商的Action
+    private ScannerAdapter scannerAdapter;
+    // 广播解析到发送入队的处理管线，在扫描线程上执行
+    private ScanPipeline scanPipeline;
+    // 条码数据键解析，通用适配使用，学习每个Action使用的extra键
+    private DataKeyResolver keyResolver;
+    private final BundleExtras bundleExtras = new BundleExtras();
+
+    // 持久化扫描日志，Flutter端未监听或进程被杀时扫描不会丢失
+    private ScanJournal scanJournal;
+
+    // 本地主数据索引 (条码 → 商品/储位)，扫描时在原生端查找
+    private LookupIndex lookupIndex;
+    // 安装主数据索引等较慢的文件操作，依次执行
+    private final ExecutorService fileWorker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GrokScanner-Files");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 离线发件箱，扫描批量压缩后上传到配置的地址；未配置地址时不排队
+    private ScanOutbox scanOutbox;
+    private static final String OUTBOX_PREFS = "scan_outbox";
+    // Authorization 加密保存，密钥在 Android Keystore 中
+    private final KeystoreSecrets outboxSecrets = new KeystoreSecrets("scan_outbox");
+
+    // 正在运行的负载测试，同时只允许一个
+    private volatile ScanLoadGenerator activeLoad;
+
+    // 连续扫描模式的软触发，读取器可用时创建
+    private SoftTriggerController softTrigger;
+
+    /**
+     * @param context Application context
+     * @param startupTimings 启动阶段耗时
+     */
+    public ScannerRuntime(Context context, StartupTimings startupTimings) {
+        this.context = context;
+        this.startupTimings = startupTimings;
+    }
+
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    /**
+     * 开始接收扫描，在班次进行中的Application.onCreate和扫描服务创建时调用，已在接收时直接返回
+     * 读取器和扫描管线只初始化一次；Flutter端开始监听前发送暂停，扫描保留在缓冲区中。
+     */
+    public void start() {
+        prepare();
+        registerScanReceiver();
+    }
+
+    /**
+     * 初始化读取器和扫描管线但不注册接收器，班次未开始时Flutter端的调用也能处理；已初始化时直接返回
+     */
+    public void prepare() {
+        if (!initialized) {
+            initialize();
+            initialized = true;
+        }
+        if (eventSink == null) {
+            scanDelivery.setHeld(true);
+        }
+    }
+
+    /**
+     * 停止接收扫描: 注销接收器、停止扫描线程并写入扫描日志，扫描服务停止时调用
+     * 未确认的扫描保留，下次 start 后仍会补发。
+     */
+    public void stop() {
+        if (softTrigger != null) {
+            softTrigger.stop();
+        }
+        unregisterScanReceiver();
+        stopScannerThread();
+        sync();
+    }
+
+    /**
+     * 扫描服务状态变化
+     * @param status 服务状态
+     * @param boundClients 当前绑定的客户端数
+     */
+    public void onServiceStateChanged(String status, int boundClients) {
+        updateDebugInfo("scannerServiceStatus", status);
+        updateDebugInfo("scannerServiceClients", boundClients);
+    }
+
+    // 初始化读取器、适配器、扫描管线和扫描日志
+    private void initialize() {
+        Log.d(TAG, "Initializing scanner runtime");
+        scanLog.setSink((level, message) -> Log.println(level, TAG, message), BuildConfig.DEBUG ? ScanLog.DEBUG : ScanLog.WARN);
+        
+        // 初始化条码数据键解析，原厂Action直接使用原厂数据键
+        keyResolver = new DataKeyResolver(android.os.Build.MODEL, GeneralString.COMMON_DATA_KEYS,
+                GeneralString.NON_DATA_KEYS, new PreferencesKeyStore(context));
+        keyResolver.seed(GeneralString.Intent_PASS_TO_APP, GeneralString.BcReaderData);
+
+        // 根据设备厂商和型号选择适配器
+        scannerAdapter = ScannerAdapters.select(android.os.Build.MANUFACTURER, android.os.Build.MODEL, keyResolver);
+        Log.d(TAG, "Using scanner adapter: " + scannerAdapter.getName());
+        updateDebugInfo("scannerAdapter", scannerAdapter.getName());
+
+        if (scannerAdapter.usesReaderManager()) {
+            try {
+                // 初始化PDA的ReaderManager
+                mReaderManager = ReaderManager.InitInstance(context);
+                readerConfigurator = createReaderConfigurator(mReaderManager);
+                softTrigger = createSoftTrigger(mReaderManager);
+                Log.d(TAG, "ReaderManager initialized successfully");
+                updateDebugInfo("readerManagerStatus", "Initialized");
+                startupTimings.mark("readerInitialized");
+            } catch (Exception e) {
+                Log.e(TAG, "Error initializing ReaderManager: " + e.getMessage());
+                updateDebugInfo("readerManagerStatus", "Error: " + e.getMessage());
+            }
+        } else {
+            updateDebugInfo("readerManagerStatus", "Not used by " + scannerAdapter.getName());
+        }
+
+        // 打开已安装的主数据索引，没有索引时不做查找
+        lookupIndex = new LookupIndex(new File(context.getFilesDir(), "lookup.idx"));
+        try {
+            updateDebugInfo("lookupIndexStatus", lookupIndex.load() ? "Loaded" : "Not installed");
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading lookup index: " + e.getMessage());
+            updateDebugInfo("lookupIndexStatus", "Error: " + e.getMessage());
+        }
+
+        scanPipeline = new ScanPipeline(scannerAdapter, debugState, scanMetrics, scanValidator, duplicateFilter, gs1Parser,
+                lookupIndex, expectedSet, scanDelivery, scanLog,
+                new ScanPipeline.Listener() {
+                    @Override
+                    public void onServiceConnected() {
+                        configureReader();
+                    }
+
+                    @Override
+                    public void onNoData() {
+                        reportNoBarcodeData();
+                    }
+
+                    @Override
+                    public void onDecodeResult(boolean decoded) {
+                        if (softTrigger != null) {
+                            softTrigger.onDecodeResult(decoded);
+                        }
+                    }
+                });
+
+        // 打开扫描日志，序号从日志中最大的序号继续
+        try {
+            scanJournal = new ScanJournal(new File(context.getNoBackupFilesDir(), "scan_journal"));
+            scanPipeline.setJournal(scanJournal);
+            updateDebugInfo("scanJournalStatus", "Opened");
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening scan journal: " + e.getMessage());
+            updateDebugInfo("scanJournalStatus", "Error: " + e.getMessage());
+        }
+        openOutbox();
+        startupTimings.mark("pipelineReady");
+    }
+
+    /**
+     * 在引擎上设置扫描事件通道和调试通道，同一引擎只设置一次
+     * 预热引擎在执行Dart入口前调用，保证Dart端启动时通道已就绪。
+     */
+    public void attachEngine(@NonNull FlutterEngine flutterEngine) {
+        if (attachedEngine == flutterEngine) {
+            return;
+        }
+        attachedEngine = flutterEngine;
+        Log.d(TAG, "Attaching scanner channels to Flutter engine");
+
+        // 设置扫描事件通道
+        new EventChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), SCAN_CHANNEL)
+                .setStreamHandler(new EventChannel.StreamHandler() {
+                    @Override
+                    public void onListen(Object arguments, EventChannel.EventSink events) {
+                        // 當 Flutter 端開始監聽時被調用
+                        Log.d(TAG, "EventChannel.onListen - Flutter is now listening for scan events");
+                        eventSink = events;
+                        startupTimings.mark("dartListening");
+                        scanDelivery.setHeld(false); // 恢復發送
+                        replayPendingScans(); // 補發監聽前收到及尚未確認的掃描
+                        updateDebugInfo("eventChannelStatus", "Connected");
+                    }
+
+                    @Override
+                    public void onCancel(Object arguments) {
+                        // 當 Flutter 端停止監聽時被調用
+                        Log.d(TAG, "EventChannel.onCancel - Flutter stopped listening");
+                        // 接收器保持註冊，掃描暫存到下次監聽
+                        eventSink = null;
+                        scanDelivery.setHeld(true);
+                        updateDebugInfo("eventChannelStatus", "Disconnected");
+                    }
+                });
+        
+        // 设置调试通道
+        debugChannel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), DEBUG_CHANNEL);
+        debugChannel.setMethodCallHandler((call, result) -> {
+            if (call.method.equals("getDebugInfo")) {
+                result.success(debugState.snapshot());
+            } else if (call.method.equals("configureDebugState")) {
+                // 设置调试信息的发布间隔，0表示按帧发布
+                Number intervalMs = call.argument("intervalMs");
+                if (intervalMs != null) {
+                    debugState.setPublishInterval(intervalMs.longValue());
+                }
+                Map<String, Object> state = new HashMap<>();
+                state.put("enabled", debugState.isEnabled());
+                state.put("intervalMs", debugState.getPublishInterval());
+                state.put("publishCount", debugState.getPublishCount());
+                result.success(state);
+            } else if (call.method.equals("configureScanDelivery")) {
+                // 设置扫描数据的发送方式: single (逐条) 或 batch (批量)
+                String mode = call.argument("mode");
+                Boolean perFrame = call.argument("perFrame");
+                Number maxItems = call.argument("maxItems");
+                Number maxDelayMs = call.argument("maxDelayMs");
+                Number capacity = call.argument("capacity");
+                Number ackTimeoutMs = call.argument("ackTimeoutMs");
+                Number maxRetransmits = call.argument("maxRetransmits");
+                scanDelivery.configure(
+                        ackTimeoutMs != null ? ackTimeoutMs.longValue() : ScanDelivery.DEFAULT_ACK_TIMEOUT_MS,
+                        maxRetransmits != null ? maxRetransmits.intValue() : ScanDelivery.DEFAULT_MAX_RETRANSMITS);
+                scanBatcher.configure(
+                        "batch".equals(mode),
+                        perFrame == null || perFrame,
+                        maxItems != null ? maxItems.intValue() : ScanBatcher.DEFAULT_MAX_ITEMS,
+                        maxDelayMs != null ? maxDelayMs.longValue() : ScanBatcher.DEFAULT_MAX_DELAY_MS,
+                        capacity != null ? capacity.intValue() : 0);
+                updateDebugInfo("scanDeliveryMode", scanBatcher.isEnabled() ? "batch" : "single");
+                result.success(getScanDeliveryStats());
+            } else if (call.method.equals("configureScanPayload")) {
+                // 设置扫描数据格式: text (文本) / bytes (原始字节) / both，及UTF-8解码失败时的备用字符集
+                String mode = call.argument("mode");
+                String fallbackCharset = call.argument("fallbackCharset");
+                if (mode != null) {
+                    scanDelivery.setPayloadMode(ScanRecord.parsePayloadMode(mode));
+                }
+                if (fallbackCharset != null && !PayloadDecoder.setFallbackCharset(fallbackCharset)) {
+                    result.error("CHARSET_ERROR", "Unsupported charset: " + fallbackCharset, null);
+                    return;
+                }
+                Map<String, Object> payload = PayloadDecoder.getStats();
+                payload.put("mode", ScanRecord.payloadModeName(scanDelivery.getPayloadMode()));
+                result.success(payload);
+            } else if (call.method.equals("getScanDeliveryStats")) {
+                result.success(getScanDeliveryStats());
+            } else if (call.method.equals("configureDedup")) {
+                // 设置重复扫描过滤: off / sameIntent / window / session
+                String mode = call.argument("mode");
+                Number windowMs = call.argument("windowMs");
+                Number capacity = call.argument("capacity");
+                duplicateFilter.configure(
+                        DuplicateFilter.parseMode(mode),
+                        windowMs != null ? windowMs.longValue() : DuplicateFilter.DEFAULT_WINDOW_MS,
+                        capacity != null ? capacity.intValue() : 0);
+                result.success(duplicateFilter.getStats());
+            } else if (call.method.equals("configureValidation")) {
+                configureValidation(call);
+                result.success(scanValidator.getStats());
+            } else if (call.method.equals("configureGs1")) {
+                // 设置GS1解析: enabled、symbologies (码制名称列表)、separator (FNC1输出的字符，默认29)
+                Boolean enabled = call.argument("enabled");
+                List<String> symbologies = call.argument("symbologies");
+                Number separator = call.argument("separator");
+                gs1Parser.configure(
+                        enabled != null ? enabled : gs1Parser.isEnabled(),
+                        symbologies != null ? parseSymbologies(symbologies) : null,
+                        separator != null ? separator.intValue() : 0);
+                result.success(gs1Parser.getStats());
+            } else if (call.method.equals("configurePipeline")) {
+                // 设置原生处理阶段: stages (按顺序的阶段配置列表，空列表表示清除)，类型和参数见 ScanStages
+                List<Map<String, Object>> stages = call.argument("stages");
+                try {
+                    ScanStages compiled = ScanStages.compile(stages);
+                    scanPipeline.setStages(compiled);
+                    result.success(compiled.getStats());
+                } catch (IllegalArgumentException | ClassCastException e) {
+                    result.error("INVALID_ARGUMENT", e.getMessage(), null);
+                }
+            } else if (call.method.equals("getPipelineStats")) {
+                result.success(scanPipeline.getStages().getStats());
+            } else if (call.method.equals("configureReader")) {
+                // 设置读取器输出配置，只下发与设备当前配置不同的字段:
+                // keyboardEmulation (default/none)、dataOutput (keyboard/intent/clipboard)、prefix、suffix、
+                // showCodeType、showCodeLen、symbologies (码制名称列表)
+                if (readerConfigurator == null) {
+                    result.error("READER_UNAVAILABLE", "ReaderManager not used by " + scannerAdapter.getName(), null);
+                    return;
+                }
+                try {
+                    configureReaderOutput(call);
+                    result.success(readerConfigurator.getStats());
+                } catch (IllegalArgumentException e) {
+                    result.error("INVALID_ARGUMENT", e.getMessage(), null);
+                }
+            } else if (call.method.equals("refreshReaderConfig")) {
+                // 设备配置可能被其他应用修改，重新读取后按期望配置下发
+                if (readerConfigurator == null) {
+                    result.error("READER_UNAVAILABLE", "ReaderManager not used by " + scannerAdapter.getName(), null);
+                    return;
+                }
+                readerConfigurator.invalidate();
+                readerConfigurator.apply();
+                result.success(null);
+            } else if (call.method.equals("startContinuousScan")) {
+                // 连续扫描模式 (输送线、台式工位): 原生端按自适应间隔软触发读取器
+                // minIntervalMs、maxIntervalMs (触发间隔范围)、highWatermark / lowWatermark (未确认扫描数达到上限时暂停，降到下限时恢复)
+                if (softTrigger == null) {
+                    result.error("READER_UNAVAILABLE", "ReaderManager not used by " + scannerAdapter.getName(), null);
+                    return;
+                }
+                Number minIntervalMs = call.argument("minIntervalMs");
+                Number maxIntervalMs = call.argument("maxIntervalMs");
+                Number highWatermark = call.argument("highWatermark");
+                Number lowWatermark = call.argument("lowWatermark");
+                softTrigger.start(
+                        minIntervalMs != null ? minIntervalMs.longValue() : SoftTriggerController.DEFAULT_MIN_INTERVAL_MS,
+                        maxIntervalMs != null ? maxIntervalMs.longValue() : SoftTriggerController.DEFAULT_MAX_INTERVAL_MS,
+                        highWatermark != null ? highWatermark.intValue() : SoftTriggerController.DEFAULT_HIGH_WATERMARK,
+                        lowWatermark != null ? lowWatermark.intValue() : SoftTriggerController.DEFAULT_LOW_WATERMARK);
+                updateDebugInfo("continuousScan", "Running");
+                result.success(softTrigger.getStats());
+            } else if (call.method.equals("stopContinuousScan")) {
+                if (softTrigger != null) {
+                    softTrigger.stop();
+                    updateDebugInfo("continuousScan", "Stopped");
+                }
+                result.success(softTrigger != null ? softTrigger.getStats() : null);
+            } else if (call.method.equals("getContinuousScanStats")) {
+                result.success(softTrigger != null ? softTrigger.getStats() : null);
+            } else if (call.method.equals("installLookupIndex")) {
+                // 安装新的主数据索引文件 (由 LookupIndexBuilder 生成)，在文件线程上复制和校验后原子替换，
+                // 扫描线程不等待文件复制和刷盘，切换后的下一条扫描使用新索引
+                String path = call.argument("path");
+                if (path == null) {
+                    result.error("INVALID_ARGUMENT", "path is required", null);
+                    return;
+                }
+                fileWorker.execute(() -> {
+                    try {
+                        lookupIndex.install(new File(path));
+                        Map<String, Object> stats = lookupIndex.getStats();
+                        updateDebugInfo("lookupIndexStatus", "Loaded");
+                        uiScheduler.postDelayed(() -> result.success(stats), 0);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error installing lookup index: " + e.getMessage());
+                        uiScheduler.postDelayed(() -> result.error("LOOKUP_ERROR", e.getMessage(), null), 0);
+                    }
+                });
+            } else if (call.method.equals("unloadLookupIndex")) {
+                lookupIndex.unload();
+                updateDebugInfo("lookupIndexStatus", "Unloaded");
+                result.success(lookupIndex.getStats());
+            } else if (call.method.equals("configureOutbox")) {
+                // 设置离线发件箱: endpoint (上传地址，空字符串表示停用)、authorization (可选请求头)、
+                // maxItems、maxBytes、maxDelayMs (批次的条数、字节数和等待时间上限)
+                if (scanOutbox == null) {
+                    result.error("OUTBOX_UNAVAILABLE", "Outbox journal could not be opened", null);
+                    return;
+                }
+                try {
+                    configureOutbox(call);
+                    result.success(scanOutbox.getStats());
+                } catch (IOException e) {
+                    result.error("INVALID_ARGUMENT", e.getMessage(), null);
+                }
+            } else if (call.method.equals("flushOutbox")) {
+                if (scanOutbox != null) {
+                    scanOutbox.flush();
+                }
+                result.success(null);
+            } else if (call.method.equals("clearOutbox")) {
+                result.success(scanOutbox != null ? scanOutbox.clear() : 0);
+            } else if (call.method.equals("getOutboxStats")) {
+                result.success(scanOutbox != null ? scanOutbox.getStats() : null);
+            } else if (call.method.equals("getLookupStats")) {
+                result.success(lookupIndex.getStats());
+            } else if (call.method.equals("loadExpectedSet")) {
+                // 加载预期条码集合: codes (条码列表)、quantities (可选，对应的目标数量)、bloom (可选，是否前置Bloom过滤器)
+                List<String> codes = call.argument("codes");
+                List<? extends Number> quantities = call.argument("quantities");
+                Boolean bloom = call.argument("bloom");
+                if (codes == null) {
+                    result.error("INVALID_ARGUMENT", "codes is required", null);
+                    return;
+                }
+                startScannerThread().post(() -> {
+                    loadExpectedSet(codes, quantities, bloom);
+                    Map<String, Object> stats = expectedSet.getStats();
+                    uiScheduler.postDelayed(() -> result.success(stats), 0);
+                });
+            } else if (call.method.equals("resetExpectedCounts")) {
+                // 计数在扫描线程上修改，清零也在扫描线程上进行
+                startScannerThread().post(() -> {
+                    expectedSet.resetCounts();
+                    Map<String, Object> stats = expectedSet.getStats();
+                    uiScheduler.postDelayed(() -> result.success(stats), 0);
+                });
+            } else if (call.method.equals("clearExpectedSet")) {
+                expectedSet.clear();
+                result.success(expectedSet.getStats());
+            } else if (call.method.equals("getExpectedStats")) {
+                result.success(expectedSet.getStats());
+            } else if (call.method.equals("resetDedup")) {
+                duplicateFilter.reset();
+                result.success(duplicateFilter.getStats());
+            } else if (call.method.equals("configureLog")) {
+                // 设置日志级别: verbose / debug / info / warn / error / off
+                scanLog.setLevel(ScanLog.parseLevel(call.argument("level"), scanLog.getLevel()));
+                ScanLog.Sink sink = (level, message) -> Log.println(level, TAG, message);
+                scanLog.setSink(sink, ScanLog.parseLevel(call.argument("logcatLevel"), scanLog.getSinkLevel()));
+                Map<String, Object> state = new HashMap<>();
+                state.put("level", scanLog.getLevel());
+                state.put("logcatLevel", scanLog.getSinkLevel());
+                state.put("written", scanLog.getWrittenCount());
+                result.success(state);
+            } else if (call.method.equals("dumpLog")) {
+                // 以文本返回内存中的日志记录
+                String level = call.argument("level");
+                result.success(scanLog.dump(ScanLog.parseLevel(level, ScanLog.VERBOSE)));
+            } else if (call.method.equals("startScanningService")) {
+                // 开始一个班次: 启动前台扫描服务
+                ScannerService.start(context);
+                result.success(null);
+            } else if (call.method.equals("stopScanningService")) {
+                // 结束班次: 停止前台扫描服务并注销接收器
+                ScannerService.stop(context);
+                result.success(null);
+            } else if (call.method.equals("getStartupTimings")) {
+                result.success(startupTimings.snapshot());
+            } else if (call.method.equals("getMetrics")) {
+                result.success(getMetrics());
+            } else if (call.method.equals("resetMetrics")) {
+                scanMetrics.reset();
+                result.success(null);
+            } else if (call.method.equals("ackScans")) {
+                // Flutter端确认已处理的扫描序号
+                List<Number> seqs = call.argument("seqs");
+                if (seqs != null) {
+                    scanDelivery.ack(seqs);
+                    if (scanJournal != null) {
+                        scanJournal.ack(seqs);
+                    }
+                    ScanLoadGenerator load = activeLoad;
+                    if (load != null) {
+                        load.onAcked(seqs);
+                    }
+                }
+                result.success(null);
+            } else if (call.method.equals("listAvailableIntents")) {
+                try {
+                    // 尝试列出系统中可用的广播接收器
+                    Map<String, Object> intentInfo = new HashMap<>();
+                    intentInfo.put("scannerAdapter", scannerAdapter.getName());
+                    intentInfo.put("registeredAction", scannerAdapter.getScanAction());
+                    intentInfo.put("registeredDataKey", scannerAdapter.getDataKey());
+                    intentInfo.put("registeredActions", java.util.Arrays.asList(scannerAdapter.getActions()));
+                    result.success(intentInfo);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error listing intents: " + e.getMessage());
+                    result.error("INTENT_ERROR", e.getMessage(), null);
+                }
+            } else if (call.method.equals("simulateScan") && call.argument("count") != null) {
+                // 连发模式: 按速率注入N条合成扫描，完成后返回吞吐、丢失、乱序和延迟报告
+                runLoadTest(call, result);
+            } else if (call.method.equals("simulateScan")) {
+                try {
+                    // 从Flutter获取测试数据
+                    String data = call.argument("data");
+                    if (data == null) {
+                        data = "TEST_BARCODE_" + System.currentTimeMillis();
+                    }
+                    
+                    Log.d(TAG, "Simulating scan with data: " + data);
+                    updateDebugInfo("simulatedScan", data);
+                    
+                    // 方法1: 直接调用处理方法 (在扫描线程上执行，与广播路径一致)
+                    if (eventSink != null && scannerHandler != null) {
+                        Log.d(TAG, "Directly sending simulated data to Flutter");
+                        final String simulated = data;
+                        scannerHandler.post(() -> scanPipeline.inject(
+                                ScanRecord.ofText(simulated, ScanRecord.CODE_TYPE_UNKNOWN, null), "Simulated"));
+                        result.success(true);
+                    } else {
+                        // 方法2: 发送广播给自己
+                        Log.d(TAG, "EventSink is null, sending broadcast instead");
+                        sendTestIntent(data);
+                        result.success(true);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error simulating scan: " + e.getMessage());
+                    result.error("SCAN_ERROR", e.getMessage(), null);
+                }
+            } else {
+                result.notImplemented();
+            }
+        });
+    }
+    
+    // 连发参数:
+    // count (条数)、rate (每秒条数，0或省略表示尽快)、route (direct: 直接进入扫描管线 / broadcast: 经接收器的真实广播)
+    // lengths + weights (条码长度分布) 或 minLength / maxLength (均匀分布)、codeTypes (厂商码制编号列表)
+    // duplicateRatio (0-1)、settleMs (注入后等待时间)、seed
+    private void runLoadTest(MethodCall call, MethodChannel.Result result) {
+        ScanLoadGenerator.Config config = new ScanLoadGenerator.Config();
+        Number count = call.argument("count");
+        Number rate = call.argument("rate");
+        List<? extends Number> lengths = call.argument("lengths");
+        List<? extends Number> weights = call.argument("weights");
+        Number minLength = call.argument("minLength");
+        Number maxLength = call.argument("maxLength");
+        List<? extends Number> codeTypes = call.argument("codeTypes");
+        Number duplicateRatio = call.argument("duplicateRatio");
+        Number settleMs = call.argument("settleMs");
+        Number seed = call.argument("seed");
+        String route = call.argument("route");
+        boolean broadcast = "broadcast".equals(route);
+        if (route != null && !broadcast && !"direct".equals(route)) {
+            result.error("INVALID_ARGUMENT", "Unknown route: " + route, null);
+            return;
+        }
+        config.count = count.intValue();
+        if (rate != null) {
+            config.ratePerSecond = rate.doubleValue();
+        }
+        if (lengths != null) {
+            config.lengths = new int[lengths.size()];
+            for (int i = 0; i < config.lengths.length; i++) {
+                config.lengths[i] = lengths.get(i).intValue();
+            }
+        }
+        if (weights != null) {
+            config.weights = new double[weights.size()];
+            for (int i = 0; i < config.weights.length; i++) {
+                config.weights[i] = weights.get(i).doubleValue();
+            }
+        }
+        if (minLength != null) {
+            config.minLength = minLength.intValue();
+        }
+        if (maxLength != null) {
+            config.maxLength = maxLength.intValue();
+        }
+        if (codeTypes != null && !codeTypes.isEmpty()) {
+            config.codeTypes = new int[codeTypes.size()];
+            for (int i = 0; i < config.codeTypes.length; i++) {
+                config.codeTypes[i] = codeTypes.get(i).intValue();
+            }
+        }
+        if (duplicateRatio != null) {
+            config.duplicateRatio = duplicateRatio.doubleValue();
+        }
+        if (settleMs != null) {
+            config.settleMs = settleMs.longValue();
+        }
+        if (seed != null) {
+            config.seed = seed.longValue();
+        }
+        // Flutter端在监听时等待确认，报告中包含到确认的延迟
+        config.waitForAck = eventSink != null;
+
+        ScanLoadGenerator load = new ScanLoadGenerator(config);
+        synchronized (this) {
+            if (activeLoad != null) {
+                result.error("LOAD_BUSY", "A load test is already running", null);
+                return;
+            }
+            activeLoad = load;
+        }
+        Handler handler = startScannerThread();
+        ScanLoadGenerator.Injector injector;
+        if (broadcast) {
+            String action = scannerAdapter.getScanAction();
+            String dataKey = scannerAdapter.getDataKey();
+            String packageName = context.getPackageName();
+            // 广播只携带条码文本，码制由适配器按默认值处理
+            injector = (payload, codeType) -> {
+                Intent intent = new Intent(action);
+                intent.putExtra(dataKey, new String(payload, StandardCharsets.US_ASCII));
+                intent.setPackage(packageName);
+                context.sendBroadcast(intent);
+            };
+        } else {
+            injector = (payload, codeType) -> handler.post(
+                    () -> scanPipeline.inject(ScanRecord.ofBytes(payload, codeType, null), "LoadTest"));
+        }
+        scanPipeline.setObserver(load);
+        updateDebugInfo("loadTest", "Running " + config.count + " scans via " + (broadcast ? "broadcast" : "direct"));
+        Thread thread = new Thread(() -> {
+            Map<String, Object> report;
+            try {
+                report = load.run(injector);
+            } finally {
+                scanPipeline.setObserver(null);
+                activeLoad = null;
+            }
+            report.put("route", broadcast ? "broadcast" : "direct");
+            report.put("model", android.os.Build.MODEL);
+            report.put("scannerAdapter", scannerAdapter.getName());
+            updateDebugInfo("loadTest", "Finished run " + load.getRunId());
+            uiScheduler.postDelayed(() -> result.success(report), 0);
+        }, "GrokScanner-Load");
+        thread.start();
+    }
+
+    private Map<String, Object> getScanDeliveryStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("batch", scanBatcher.getStats());
+        stats.put("delivery", scanDelivery.getStats());
+        stats.put("payloadDecoder", PayloadDecoder.getStats());
+        if (keyResolver != null) {
+            stats.put("keyResolver", keyResolver.getStats());
+        }
+        if (scanJournal != null) {
+            stats.put("journal", scanJournal.getStats());
+        }
+        return stats;
+    }
+    
+    // 各阶段延迟的 p50/p95/p99/max (毫秒)、吞吐及计数，附带设备信息以便比较不同机型和固件
+    private Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = scanMetrics.snapshot();
+        Map<String, Object> device = new HashMap<>();
+        device.put("manufacturer", android.os.Build.MANUFACTURER);
+        device.put("model", android.os.Build.MODEL);
+        device.put("firmware", android.os.Build.DISPLAY);
+        device.put("sdkInt", android.os.Build.VERSION.SDK_INT);
+        metrics.put("device", device);
+        metrics.put("delivery", getScanDeliveryStats());
+        metrics.put("dedup", duplicateFilter.getStats());
+        metrics.put("validation", scanValidator.getStats());
+        metrics.put("gs1", gs1Parser.getStats());
+        metrics.put("lookup", lookupIndex.getStats());
+        metrics.put("expected", expectedSet.getStats());
+        metrics.put("stages", scanPipeline.getStages().getStats());
+        metrics.put("startup", startupTimings.snapshot());
+        if (readerConfigurator != null) {
+            metrics.put("readerConfig", readerConfigurator.getStats());
+        }
+        if (scanOutbox != null) {
+            metrics.put("outbox", scanOutbox.getStats());
+        }
+        if (softTrigger != null) {
+            metrics.put("continuousScan", softTrigger.getStats());
+        }
+        return metrics;
+    }
+    
+    // 设置条码校验:
+    // mode: off / flag / drop
+    // allow / deny: 码制名称列表，如 ["ean13", "code128"]
+    // rules: {码制名称: {minLength, maxLength, checkDigit, fullAscii}}，未给出的 checkDigit / fullAscii 保持当前设置
+    // codeTypes: {厂商码制编号: 码制名称}
+    private void configureValidation(MethodCall call) {
+        List<String> allow = call.argument("allow");
+        List<String> deny = call.argument("deny");
+        if (allow != null || deny != null) {
+            scanValidator.setSymbologies(parseSymbologies(allow), parseSymbologies(deny));
+        }
+        Map<String, Map<String, Object>> rules = call.argument("rules");
+        if (rules != null) {
+            for (Map.Entry<String, Map<String, Object>> entry : rules.entrySet()) {
+                Map<String, Object> rule = entry.getValue();
+                Object minLength = rule.get("minLength");
+                Object maxLength = rule.get("maxLength");
+                Object checkDigit = rule.get("checkDigit");
+                Object fullAscii = rule.get("fullAscii");
+                scanValidator.setRule(Symbology.parse(entry.getKey()),
+                        minLength instanceof Number ? ((Number) minLength).intValue() : 0,
+                        maxLength instanceof Number ? ((Number) maxLength).intValue() : 0,
+                        checkDigit instanceof Boolean ? (Boolean) checkDigit : null,
+                        fullAscii instanceof Boolean ? (Boolean) fullAscii : null);
+            }
+        }
+        // 键可能是整数或字符串
+        Map<?, ?> codeTypes = call.argument("codeTypes");
+        if (codeTypes != null) {
+            for (Map.Entry<?, ?> entry : codeTypes.entrySet()) {
+                try {
+                    scanValidator.mapCodeType(Integer.parseInt(String.valueOf(entry.getKey())),
+                            Symbology.parse(String.valueOf(entry.getValue())));
+                } catch (NumberFormatException e) {
+                    Log.e(TAG, "Invalid code type: " + entry.getKey());
+                }
+            }
+        }
+        String mode = call.argument("mode");
+        if (mode != null) {
+            scanValidator.setMode(ScanValidator.parseMode(mode));
+        }
+    }
+    
+    // 打开发件箱日志并按保存的地址恢复上传；网络恢复时立即上传，不等待退避结束
+    private void openOutbox() {
+        SharedPreferences preferences = context.getSharedPreferences(OUTBOX_PREFS, Context.MODE_PRIVATE);
+        String deviceId = preferences.getString("deviceId", null);
+        if (deviceId == null) {
+            deviceId = UUID.randomUUID().toString();
+            preferences.edit().putString("deviceId", deviceId).apply();
+        }
+        try {
+            scanOutbox = new ScanOutbox(new ScanJournal(new File(context.getNoBackupFilesDir(), "scan_outbox")), deviceId);
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening scan outbox: " + e.getMessage());
+            updateDebugInfo("scanOutboxStatus", "Error: " + e.getMessage());
+            return;
+        }
+        scanPipeline.setOutbox(scanOutbox);
+        // 旧版本明文保存的 Authorization 改为加密保存
+        if (preferences.contains("authorization")) {
+            SharedPreferences.Editor editor = preferences.edit();
+            String plain = preferences.getString("authorization", null);
+            outboxSecrets.put(editor, "authorizationEncrypted", plain);
+            editor.putBoolean("hasAuthorization", plain != null);
+            editor.remove("authorization").apply();
+        }
+        String endpoint = preferences.getString("endpoint", null);
+        String authorization = outboxSecrets.get(preferences, "authorizationEncrypted");
+        boolean missingAuthorization = authorization == null && preferences.getBoolean("hasAuthorization", false);
+        if (endpoint != null && missingAuthorization) {
+            // 没有凭据时上传会被拒绝并丢弃扫描，等Flutter端重新配置；日志中的扫描保留
+            Log.w(TAG, "Outbox authorization unavailable, waiting for configureOutbox");
+        } else if (endpoint != null) {
+            try {
+                scanOutbox.configure(new ScanOutbox.HttpUploader(endpoint, authorization),
+                        preferences.getInt("maxItems", 0), preferences.getInt("maxBytes", 0),
+                        preferences.getLong("maxDelayMs", 0));
+            } catch (IOException e) {
+                Log.e(TAG, "Invalid outbox endpoint: " + e.getMessage());
+            }
+        }
+        updateDebugInfo("scanOutboxStatus", scanOutbox.isEnabled() ? "Uploading"
+                : endpoint != null && missingAuthorization ? "Authorization required" : "Not configured");
+
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
+            ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+            if (connectivity != null) {
+                connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable(Network network) {
+                        scanOutbox.flush();
+                    }
+                });
+            }
+        }
+    }
+
+    // 未给出的批次参数保持不变，地址和批次参数保存后在进程重启时恢复
+    private void configureOutbox(MethodCall call) throws IOException {
+        String endpoint = call.argument("endpoint");
+        String authorization = call.argument("authorization");
+        Number maxItems = call.argument("maxItems");
+        Number maxBytes = call.argument("maxBytes");
+        Number maxDelayMs = call.argument("maxDelayMs");
+        ScanOutbox.Uploader uploader = endpoint != null && !endpoint.isEmpty()
+                ? new ScanOutbox.HttpUploader(endpoint, authorization) : null;
+        scanOutbox.configure(uploader,
+                maxItems != null ? maxItems.intValue() : 0,
+                maxBytes != null ? maxBytes.intValue() : 0,
+                maxDelayMs != null ? maxDelayMs.longValue() : 0);
+        SharedPreferences.Editor editor = context.getSharedPreferences(OUTBOX_PREFS, Context.MODE_PRIVATE).edit();
+        if (uploader != null) {
+            editor.putString("endpoint", endpoint);
+        } else {
+            editor.remove("endpoint");
+        }
+        // 加密失败时不保存凭据，进程重启后需要Flutter端重新配置
+        boolean saved = outboxSecrets.put(editor, "authorizationEncrypted", authorization);
+        editor.putBoolean("hasAuthorization", authorization != null);
+        editor.remove("authorization");
+        if (!saved) {
+            Log.w(TAG, "Outbox authorization not persisted");
+        }
+        if (maxItems != null) {
+            editor.putInt("maxItems", maxItems.intValue());
+        }
+        if (maxBytes != null) {
+            editor.putInt("maxBytes", maxBytes.intValue());
+        }
+        if (maxDelayMs != null) {
+            editor.putLong("maxDelayMs", maxDelayMs.longValue());
+        }
+        editor.apply();
+        updateDebugInfo("scanOutboxStatus", uploader != null ? "Uploading" : "Not configured");
+    }
+
+    // 读取器输出配置，默认只管理键盘模拟 (关闭)，其余字段保持设备设置直到Flutter端指定
+    private ReaderConfigurator createReaderConfigurator(ReaderManager readerManager) {
+        ReaderOutputConfiguration defaults = new ReaderOutputConfiguration();
+        defaults.enableKeyboardEmulation = KeyboardEmulationType.None;
+        return new ReaderConfigurator(
+                readerManager,
+                new PreferencesReaderConfigStore(context), defaults, ReaderOutputConfiguration.FIELD_KEYBOARD_EMULATION,
+                new ReaderConfigurator.Listener() {
+                    @Override
+                    public void onApplied(ReaderOutputConfiguration config, int changedFields, long elapsedNanos) {
+                        scanLog.log(ScanLog.INFO, ScanLog.EVT_READER_CONFIGURED, changedFields, elapsedNanos / 1_000_000);
+                        updateDebugInfo("readerConfig", config.encode());
+                    }
+
+                    @Override
+                    public void onUnchanged(ReaderOutputConfiguration config) {
+                        scanLog.log(ScanLog.DEBUG, ScanLog.EVT_READER_CONFIG_UNCHANGED);
+                        updateDebugInfo("readerConfig", config.encode());
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        scanLog.log(ScanLog.ERROR, ScanLog.EVT_READER_CONFIG_FAILED, e.getMessage());
+                        scanMetrics.recordError();
+                        updateDebugInfo("lastError", "Reader config error: " + e.getMessage());
+                    }
+                });
+    }
+
+    // 发送缓冲区的积压作为背压；Flutter端未监听 (发送暂停) 时视为积压已满
+    private SoftTriggerController createSoftTrigger(ReaderManager readerManager) {
+        return new SoftTriggerController(readerManager,
+                () -> scanDelivery.isHeld() ? Integer.MAX_VALUE : scanDelivery.getPendingCount(),
+                new SoftTriggerController.Listener() {
+                    @Override
+                    public void onPaused(int pending) {
+                        scanLog.log(ScanLog.INFO, ScanLog.EVT_SOFT_TRIGGER_PAUSED, pending);
+                        updateDebugInfo("continuousScan", "Paused");
+                    }
+
+                    @Override
+                    public void onResumed(int pending, long pausedNanos) {
+                        scanLog.log(ScanLog.INFO, ScanLog.EVT_SOFT_TRIGGER_RESUMED, pending, pausedNanos / 1_000_000);
+                        updateDebugInfo("continuousScan", "Running");
+                    }
+                });
+    }
+
+    // 只复制调用中给出的字段，未给出的字段保持原来的期望值
+    private void configureReaderOutput(MethodCall call) {
+        ReaderOutputConfiguration config = new ReaderOutputConfiguration();
+        int fields = 0;
+        String keyboardEmulation = call.argument("keyboardEmulation");
+        if (keyboardEmulation != null) {
+            config.enableKeyboardEmulation = "none".equalsIgnoreCase(keyboardEmulation)
+                    ? KeyboardEmulationType.None : KeyboardEmulationType.Default;
+            fields |= ReaderOutputConfiguration.FIELD_KEYBOARD_EMULATION;
+        }
+        String dataOutput = call.argument("dataOutput");
+        if (dataOutput != null) {
+            config.dataOutput = parseDataOutput(dataOutput);
+            fields |= ReaderOutputConfiguration.FIELD_DATA_OUTPUT;
+        }
+        String prefix = call.argument("prefix");
+        if (prefix != null) {
+            config.szPrefixCode = prefix;
+            fields |= ReaderOutputConfiguration.FIELD_PREFIX;
+        }
+        String suffix = call.argument("suffix");
+        if (suffix != null) {
+            config.szSuffixCode = suffix;
+            fields |= ReaderOutputConfiguration.FIELD_SUFFIX;
+        }
+        Boolean showCodeType = call.argument("showCodeType");
+        if (showCodeType != null) {
+            config.showCodeType = showCodeType;
+            fields |= ReaderOutputConfiguration.FIELD_SHOW_CODE_TYPE;
+        }
+        Boolean showCodeLen = call.argument("showCodeLen");
+        if (showCodeLen != null) {
+            config.showCodeLen = showCodeLen;
+            fields |= ReaderOutputConfiguration.FIELD_SHOW_CODE_LEN;
+        }
+        List<String> symbologies = call.argument("symbologies");
+        if (symbologies != null) {
+            int mask = 0;
+            for (int symbology : parseSymbologies(symbologies)) {
+                if (symbology != Symbology.UNKNOWN) {
+                    mask |= 1 << symbology;
+                }
+            }
+            config.enabledSymbologies = mask;
+            fields |= ReaderOutputConfiguration.FIELD_SYMBOLOGIES;
+        }
+        readerConfigurator.request(config, fields);
+    }
+
+    private static DataOutputType parseDataOutput(String name) {
+        for (DataOutputType type : DataOutputType.values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown dataOutput: " + name);
+    }
+    
+    // 条码按UTF-8字节规范化后计算哈希，与扫描时的比对一致
+    private void loadExpectedSet(List<String> codes, List<? extends Number> quantities, Boolean bloom) {
+        long[] hashes = new long[codes.size()];
+        int[] targets = quantities != null ? new int[codes.size()] : null;
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = GtinKey.hash(codes.get(i).getBytes(StandardCharsets.UTF_8));
+            if (targets != null && i < quantities.size() && quantities.get(i) != null) {
+                targets[i] = quantities.get(i).intValue();
+            }
+        }
+        expectedSet.load(hashes, targets, bloom);
+    }
+    
+    private static int[] parseSymbologies(List<String> names) {
+        if (names == null) {
+            return new int[0];
+        }
+        int[] symbologies = new int[names.size()];
+        for (int i = 0; i < symbologies.length; i++) {
+            symbologies[i] = Symbology.parse(names.get(i));
+        }
+        return symbologies;
+    }
+    
+    // 按顺序重放日志中未确认的扫描，日志不可用时重发内存中的未确认记录
+    private void replayPendingScans() {
+        if (scanJournal == null) {
+            scanDelivery.resendPending();
+            return;
+        }
+        // 缓冲区中仍有的扫描带着码制、GS1、主数据等处理结果，由ScanDelivery重发；
+        // 日志只补发内存中已没有的 (进程重启前或已被缓冲区挤出的) 扫描
+        int[] count = {0};
+        scanJournal.replay((seq, timestamp, action, codeType, payload) -> {
+            if (scanDelivery.holds(seq)) {
+                return;
+            }
+            Map<String, Object> scan = new HashMap<>();
+            scan.put("seq", seq);
+            scan.put("timestamp", timestamp);
+            ScanRecord.ofBytes(payload, codeType, null).writeTo(scan, scanDelivery.getPayloadMode());
+            scan.put("replayed", true);
+            scanTransport.sendPrimary(scan);
+            count[0]++;
+        });
+        scanDelivery.resendPending();
+        scanLog.log(ScanLog.INFO, ScanLog.EVT_JOURNAL_REPLAYED, count[0]);
+        updateDebugInfo("journalReplayed", count[0]);
+    }
+    
+    private void updateDebugInfo(String key, Object value) {
+        // 只记录变化，由DebugState合并后统一通知Flutter端
+        debugState.put(key, value);
+    }
+
+    /**
+     * 将扫描日志写入存储，Activity销毁时调用；接收器和扫描线程随进程保留
+     */
+    public void sync() {
+        if (scanJournal != null) {
+            scanJournal.sync();
+        }
+    }
+
+    private void registerScanReceiver() {
+        if (scanReceiver == null) {
+            Log.d(TAG, "Creating new BroadcastReceiver for scan events");
+            updateDebugInfo("scanReceiverCreation", "Creating new receiver");
+            
+            scanReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    if (intent == null) {
+                        Log.e(TAG, "Received null intent");
+                        updateDebugInfo("lastError", "Received null intent");
+                        return;
+                    }
+                    
+                    String action = intent.getAction();
+                    if (!firstIntentSeen) {
+                        firstIntentSeen = true;
+                        startupTimings.mark("firstIntent");
+                    }
+                    
+                    // getExtras() 每次调用都会复制Bundle，只取一次
+                    Bundle extras = intent.getExtras();
+                    scanPipeline.onIntent(action, bundleExtras.wrap(extras));
+                    bundleExtras.wrap(null);
+                }
+            };
+            
+            // 创建IntentFilter来指定要接收的广播Action
+            IntentFilter filter = new IntentFilter();
+            
+            // 只添加当前厂商适配器的Intent actions
+            StringBuilder actionsLog = new StringBuilder();
+            for (String actionName : scannerAdapter.getActions()) {
+                filter.addAction(actionName);
+                actionsLog.append(actionName).append(", ");
+            }
+            
+            // 添加默认类别及厂商类别
+            filter.addCategory(Intent.CATEGORY_DEFAULT);
+            for (String category : scannerAdapter.getCategories()) {
+                filter.addCategory(category);
+            }
+            
+            updateDebugInfo("registeredActions", actionsLog.toString());
+            
+            try {
+                // 注册接收器，onReceive 在扫描线程上执行，不占用主线程
+                Handler handler = startScannerThread();
+                if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
+                    // Android 13及以上需要指定导出行为
+                    context.registerReceiver(scanReceiver, filter, null, handler, Context.RECEIVER_EXPORTED);
+                    Log.d(TAG, "ScanReceiver registered with RECEIVER_EXPORTED flag on scanner thread");
+                } else {
+                    context.registerReceiver(scanReceiver, filter, null, handler);
+                    Log.d(TAG, "ScanReceiver registered without flags on scanner thread");
+                }
+                updateDebugInfo("receiverStatus", "Registered");
+                startupTimings.mark("receiverRegistered");
+                updateDebugInfo("androidVersion", android.os.Build.VERSION.SDK_INT);
+                updateDebugInfo("pdaModel", android.os.Build.MODEL);
+                updateDebugInfo("pdaManufacturer", android.os.Build.MANUFACTURER);
+                
+                // 调试版本发送一个测试Intent给自己，验证接收器是否正常工作
+                // 正式版本不发送，避免每次启动都产生一条测试扫描
+                if (BuildConfig.DEBUG) {
+                    sendTestIntent();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error registering receiver: " + e.getMessage());
+                scanMetrics.recordError();
+                updateDebugInfo("lastError", "Receiver registration error: " + e.getMessage());
+                updateDebugInfo("receiverStatus", "Error");
+            }
+        } else {
+            Log.d(TAG, "ScanReceiver already registered");
+            updateDebugInfo("receiverStatus", "Already Registered");
+        }
+    }
+    
+    // 启动扫描线程，已启动时直接返回
+    private Handler startScannerThread() {
+        if (scannerHandler == null) {
+            scannerThread = new HandlerThread("GrokScanner-Scanner", Process.THREAD_PRIORITY_FOREGROUND);
+            scannerThread.start();
+            scannerHandler = new Handler(scannerThread.getLooper());
+            updateDebugInfo("scannerThread", scannerThread.getName());
+        }
+        return scannerHandler;
+    }
+    
+    private void stopScannerThread() {
+        if (scannerThread != null) {
+            scannerThread.quitSafely();
+            scannerThread = null;
+            scannerHandler = null;
+        }
+    }
+    
+    // ReaderService连接后下发期望的输出配置 (关闭键盘模拟)；由扫描线程调用，Get/Set 在配置线程上执行
+    private void configureReader() {
+        if (readerConfigurator != null) {
+            readerConfigurator.onServiceConnected();
+        }
+    }
+    
+    // 广播中找不到条码数据
+    private void reportNoBarcodeData() {
+        // EventSink 只能在平台线程上调用
+        uiScheduler.postDelayed(() -> {
+            if (eventSink != null) {
+                eventSink.error("SCAN_ERROR", "No barcode data found in any known key", null);
+            }
+        }, 0);
+    }
+    
+    // 发送测试Intent给自己
+    private void sendTestIntent() {
+        sendTestIntent("TEST_BARCODE_123");
+    }
+    
+    // 发送测试Intent给自己 (带数据)
+    private void sendTestIntent(String data) {
+        try {
+            Log.d(TAG, "Sending test intent to self with data: " + data);
+            Intent testIntent = new Intent(scannerAdapter.getScanAction());
+            testIntent.putExtra(scannerAdapter.getDataKey(), data);
+            testIntent.setPackage(context.getPackageName());
+            context.sendBroadcast(testIntent);
+            Log.d(TAG, "Test intent sent");
+            updateDebugInfo("testIntentSent", "true");
+            updateDebugInfo("testIntentData", data);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending test intent: " + e.getMessage());
+            updateDebugInfo("lastError", "Test intent error: " + e.getMessage());
+        }
+    }
+
+    private void unregisterScanReceiver() {
+        if (scanReceiver != null) {
+            try {
+                Log.d(TAG, "Unregistering ScanReceiver");
+                context.unregisterReceiver(scanReceiver);
+                scanReceiver = null;
+                Log.d(TAG, "ScanReceiver unregistered successfully");
+                updateDebugInfo("receiverStatus", "Unregistered");
+            } catch (IllegalArgumentException e) {
+                // 如果接收器未註冊，可能會拋出此異常，可以安全地忽略
+                Log.e(TAG, "Error unregistering receiver: " + e.getMessage());
+                updateDebugInfo("lastError", "Unregister error: " + e.getMessage());
+            }
+        } else {
+            Log.d(TAG, "ScanReceiver is already null, nothing to unregister");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.grokscanner;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+/**
+ * 前台扫描服务
+ * 持有扫描运行时的运行状态 (ReaderManager、广播接收器、扫描缓冲区)，Activity重建或退到后台时扫描不中断；
+ * 服务停止 (下班) 时才注销接收器。班次状态持久化，以它为准: Activity只绑定不启动，下班后重新打开应用也不会恢复扫描。
+ */
+public class ScannerService extends Service {
+    private static final String TAG = "GrokScanner";
+    private static final String NOTIFICATION_CHANNEL = "scanner_service";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String PREFS_NAME = "scanner_service";
+    private static final String KEY_SHIFT_ACTIVE = "shiftActive";
+
+    // 绑定只用于统计客户端，不提供接口
+    private final Binder binder = new Binder();
+    private ScannerRuntime runtime;
+    private int boundClients = 0;
+
+    /**
+     * 班次是否进行中；首次安装时视为进行中，与打开应用即可扫描的行为一致
+     */
+    public static boolean isShiftActive(Context context) {
+        return preferences(context).getBoolean(KEY_SHIFT_ACTIVE, true);
+    }
+
+    /**
+     * 开始班次并启动服务，已在运行时不重复初始化
+     */
+    public static void start(Context context) {
+        preferences(context).edit().putBoolean(KEY_SHIFT_ACTIVE, true).apply();
+        startForegroundService(context);
+    }
+
+    /**
+     * 结束班次并停止服务，注销接收器并停止扫描线程
+     */
+    public static void stop(Context context) {
+        preferences(context).edit().putBoolean(KEY_SHIFT_ACTIVE, false).apply();
+        context.stopService(new Intent(context, ScannerService.class));
+    }
+
+    /**
+     * 班次进行中时恢复服务 (进程重新启动后)，班次已结束时不启动
+     * @return 是否已请求启动；应用在后台时系统可能拒绝启动前台服务
+     */
+    public static boolean resume(Context context) {
+        if (!isShiftActive(context)) {
+            return false;
+        }
+        try {
+            startForegroundService(context);
+            return true;
+        } catch (IllegalStateException e) {
+            // Android 12起后台启动前台服务抛出 ForegroundServiceStartNotAllowedException
+            Log.w(TAG, "ScannerService not resumed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void startForegroundService(Context context) {
+        Intent intent = new Intent(context, ScannerService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        runtime = ((GrokScannerApplication) getApplicationContext()).getScannerRuntime();
+        startInForeground();
+        // Application中已启动时直接返回
+        runtime.start();
+        runtime.onServiceStateChanged("Running", boundClients);
+        Log.d(TAG, "ScannerService created");
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // 进程被回收后由系统重新创建，继续接收扫描
+        return START_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        boundClients++;
+        runtime.onServiceStateChanged("Running", boundClients);
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        boundClients++;
+        runtime.onServiceStateChanged("Running", boundClients);
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        boundClients = Math.max(0, boundClients - 1);
+        runtime.onServiceStateChanged("Running", boundClients);
+        // 返回true，重新绑定时调用 onRebind
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        runtime.stop();
+        runtime.onServiceStateChanged("Stopped", 0);
+        Log.d(TAG, "ScannerService destroyed");
+        super.onDestroy();
+    }
+
+    private void startInForeground() {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    NOTIFICATION_CHANNEL, "Scanner", NotificationManager.IMPORTANCE_LOW);
+            channel.setShowBadge(false);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+            builder = new Notification.Builder(this, NOTIFICATION_CHANNEL);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+        Intent open = new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        Notification notification = builder
+                .setContentTitle("GrokScanner")
+                .setContentText("Scanning service running")
+                .setSmallIcon(getApplicationInfo().icon)
+                .setCategory(Notification.CATEGORY_SERVICE)
+                .setOngoing(true)
+                .setShowWhen(false)
+                .setContentIntent(PendingIntent.getActivity(this, 0, open, PendingIntent.FLAG_IMMUTABLE))
+                .build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+}
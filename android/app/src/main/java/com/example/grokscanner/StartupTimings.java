@@ -0,0 +1,41 @@
+package com.example.grokscanner;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 启动阶段耗时
+ * 以进程启动为起点，记录每个阶段首次到达的时间 (毫秒)，用于比较冷启动到可以扫描的时间。
+ */
+public class StartupTimings {
+    private final long processStart;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    public StartupTimings() {
+        // Android 7.0 以下无法取得进程启动时间，以创建时间为起点
+        processStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartElapsedRealtime()
+                : SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 记录阶段到达时间，同一阶段只记录第一次
+     * @param phase 阶段名称
+     */
+    public synchronized void mark(String phase) {
+        if (!phases.containsKey(phase)) {
+            phases.put(phase, SystemClock.elapsedRealtime() - processStart);
+        }
+    }
+
+    /**
+     * 按到达顺序返回各阶段距进程启动的毫秒数
+     */
+    public synchronized Map<String, Object> snapshot() {
+        return new LinkedHashMap<>(phases);
+    }
+}
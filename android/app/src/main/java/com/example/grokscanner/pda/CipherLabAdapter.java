@@ -0,0 +1,74 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+import java.util.Locale;
+
+/**
+ * CipherLab 设备适配
+ * 使用原厂 ReaderManager 及 {@link GeneralString} 中的Action和数据键
+ */
+public class CipherLabAdapter implements ScannerAdapter {
+    private static final String[] ACTIONS = {
+        GeneralString.Intent_PASS_TO_APP,
+        GeneralString.Intent_READERSERVICE_CONNECTED,
+        GeneralString.Intent_DECODE_ERROR,
+    };
+
+    @Override
+    public String getName() {
+        return "CipherLab";
+    }
+
+    @Override
+    public boolean matches(String manufacturer, String model) {
+        return manufacturer != null && manufacturer.toLowerCase(Locale.ROOT).contains("cipherlab");
+    }
+
+    @Override
+    public String[] getActions() {
+        return ACTIONS;
+    }
+
+    @Override
+    public String getScanAction() {
+        return GeneralString.Intent_PASS_TO_APP;
+    }
+
+    @Override
+    public String getDataKey() {
+        return GeneralString.BcReaderData;
+    }
+
+    @Override
+    public boolean usesReaderManager() {
+        return true;
+    }
+
+    @Override
+    public boolean isServiceConnected(String action) {
+        return GeneralString.Intent_READERSERVICE_CONNECTED.equals(action);
+    }
+
+    @Override
+    public boolean isDecodeError(String action) {
+        return GeneralString.Intent_DECODE_ERROR.equals(action);
+    }
+
+    @Override
+    public boolean extract(String action, ScanExtras extras, VendorScan out) {
+        if (!GeneralString.Intent_PASS_TO_APP.equals(action) || extras == null) {
+            return false;
+        }
+        Object data = extras.get(GeneralString.BcReaderData);
+        Object raw = extras.get(GeneralString.BcReaderDataArray);
+        Object codeType = extras.get(GeneralString.BcReaderCodeType);
+        Object symbology = extras.get(GeneralString.BcReaderCodeTypeStr);
+        out.data = data instanceof String ? (String) data : null;
+        out.rawData = raw instanceof byte[] ? (byte[]) raw : null;
+        out.codeType = codeType instanceof Number ? ((Number) codeType).intValue() : VendorScan.CODE_TYPE_UNKNOWN;
+        out.symbology = symbology instanceof String ? (String) symbology : null;
+        out.dataKey = GeneralString.BcReaderData;
+        return ScannerAdapters.hasData(out);
+    }
+}
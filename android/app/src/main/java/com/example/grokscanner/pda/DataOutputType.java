@@ -0,0 +1,22 @@
+package com.example.grokscanner.pda;
+
+/**
+ * PDA设备的条码数据输出方式枚举
+ * 根据PDA原厂提供的实现
+ */
+public enum DataOutputType {
+    /**
+     * 以键盘输入方式输出
+     */
+    Keyboard,
+
+    /**
+     * 以广播 (Intent) 输出
+     */
+    Intent,
+
+    /**
+     * 写入剪贴板
+     */
+    Clipboard,
+}
@@ -0,0 +1,65 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+import java.util.Locale;
+
+/**
+ * Datalogic 设备适配
+ * 使用 Intent Wedge 的默认Action和Category
+ */
+public class DatalogicAdapter implements ScannerAdapter {
+    public static final String ACTION_SCAN = "com.datalogic.decodewedge.decode_action";
+    public static final String CATEGORY_SCAN = "com.datalogic.decodewedge.decode_category";
+    public static final String EXTRA_BARCODE_STRING = "com.datalogic.decode.intentwedge.barcode_string";
+    public static final String EXTRA_BARCODE_TYPE = "com.datalogic.decode.intentwedge.barcode_type";
+    public static final String EXTRA_BARCODE_DATA = "com.datalogic.decode.intentwedge.barcode_data";
+
+    private static final String[] ACTIONS = {ACTION_SCAN};
+    private static final String[] CATEGORIES = {CATEGORY_SCAN};
+
+    @Override
+    public String getName() {
+        return "Datalogic";
+    }
+
+    @Override
+    public boolean matches(String manufacturer, String model) {
+        return manufacturer != null && manufacturer.toLowerCase(Locale.ROOT).contains("datalogic");
+    }
+
+    @Override
+    public String[] getActions() {
+        return ACTIONS;
+    }
+
+    @Override
+    public String[] getCategories() {
+        return CATEGORIES;
+    }
+
+    @Override
+    public String getScanAction() {
+        return ACTION_SCAN;
+    }
+
+    @Override
+    public String getDataKey() {
+        return EXTRA_BARCODE_STRING;
+    }
+
+    @Override
+    public boolean extract(String action, ScanExtras extras, VendorScan out) {
+        if (!ACTION_SCAN.equals(action) || extras == null) {
+            return false;
+        }
+        Object data = extras.get(EXTRA_BARCODE_STRING);
+        Object raw = extras.get(EXTRA_BARCODE_DATA);
+        Object type = extras.get(EXTRA_BARCODE_TYPE);
+        out.data = data instanceof String ? (String) data : null;
+        out.rawData = raw instanceof byte[] ? (byte[]) raw : null;
+        out.symbology = type instanceof String ? (String) type : null;
+        out.dataKey = EXTRA_BARCODE_STRING;
+        return ScannerAdapters.hasData(out);
+    }
+}
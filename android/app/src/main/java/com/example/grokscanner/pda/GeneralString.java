@@ -75,6 +75,14 @@ public class GeneralString {
         "scan_result",
     };
 
+    // 只描述条码的附加信息，不作为条码数据
+    public static final String[] NON_DATA_KEYS = {
+        BcReaderDataArray,
+        BcReaderCodeType,
+        BcReaderCodeTypeStr,
+        BcReaderDecodeError,
+    };
+
     public GeneralString() {
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.DataKeyResolver;
+import com.example.grokscanner.scan.ScanExtras;
+
+/**
+ * 未知设备的通用适配
+ * 注册常见的扫描器Action，通过 {@link DataKeyResolver} 学习并缓存数据键
+ */
+public class GenericAdapter implements ScannerAdapter {
+    private final DataKeyResolver resolver;
+    private final String[] actions;
+
+    public GenericAdapter(DataKeyResolver resolver) {
+        this.resolver = resolver;
+        // 不注册 android.intent.action.MAIN 这类与扫描无关的Action
+        int count = 0;
+        String[] filtered = new String[GeneralString.COMMON_SCANNER_ACTIONS.length];
+        for (String action : GeneralString.COMMON_SCANNER_ACTIONS) {
+            if (!action.startsWith("android.intent.action.MAIN")) {
+                filtered[count++] = action;
+            }
+        }
+        actions = new String[count];
+        System.arraycopy(filtered, 0, actions, 0, count);
+    }
+
+    @Override
+    public String getName() {
+        return "Generic";
+    }
+
+    @Override
+    public boolean matches(String manufacturer, String model) {
+        return true;
+    }
+
+    @Override
+    public String[] getActions() {
+        return actions;
+    }
+
+    @Override
+    public String getScanAction() {
+        return GeneralString.Intent_PASS_TO_APP;
+    }
+
+    @Override
+    public String getDataKey() {
+        return GeneralString.BcReaderData;
+    }
+
+    @Override
+    public boolean isServiceConnected(String action) {
+        // 注册了原厂的服务连接广播，它不携带条码数据
+        return GeneralString.Intent_READERSERVICE_CONNECTED.equals(action);
+    }
+
+    @Override
+    public boolean isDecodeError(String action) {
+        return GeneralString.Intent_DECODE_ERROR.equals(action);
+    }
+
+    @Override
+    public boolean extract(String action, ScanExtras extras, VendorScan out) {
+        out.data = resolver.resolve(action, extras);
+        out.dataKey = resolver.getLastKey();
+        return out.data != null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+import java.util.Locale;
+
+/**
+ * Honeywell 设备适配
+ * 扫描设置中需启用 Data Intent，Action 设为 {@link #ACTION_SCAN}
+ */
+public class HoneywellAdapter implements ScannerAdapter {
+    public static final String ACTION_SCAN = "com.honeywell.decode.intent.action.BARCODE_DATA";
+    public static final String EXTRA_DATA = "data";
+    public static final String EXTRA_DATA_BYTES = "dataBytes";
+    public static final String EXTRA_CODE_ID = "codeId";
+    public static final String EXTRA_AIM_ID = "aimId";
+
+    private static final String[] ACTIONS = {ACTION_SCAN};
+
+    @Override
+    public String getName() {
+        return "Honeywell";
+    }
+
+    @Override
+    public boolean matches(String manufacturer, String model) {
+        return manufacturer != null && manufacturer.toLowerCase(Locale.ROOT).contains("honeywell");
+    }
+
+    @Override
+    public String[] getActions() {
+        return ACTIONS;
+    }
+
+    @Override
+    public String getScanAction() {
+        return ACTION_SCAN;
+    }
+
+    @Override
+    public String getDataKey() {
+        return EXTRA_DATA;
+    }
+
+    @Override
+    public boolean extract(String action, ScanExtras extras, VendorScan out) {
+        if (!ACTION_SCAN.equals(action) || extras == null) {
+            return false;
+        }
+        Object data = extras.get(EXTRA_DATA);
+        Object raw = extras.get(EXTRA_DATA_BYTES);
+        Object aimId = extras.get(EXTRA_AIM_ID);
+        Object codeId = extras.get(EXTRA_CODE_ID);
+        out.data = data instanceof String ? (String) data : null;
+        out.rawData = raw instanceof byte[] ? (byte[]) raw : null;
+        // 优先使用AIM标识作为码制名称
+        if (aimId instanceof String) {
+            out.symbology = (String) aimId;
+        } else if (codeId instanceof String) {
+            out.symbology = (String) codeId;
+        }
+        out.dataKey = EXTRA_DATA;
+        return ScannerAdapters.hasData(out);
+    }
+}
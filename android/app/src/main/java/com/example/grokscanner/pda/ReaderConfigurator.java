@@ -0,0 +1,236 @@
+package com.example.grokscanner.pda;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读取器输出配置的缓存和下发
+ * 原厂SDK的 Get/Set 是跨进程调用，每次数十到数百毫秒；这里在内存中保存最近一次读取或下发的配置，
+ * 只有期望配置与之不同时才调用 Set，没有缓存时先 Get 一次设备的当前配置再比较。
+ * 读取器服务重启后可能恢复了自己的设置，每次服务连接 ({@link #onServiceConnected()}) 都丢弃缓存、重新读取后再比较；
+ * 已下发的配置不持久化，进程重启后同样重新读取。
+ * 只比较和覆盖本应用管理的字段，其余字段保持设备上的设置。
+ * 下发在单独的工作线程上执行，不阻塞扫描线程；多次 request 在下发前合并为一次。
+ * 设备配置被其他应用修改时缓存会过期，调用 {@link #invalidate()} 重新读取。
+ */
+public class ReaderConfigurator {
+    static final String KEY_DESIRED = "desired";
+    // 旧版本保存的已下发配置，启动时删除
+    static final String KEY_APPLIED = "applied";
+    static final String KEY_MANAGED = "managed";
+
+    /**
+     * 配置持久化，值为 {@link ReaderOutputConfiguration#encode()} 的结果
+     */
+    public interface Store {
+        String load(String key);
+
+        void save(String key, String value);
+
+        void remove(String key);
+    }
+
+    /**
+     * 下发结果回调，在工作线程上调用
+     */
+    public interface Listener {
+        /**
+         * @param changedFields 下发的字段，ReaderOutputConfiguration.FIELD_* 位
+         */
+        void onApplied(ReaderOutputConfiguration config, int changedFields, long elapsedNanos);
+
+        /** 设备配置已与期望一致，未调用 Set */
+        void onUnchanged(ReaderOutputConfiguration config);
+
+        void onFailed(Exception e);
+    }
+
+    private final ReaderControl reader;
+    private final Store store;
+    private final Listener listener;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GrokScanner-ReaderConfig");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    // desired 和 managedFields 由调用线程写入，applied 只在工作线程上访问
+    private final ReaderOutputConfiguration desired;
+    private int managedFields;
+    private ReaderOutputConfiguration applied;
+    private volatile boolean invalidated = false;
+
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong unchangedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong totalApplyNanos = new AtomicLong();
+    private volatile long lastApplyNanos = 0;
+    private volatile long maxApplyNanos = 0;
+    private volatile int lastChangedFields = 0;
+    private volatile String lastError = null;
+
+    /**
+     * @param defaults 没有保存的期望配置时使用
+     * @param defaultFields defaults 中由本应用管理的字段，ReaderOutputConfiguration.FIELD_* 位
+     */
+    public ReaderConfigurator(ReaderControl reader, Store store, ReaderOutputConfiguration defaults, int defaultFields,
+                              Listener listener) {
+        this.reader = reader;
+        this.store = store;
+        this.listener = listener;
+        ReaderOutputConfiguration saved = ReaderOutputConfiguration.decode(store.load(KEY_DESIRED));
+        desired = new ReaderOutputConfiguration();
+        desired.copyFrom(saved != null ? saved : defaults);
+        managedFields = saved != null ? parseFields(store.load(KEY_MANAGED), defaultFields) : defaultFields;
+        store.remove(KEY_APPLIED);
+    }
+
+    /**
+     * 读取器服务已连接: 服务可能刚重启并恢复了自己的设置，重新读取设备配置后按期望配置下发
+     */
+    public void onServiceConnected() {
+        invalidated = true;
+        schedule();
+    }
+
+    /**
+     * 按当前期望配置下发，使用缓存的设备配置比较
+     */
+    public void apply() {
+        schedule();
+    }
+
+    /**
+     * 修改期望配置的部分字段并下发，这些字段之后由本应用管理
+     * @param config 新的期望配置，只复制 fields 指定的字段
+     * @param fields ReaderOutputConfiguration.FIELD_* 位
+     */
+    public void request(ReaderOutputConfiguration config, int fields) {
+        synchronized (desired) {
+            desired.copyFields(config, fields);
+            managedFields |= fields;
+            store.save(KEY_DESIRED, desired.encode());
+            store.save(KEY_MANAGED, Integer.toString(managedFields));
+        }
+        schedule();
+    }
+
+    /**
+     * 丢弃已下发配置的缓存，下次下发前重新读取设备配置
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * @return 当前期望配置的副本
+     */
+    public ReaderOutputConfiguration getDesired() {
+        ReaderOutputConfiguration copy = new ReaderOutputConfiguration();
+        synchronized (desired) {
+            copy.copyFrom(desired);
+        }
+        return copy;
+    }
+
+    public int getManagedFields() {
+        synchronized (desired) {
+            return managedFields;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long applies = appliedCount.get();
+        stats.put("applied", applies);
+        stats.put("unchanged", unchangedCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("reads", readCount.get());
+        stats.put("pending", pending.get());
+        stats.put("lastApplyMs", lastApplyNanos / 1_000_000.0);
+        stats.put("maxApplyMs", maxApplyNanos / 1_000_000.0);
+        stats.put("avgApplyMs", applies > 0 ? totalApplyNanos.get() / 1_000_000.0 / applies : 0.0);
+        stats.put("lastChangedFields", lastChangedFields);
+        stats.put("lastError", lastError);
+        stats.put("desired", getDesired().encode());
+        stats.put("managedFields", getManagedFields());
+        return stats;
+    }
+
+    /**
+     * 停止工作线程，未执行的下发丢弃
+     */
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // 已有未执行的下发时不重复提交，执行时读取最新的期望配置
+    private void schedule() {
+        if (pending.compareAndSet(false, true)) {
+            worker.execute(this::applyPending);
+        }
+    }
+
+    private void applyPending() {
+        pending.set(false);
+        ReaderOutputConfiguration wanted;
+        int fields;
+        synchronized (desired) {
+            wanted = getDesired();
+            fields = managedFields;
+        }
+        try {
+            if (applied == null || invalidated) {
+                invalidated = false;
+                ReaderOutputConfiguration current = new ReaderOutputConfiguration();
+                reader.Get_ReaderOutputConfiguration(current);
+                readCount.incrementAndGet();
+                applied = current;
+            }
+            int changed = wanted.diff(applied) & fields;
+            if (changed == 0) {
+                unchangedCount.incrementAndGet();
+                listener.onUnchanged(applied);
+                return;
+            }
+            // 未管理的字段沿用设备上的设置
+            ReaderOutputConfiguration target = new ReaderOutputConfiguration();
+            target.copyFrom(applied);
+            target.copyFields(wanted, fields);
+            long start = System.nanoTime();
+            reader.Set_ReaderOutputConfiguration(target);
+            long elapsed = System.nanoTime() - start;
+            applied = target;
+            appliedCount.incrementAndGet();
+            totalApplyNanos.addAndGet(elapsed);
+            lastApplyNanos = elapsed;
+            maxApplyNanos = Math.max(maxApplyNanos, elapsed);
+            lastChangedFields = changed;
+            lastError = null;
+            listener.onApplied(target, changed, elapsed);
+        } catch (Exception e) {
+            // 设备状态未知，下次重新读取
+            applied = null;
+            failedCount.incrementAndGet();
+            lastError = e.getMessage();
+            listener.onFailed(e);
+        }
+    }
+
+    private static int parseFields(String value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
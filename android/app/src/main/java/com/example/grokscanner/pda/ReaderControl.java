@@ -0,0 +1,25 @@
+package com.example.grokscanner.pda;
+
+/**
+ * 读取器的控制接口，由 {@link ReaderManager} 实现
+ * {@link ReaderConfigurator} 和 {@link SoftTriggerController} 只依赖此接口，可用模拟的读取器在JVM上测试。
+ */
+public interface ReaderControl {
+    /**
+     * 获取读取器输出配置
+     * @param config 配置对象
+     */
+    void Get_ReaderOutputConfiguration(ReaderOutputConfiguration config);
+
+    /**
+     * 设置读取器输出配置
+     * @param config 配置对象
+     */
+    void Set_ReaderOutputConfiguration(ReaderOutputConfiguration config);
+
+    /**
+     * 软件触发一次扫描，解码结果仍以广播返回
+     * @return 触发请求是否被读取器服务接受
+     */
+    boolean SoftScanTrigger();
+}
@@ -6,7 +6,7 @@ import android.content.Context;
  * PDA设备的读取器管理类
  * 根据PDA原厂提供的实现
  */
-public class ReaderManager {
+public class ReaderManager implements ReaderControl {
     private static ReaderManager instance;
     private Context context;
 
@@ -30,6 +30,7 @@ public class ReaderManager {
      * 获取读取器输出配置
      * @param config 配置对象
      */
+    @Override
     public void Get_ReaderOutputConfiguration(ReaderOutputConfiguration config) {
         // 这里应该是调用PDA设备SDK的实际实现
         // 由于我们没有实际的SDK，这里只是一个模拟实现
@@ -40,9 +41,21 @@ public class ReaderManager {
      * 设置读取器输出配置
      * @param config 配置对象
      */
+    @Override
     public void Set_ReaderOutputConfiguration(ReaderOutputConfiguration config) {
         // 这里应该是调用PDA设备SDK的实际实现
         // 由于我们没有实际的SDK，这里只是一个模拟实现
         System.out.println("Setting reader output configuration: KeyboardEmulation=" + config.enableKeyboardEmulation);
     }
-}
\ No newline at end of file
+
+    /**
+     * 软件触发一次扫描
+     * @return 触发请求是否被接受
+     */
+    @Override
+    public boolean SoftScanTrigger() {
+        // 这里应该是调用PDA设备SDK的实际实现
+        // 由于我们没有实际的SDK，这里只是一个模拟实现
+        return true;
+    }
+}
@@ -1,14 +1,194 @@
 package com.example.grokscanner.pda;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
 /**
  * PDA设备的读取器输出配置类
- * 根据PDA原厂提供的实现
+ * 根据PDA原厂提供的实现，附加比较、复制和序列化，用于只下发有变化的配置
  */
 public class ReaderOutputConfiguration {
+    // diff 返回的字段位
+    public static final int FIELD_KEYBOARD_EMULATION = 1;
+    public static final int FIELD_DATA_OUTPUT = 1 << 1;
+    public static final int FIELD_PREFIX = 1 << 2;
+    public static final int FIELD_SUFFIX = 1 << 3;
+    public static final int FIELD_SHOW_CODE_TYPE = 1 << 4;
+    public static final int FIELD_SHOW_CODE_LEN = 1 << 5;
+    public static final int FIELD_SYMBOLOGIES = 1 << 6;
+    public static final int ALL_FIELDS = (1 << 7) - 1;
+
+    /** 全部码制启用 */
+    public static final int ALL_SYMBOLOGIES = -1;
+
     /**
      * 键盘模拟类型
      */
     public KeyboardEmulationType enableKeyboardEmulation = KeyboardEmulationType.Default;
-    
-    // 其他配置属性可以根据PDA原厂的实际实现添加
-}
\ No newline at end of file
+
+    /**
+     * 数据输出方式
+     */
+    public DataOutputType dataOutput = DataOutputType.Keyboard;
+
+    /**
+     * 条码前缀
+     */
+    public String szPrefixCode = "";
+
+    /**
+     * 条码后缀
+     */
+    public String szSuffixCode = "";
+
+    /**
+     * 输出时附加码制名称
+     */
+    public boolean showCodeType = false;
+
+    /**
+     * 输出时附加条码长度
+     */
+    public boolean showCodeLen = false;
+
+    /**
+     * 启用的码制，第i位对应 Symbology 常量i
+     */
+    public int enabledSymbologies = ALL_SYMBOLOGIES;
+
+    /**
+     * 复制全部字段
+     */
+    public void copyFrom(ReaderOutputConfiguration other) {
+        copyFields(other, ALL_FIELDS);
+    }
+
+    /**
+     * 复制指定字段
+     * @param fields FIELD_* 位
+     */
+    public void copyFields(ReaderOutputConfiguration other, int fields) {
+        if ((fields & FIELD_KEYBOARD_EMULATION) != 0) {
+            enableKeyboardEmulation = other.enableKeyboardEmulation;
+        }
+        if ((fields & FIELD_DATA_OUTPUT) != 0) {
+            dataOutput = other.dataOutput;
+        }
+        if ((fields & FIELD_PREFIX) != 0) {
+            szPrefixCode = other.szPrefixCode;
+        }
+        if ((fields & FIELD_SUFFIX) != 0) {
+            szSuffixCode = other.szSuffixCode;
+        }
+        if ((fields & FIELD_SHOW_CODE_TYPE) != 0) {
+            showCodeType = other.showCodeType;
+        }
+        if ((fields & FIELD_SHOW_CODE_LEN) != 0) {
+            showCodeLen = other.showCodeLen;
+        }
+        if ((fields & FIELD_SYMBOLOGIES) != 0) {
+            enabledSymbologies = other.enabledSymbologies;
+        }
+    }
+
+    /**
+     * 与另一份配置比较
+     * @return 不同字段的 FIELD_* 位，0表示相同
+     */
+    public int diff(ReaderOutputConfiguration other) {
+        int changed = 0;
+        if (enableKeyboardEmulation != other.enableKeyboardEmulation) {
+            changed |= FIELD_KEYBOARD_EMULATION;
+        }
+        if (dataOutput != other.dataOutput) {
+            changed |= FIELD_DATA_OUTPUT;
+        }
+        if (!szPrefixCode.equals(other.szPrefixCode)) {
+            changed |= FIELD_PREFIX;
+        }
+        if (!szSuffixCode.equals(other.szSuffixCode)) {
+            changed |= FIELD_SUFFIX;
+        }
+        if (showCodeType != other.showCodeType) {
+            changed |= FIELD_SHOW_CODE_TYPE;
+        }
+        if (showCodeLen != other.showCodeLen) {
+            changed |= FIELD_SHOW_CODE_LEN;
+        }
+        if (enabledSymbologies != other.enabledSymbologies) {
+            changed |= FIELD_SYMBOLOGIES;
+        }
+        return changed;
+    }
+
+    /**
+     * 序列化为 key=value&... 形式，用于持久化
+     */
+    public String encode() {
+        return "keyboard=" + enableKeyboardEmulation.name()
+                + "&output=" + dataOutput.name()
+                + "&prefix=" + escape(szPrefixCode)
+                + "&suffix=" + escape(szSuffixCode)
+                + "&codeType=" + showCodeType
+                + "&codeLen=" + showCodeLen
+                + "&symbologies=" + enabledSymbologies;
+    }
+
+    /**
+     * 由 {@link #encode()} 的结果恢复
+     * @return 配置，格式无法识别时返回null
+     */
+    public static ReaderOutputConfiguration decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        ReaderOutputConfiguration config = new ReaderOutputConfiguration();
+        try {
+            for (String pair : encoded.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator < 0) {
+                    return null;
+                }
+                String value = pair.substring(separator + 1);
+                switch (pair.substring(0, separator)) {
+                    case "keyboard":
+                        config.enableKeyboardEmulation = KeyboardEmulationType.valueOf(value);
+                        break;
+                    case "output":
+                        config.dataOutput = DataOutputType.valueOf(value);
+                        break;
+                    case "prefix":
+                        config.szPrefixCode = URLDecoder.decode(value, "UTF-8");
+                        break;
+                    case "suffix":
+                        config.szSuffixCode = URLDecoder.decode(value, "UTF-8");
+                        break;
+                    case "codeType":
+                        config.showCodeType = Boolean.parseBoolean(value);
+                        break;
+                    case "codeLen":
+                        config.showCodeLen = Boolean.parseBoolean(value);
+                        break;
+                    case "symbologies":
+                        config.enabledSymbologies = Integer.parseInt(value);
+                        break;
+                    default:
+                        // 新版本增加的字段，忽略
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return null;
+        }
+        return config;
+    }
+
+    private static String escape(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+/**
+ * PDA厂商适配接口
+ * 每个厂商只注册自己的广播Action，并直接从已知的extra键中取出条码数据，不做探测
+ */
+public interface ScannerAdapter {
+    /**
+     * 适配器名称
+     */
+    String getName();
+
+    /**
+     * 是否适用于当前设备
+     * @param manufacturer Build.MANUFACTURER
+     * @param model Build.MODEL
+     */
+    boolean matches(String manufacturer, String model);
+
+    /**
+     * 需要注册的广播Action
+     */
+    String[] getActions();
+
+    /**
+     * 需要注册的广播Category，没有时返回空数组
+     */
+    default String[] getCategories() {
+        return new String[0];
+    }
+
+    /**
+     * 扫描数据广播的Action，用于发送测试广播
+     */
+    String getScanAction();
+
+    /**
+     * 扫描数据广播中条码文本的extra键，用于发送测试广播
+     */
+    String getDataKey();
+
+    /**
+     * 是否需要通过 {@link ReaderManager} 配置读取器
+     */
+    default boolean usesReaderManager() {
+        return false;
+    }
+
+    /**
+     * 是否为读取器服务已连接的广播
+     */
+    default boolean isServiceConnected(String action) {
+        return false;
+    }
+
+    /**
+     * 是否为解码失败的广播
+     */
+    default boolean isDecodeError(String action) {
+        return false;
+    }
+
+    /**
+     * 从广播中取出扫描结果
+     * @param action 广播Action
+     * @param extras 广播附加数据
+     * @param out 输出，调用前已重置
+     * @return 是否取得条码数据
+     */
+    boolean extract(String action, ScanExtras extras, VendorScan out);
+}
@@ -0,0 +1,39 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.DataKeyResolver;
+
+/**
+ * 根据设备厂商和型号选择适配器
+ */
+public class ScannerAdapters {
+    private ScannerAdapters() {
+    }
+
+    /**
+     * 选择适用于当前设备的适配器，没有匹配的厂商时使用通用适配
+     * @param manufacturer Build.MANUFACTURER
+     * @param model Build.MODEL
+     * @param resolver 通用适配使用的数据键解析器
+     */
+    public static ScannerAdapter select(String manufacturer, String model, DataKeyResolver resolver) {
+        ScannerAdapter[] adapters = {
+            new CipherLabAdapter(),
+            new ZebraAdapter(),
+            new HoneywellAdapter(),
+            new DatalogicAdapter(),
+        };
+        for (ScannerAdapter adapter : adapters) {
+            if (adapter.matches(manufacturer, model)) {
+                return adapter;
+            }
+        }
+        return new GenericAdapter(resolver);
+    }
+
+    /**
+     * 是否取得条码数据，文本或原始字节任一不为空即可；原始字节不在此解码
+     */
+    static boolean hasData(VendorScan scan) {
+        return (scan.data != null && !scan.data.isEmpty()) || (scan.rawData != null && scan.rawData.length > 0);
+    }
+}
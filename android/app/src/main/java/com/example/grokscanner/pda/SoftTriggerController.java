@@ -0,0 +1,276 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连续扫描模式的软触发控制
+ * 输送线和台式工位由原生端按节奏调用 {@link ReaderControl#SoftScanTrigger()}，不再依赖Flutter端的计时器，UI繁忙时不会抖动。
+ * 触发间隔自适应: 触发后解码成功时缩短 (有条码经过)，到下次触发仍未解码时逐步拉长 (空闲)。
+ * 发送缓冲区的积压超过下限后按比例拉长间隔，达到上限时暂停触发，降到下限后恢复，Flutter端跟不上时不再继续产生扫描。
+ * 触发和调度在单独的工作线程上执行，解码结果可在任意线程上报告。
+ */
+public class SoftTriggerController {
+    /**
+     * 待Flutter端处理的扫描数 (发送缓冲区中未确认的扫描)
+     */
+    public interface Backlog {
+        int getPending();
+    }
+
+    /**
+     * 暂停和恢复回调，在工作线程上调用
+     */
+    public interface Listener {
+        void onPaused(int pending);
+
+        void onResumed(int pending, long pausedNanos);
+    }
+
+    public static final long DEFAULT_MIN_INTERVAL_MS = 100;
+    public static final long DEFAULT_MAX_INTERVAL_MS = 1000;
+    public static final int DEFAULT_HIGH_WATERMARK = 64;
+    public static final int DEFAULT_LOW_WATERMARK = 16;
+    // 暂停期间检查积压的间隔
+    static final long BACKLOG_POLL_MS = 50;
+    // 解码成功时间隔乘以的系数，未解码时乘以的系数
+    private static final double SPEEDUP = 0.5;
+    private static final double BACKOFF = 1.25;
+
+    private final ReaderControl reader;
+    private final Backlog backlog;
+    private final Listener listener;
+    private final ScheduledThreadPoolExecutor worker;
+
+    // 以下字段都在 synchronized 中访问
+    private long minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_INTERVAL_MS);
+    private long maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_INTERVAL_MS);
+    private int highWatermark = DEFAULT_HIGH_WATERMARK;
+    private int lowWatermark = DEFAULT_LOW_WATERMARK;
+    private boolean running = false;
+    // 每次开始加一，停止后仍在执行的旧任务不再继续调度
+    private int generation = 0;
+    private boolean paused = false;
+    private long intervalNanos;
+    private long lastTriggerNanos;
+    private boolean awaitingDecode = false;
+    private ScheduledFuture<?> next;
+    private long startNanos;
+    private long stopNanos;
+    private long pausedSinceNanos;
+    private long pausedTotalNanos;
+
+    private long triggerCount;
+    private long decodeCount;
+    private long missCount;
+    private long triggerFailureCount;
+    private long pauseCount;
+    private final LatencyHistogram triggerToDecode = new LatencyHistogram();
+
+    public SoftTriggerController(ReaderControl reader, Backlog backlog, Listener listener) {
+        this.reader = reader;
+        this.backlog = backlog;
+        this.listener = listener;
+        worker = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "GrokScanner-SoftTrigger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 开始连续扫描，已在运行时只更新参数
+     * @param minIntervalMs 最短触发间隔 (连续解码成功时)
+     * @param maxIntervalMs 最长触发间隔 (空闲或积压时)
+     * @param highWatermark 积压达到此值时暂停
+     * @param lowWatermark 积压超过此值时拉长间隔，暂停后降到此值时恢复
+     */
+    public synchronized void start(long minIntervalMs, long maxIntervalMs, int highWatermark, int lowWatermark) {
+        minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, minIntervalMs));
+        maxIntervalNanos = Math.max(minIntervalNanos, TimeUnit.MILLISECONDS.toNanos(maxIntervalMs));
+        this.highWatermark = Math.max(1, highWatermark);
+        this.lowWatermark = Math.max(0, Math.min(lowWatermark, this.highWatermark - 1));
+        if (running) {
+            intervalNanos = Math.max(minIntervalNanos, Math.min(intervalNanos, maxIntervalNanos));
+            return;
+        }
+        running = true;
+        generation++;
+        paused = false;
+        awaitingDecode = false;
+        intervalNanos = minIntervalNanos;
+        startNanos = System.nanoTime();
+        pausedTotalNanos = 0;
+        triggerCount = 0;
+        decodeCount = 0;
+        missCount = 0;
+        triggerFailureCount = 0;
+        pauseCount = 0;
+        triggerToDecode.reset();
+        scheduleLocked(0);
+    }
+
+    /**
+     * 停止连续扫描，统计保留到下次开始
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stopNanos = System.nanoTime();
+        if (paused) {
+            pausedTotalNanos += stopNanos - pausedSinceNanos;
+            paused = false;
+        }
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 报告一次解码结果，由扫描管线在收到扫描数据或解码失败的广播时调用
+     * 只有触发后第一个结果计入，操作员手动扳机的扫描不影响节奏。
+     * @param decoded 是否解码成功
+     */
+    public synchronized void onDecodeResult(boolean decoded) {
+        if (!running || !awaitingDecode) {
+            return;
+        }
+        awaitingDecode = false;
+        if (!decoded) {
+            missCount++;
+            intervalNanos = Math.min(maxIntervalNanos, (long) (intervalNanos * BACKOFF));
+            return;
+        }
+        decodeCount++;
+        triggerToDecode.recordNanos(System.nanoTime() - lastTriggerNanos);
+        intervalNanos = Math.max(minIntervalNanos, (long) (intervalNanos * SPEEDUP));
+        // 空闲时下次触发可能还要等很久，有条码经过时提前
+        // 取消失败说明任务已开始执行，由它调度下一次
+        if (!paused && next != null && next.getDelay(TimeUnit.NANOSECONDS) > intervalNanos && next.cancel(false)) {
+            scheduleLocked(intervalNanos);
+        }
+    }
+
+    /**
+     * 连续扫描的统计: 每秒扫描数、空闲比例 (触发后未解码)、暂停比例和触发到解码的延迟
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long now = running ? System.nanoTime() : stopNanos;
+        long elapsedNanos = triggerCount > 0 || running ? now - startNanos : 0;
+        long pausedNanos = pausedTotalNanos + (paused ? now - pausedSinceNanos : 0);
+        stats.put("running", running);
+        stats.put("paused", paused);
+        stats.put("intervalMs", intervalNanos / 1e6);
+        stats.put("minIntervalMs", minIntervalNanos / 1_000_000);
+        stats.put("maxIntervalMs", maxIntervalNanos / 1_000_000);
+        stats.put("highWatermark", highWatermark);
+        stats.put("lowWatermark", lowWatermark);
+        stats.put("triggers", triggerCount);
+        stats.put("decodes", decodeCount);
+        stats.put("misses", missCount);
+        stats.put("triggerFailures", triggerFailureCount);
+        stats.put("pauses", pauseCount);
+        stats.put("elapsedMs", elapsedNanos / 1_000_000);
+        stats.put("scansPerSecond", elapsedNanos > 0 ? decodeCount / (elapsedNanos / 1e9) : 0.0);
+        stats.put("idleRatio", triggerCount > 0 ? missCount / (double) triggerCount : 0.0);
+        stats.put("pausedRatio", elapsedNanos > 0 ? pausedNanos / (double) elapsedNanos : 0.0);
+        stats.put("triggerToDecode", triggerToDecode.summary());
+        return stats;
+    }
+
+    public void shutdown() {
+        stop();
+        worker.shutdownNow();
+    }
+
+    // 每次触发或暂停检查，在工作线程上执行；读取器调用不持有锁
+    private void tick(int scheduledGeneration) {
+        int pausedPending = -1;
+        int resumedPending = -1;
+        long pausedNanos = 0;
+        synchronized (this) {
+            if (!running || scheduledGeneration != generation) {
+                return;
+            }
+            next = null;
+            long now = System.nanoTime();
+            int pending = backlog.getPending();
+            if (paused) {
+                if (pending > lowWatermark) {
+                    scheduleLocked(TimeUnit.MILLISECONDS.toNanos(BACKLOG_POLL_MS));
+                    return;
+                }
+                paused = false;
+                pausedNanos = now - pausedSinceNanos;
+                pausedTotalNanos += pausedNanos;
+                resumedPending = pending;
+            } else if (pending >= highWatermark) {
+                paused = true;
+                pausedSinceNanos = now;
+                pauseCount++;
+                // 暂停前最后一次触发的结果不再计入
+                awaitingDecode = false;
+                scheduleLocked(TimeUnit.MILLISECONDS.toNanos(BACKLOG_POLL_MS));
+                pausedPending = pending;
+            }
+            if (pausedPending < 0) {
+                if (awaitingDecode) {
+                    // 上次触发到现在没有解码，视为空闲
+                    missCount++;
+                    intervalNanos = Math.min(maxIntervalNanos, (long) (intervalNanos * BACKOFF));
+                }
+                awaitingDecode = true;
+                lastTriggerNanos = now;
+                triggerCount++;
+                scheduleLocked(intervalFor(pending));
+            }
+        }
+        if (pausedPending >= 0) {
+            listener.onPaused(pausedPending);
+            return;
+        }
+        if (resumedPending >= 0) {
+            listener.onResumed(resumedPending, pausedNanos);
+        }
+        boolean accepted;
+        try {
+            accepted = reader.SoftScanTrigger();
+        } catch (RuntimeException e) {
+            accepted = false;
+        }
+        if (!accepted) {
+            synchronized (this) {
+                triggerFailureCount++;
+                awaitingDecode = false;
+            }
+        }
+    }
+
+    // 积压在下限和上限之间时，间隔按比例向最长间隔拉长
+    private long intervalFor(int pending) {
+        if (pending <= lowWatermark) {
+            return intervalNanos;
+        }
+        double ratio = (pending - lowWatermark) / (double) (highWatermark - lowWatermark);
+        return intervalNanos + (long) ((maxIntervalNanos - intervalNanos) * Math.min(1.0, ratio));
+    }
+
+    private void scheduleLocked(long delayNanos) {
+        int scheduledGeneration = generation;
+        next = worker.schedule(() -> tick(scheduledGeneration), delayNanos, TimeUnit.NANOSECONDS);
+    }
+}
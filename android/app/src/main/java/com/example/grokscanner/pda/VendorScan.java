@@ -0,0 +1,55 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.ScanRecord;
+
+/**
+ * 厂商广播中解析出的一条扫描结果
+ * 由扫描线程重复使用，每个广播开始前调用 {@link #reset()}
+ */
+public class VendorScan {
+    /** 未知码制 */
+    public static final int CODE_TYPE_UNKNOWN = ScanRecord.CODE_TYPE_UNKNOWN;
+
+    /**
+     * 条码文本
+     */
+    public String data;
+
+    /**
+     * 条码原始字节，厂商未提供时为null
+     */
+    public byte[] rawData;
+
+    /**
+     * 厂商定义的码制编号
+     */
+    public int codeType = CODE_TYPE_UNKNOWN;
+
+    /**
+     * 码制名称
+     */
+    public String symbology;
+
+    /**
+     * 携带条码数据的extra键
+     */
+    public String dataKey;
+
+    public void reset() {
+        data = null;
+        rawData = null;
+        codeType = CODE_TYPE_UNKNOWN;
+        symbology = null;
+        dataKey = null;
+    }
+
+    /**
+     * 转为扫描记录，有原始字节时优先使用原始字节，避免按默认字符集解码造成的损坏
+     */
+    public ScanRecord toRecord() {
+        if (rawData != null && rawData.length > 0) {
+            return ScanRecord.ofBytes(rawData, codeType, symbology);
+        }
+        return ScanRecord.ofText(data, codeType, symbology);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.grokscanner.pda;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Zebra DataWedge 适配
+ * DataWedge 配置文件中需启用 Intent 输出，以广播方式发送，Action 设为 {@link #ACTION_SCAN}
+ */
+public class ZebraAdapter implements ScannerAdapter {
+    public static final String ACTION_SCAN = "com.example.grokscanner.DATAWEDGE_SCAN";
+    public static final String EXTRA_DATA_STRING = "com.symbol.datawedge.data_string";
+    public static final String EXTRA_LABEL_TYPE = "com.symbol.datawedge.label_type";
+    public static final String EXTRA_DECODE_DATA = "com.symbol.datawedge.decode_data";
+
+    private static final String[] ACTIONS = {ACTION_SCAN};
+
+    @Override
+    public String getName() {
+        return "Zebra DataWedge";
+    }
+
+    @Override
+    public boolean matches(String manufacturer, String model) {
+        return manufacturer != null && manufacturer.toLowerCase(Locale.ROOT).contains("zebra");
+    }
+
+    @Override
+    public String[] getActions() {
+        return ACTIONS;
+    }
+
+    @Override
+    public String getScanAction() {
+        return ACTION_SCAN;
+    }
+
+    @Override
+    public String getDataKey() {
+        return EXTRA_DATA_STRING;
+    }
+
+    @Override
+    public boolean extract(String action, ScanExtras extras, VendorScan out) {
+        if (!ACTION_SCAN.equals(action) || extras == null) {
+            return false;
+        }
+        Object data = extras.get(EXTRA_DATA_STRING);
+        Object labelType = extras.get(EXTRA_LABEL_TYPE);
+        Object decodeData = extras.get(EXTRA_DECODE_DATA);
+        out.data = data instanceof String ? (String) data : null;
+        // decode_data 为 byte[] 列表，第一项为条码原始数据
+        if (decodeData instanceof List && !((List<?>) decodeData).isEmpty()
+                && ((List<?>) decodeData).get(0) instanceof byte[]) {
+            out.rawData = (byte[]) ((List<?>) decodeData).get(0);
+        }
+        out.symbology = labelType instanceof String ? (String) labelType : null;
+        out.dataKey = EXTRA_DATA_STRING;
+        return ScannerAdapters.hasData(out);
+    }
+}
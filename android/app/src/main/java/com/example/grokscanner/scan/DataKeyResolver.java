@@ -0,0 +1,186 @@
+package com.example.grokscanner.scan;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 条码数据键解析器
+ * 记住每个Action(及设备型号)实际携带条码数据的extra键，之后一次查找即可取得数据；
+ * 只有缓存未命中时才逐个探测常见键和所有extras。每个广播最多解析出一条数据。
+ * 常见键命中的结果持久化；逐个尝试其他extras找到的键只记在内存中，进程重启后重新探测，
+ * 名称像厂商附加信息 (码制、长度、错误等) 的键不作为条码数据。
+ */
+public class DataKeyResolver {
+    /**
+     * 已学习映射的持久化接口
+     */
+    public interface Store {
+        /**
+         * 读取所有已保存的映射，键为 "型号|Action"
+         */
+        Map<String, String> load();
+
+        void save(String cacheKey, String dataKey);
+    }
+
+    // 键名 (小写) 包含这些词时视为附加信息，如 com.vendor.symbology、barcode_type
+    private static final String[] METADATA_HINTS = {
+        "symbology", "type", "aimid", "aim_id", "length", "error", "status", "source", "timestamp", "version",
+    };
+
+    private final String model;
+    private final String[] candidateKeys;
+    private final String[] excludedKeys;
+    private final Store store;
+    private final Map<String, String> learned = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // 最近一次解析使用的键，仅在扫描线程上读取
+    private String lastKey;
+
+    /**
+     * @param model 设备型号，同一Action在不同机型上可能使用不同的键
+     * @param candidateKeys 探测时优先尝试的键，按优先级排列
+     * @param excludedKeys 不携带条码数据的键(如码制、错误信息)
+     * @param store 持久化，可为null
+     */
+    public DataKeyResolver(String model, String[] candidateKeys, String[] excludedKeys, Store store) {
+        this.model = model != null ? model : "";
+        this.candidateKeys = candidateKeys;
+        this.excludedKeys = excludedKeys;
+        this.store = store;
+        if (store != null) {
+            String prefix = this.model + '|';
+            for (Map.Entry<String, String> entry : store.load().entrySet()) {
+                // 只接受常见键，旧版本保存的其他extras键 (可能是附加信息) 忽略
+                if (entry.getKey().startsWith(prefix) && isCandidate(entry.getValue())) {
+                    learned.put(entry.getKey().substring(prefix.length()), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 预设某个Action的数据键，不写入持久化
+     */
+    public void seed(String action, String dataKey) {
+        learned.putIfAbsent(action != null ? action : "", dataKey);
+    }
+
+    /**
+     * 解析广播中的条码数据
+     * @return 条码数据，找不到时返回null
+     */
+    public String resolve(String action, ScanExtras extras) {
+        lastKey = null;
+        if (extras == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        String actionKey = action != null ? action : "";
+        String key = learned.get(actionKey);
+        if (key != null) {
+            String value = stringValue(extras.get(key));
+            if (value != null) {
+                hits.incrementAndGet();
+                lastKey = key;
+                return value;
+            }
+        }
+
+        // 缓存未命中，完整探测
+        probes.incrementAndGet();
+        for (String candidate : candidateKeys) {
+            if (isExcluded(candidate)) {
+                continue;
+            }
+            String value = stringValue(extras.get(candidate));
+            if (value != null) {
+                learn(actionKey, candidate, true);
+                return value;
+            }
+        }
+        for (String candidate : extras.keys()) {
+            if (isExcluded(candidate) || isMetadataKey(candidate)) {
+                continue;
+            }
+            String value = stringValue(extras.get(candidate));
+            if (value != null) {
+                // 不是已知的数据键，只在本进程内使用
+                learn(actionKey, candidate, false);
+                return value;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 最近一次解析使用的键
+     */
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("probes", probes.get());
+        stats.put("misses", misses.get());
+        stats.put("learned", new HashMap<>(learned));
+        return stats;
+    }
+
+    private void learn(String action, String key, boolean persist) {
+        lastKey = key;
+        String previous = learned.put(action, key);
+        if (persist && store != null && !key.equals(previous)) {
+            store.save(cacheKey(action), key);
+        }
+    }
+
+    private String cacheKey(String action) {
+        return model + '|' + action;
+    }
+
+    private boolean isExcluded(String key) {
+        for (String excluded : excludedKeys) {
+            if (excluded.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isCandidate(String key) {
+        for (String candidate : candidateKeys) {
+            if (candidate.equals(key)) {
+                return !isExcluded(key);
+            }
+        }
+        return false;
+    }
+
+    static boolean isMetadataKey(String key) {
+        String lower = key.toLowerCase(Locale.ROOT);
+        for (String hint : METADATA_HINTS) {
+            if (lower.contains(hint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stringValue(Object value) {
+        if (value instanceof String && !((String) value).isEmpty()) {
+            return (String) value;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.grokscanner.scan;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 调试状态存储
+ * 合并短时间内的多次更新，只记录变化的键，并按帧或按固定间隔向Flutter端推送一次增量。
+ * 关闭时所有写入直接返回，扫描路径上不做任何调试工作。
+ */
+public class DebugState {
+    /**
+     * 增量发布接口，由调度线程调用
+     */
+    public interface Publisher {
+        void publish(Map<String, Object> delta);
+    }
+
+    /** 发布间隔为0时表示每帧最多发布一次 */
+    public static final long PUBLISH_PER_FRAME = 0;
+
+    private final boolean enabled;
+    private final FrameScheduler scheduler;
+    private final Publisher publisher;
+    private final Object lock = new Object();
+
+    // 当前完整状态
+    private final Map<String, Object> values = new HashMap<>();
+    // 上次发布之后变化的键
+    private final Map<String, Object> pending = new LinkedHashMap<>();
+
+    private volatile long publishIntervalMs;
+    private boolean flushScheduled = false;
+    private long lastPublishNanos = 0;
+    private long publishCount = 0;
+    private final Runnable flushTask = this::flush;
+
+    /**
+     * @param enabled 是否启用，生产版本应传入false
+     * @param scheduler 发布任务的调度器
+     * @param publisher 增量发布目标
+     * @param publishIntervalMs 发布间隔，{@link #PUBLISH_PER_FRAME} 表示按帧发布
+     */
+    public DebugState(boolean enabled, FrameScheduler scheduler, Publisher publisher, long publishIntervalMs) {
+        this.enabled = enabled;
+        this.scheduler = scheduler;
+        this.publisher = publisher;
+        this.publishIntervalMs = Math.max(0, publishIntervalMs);
+    }
+
+    /**
+     * 是否启用，调用方在构造较重的调试值之前应先检查
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置发布间隔
+     * @param intervalMs 间隔毫秒数，{@link #PUBLISH_PER_FRAME} 表示按帧发布
+     */
+    public void setPublishInterval(long intervalMs) {
+        publishIntervalMs = Math.max(0, intervalMs);
+    }
+
+    public long getPublishInterval() {
+        return publishIntervalMs;
+    }
+
+    /**
+     * 更新一个调试值，值未变化时不会触发发布
+     */
+    public void put(String key, Object value) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            Object old = values.put(key, value);
+            if (Objects.equals(old, value) && !pending.containsKey(key)) {
+                return;
+            }
+            pending.put(key, value);
+            scheduleFlushLocked();
+        }
+    }
+
+    /**
+     * 获取当前状态的一致快照
+     */
+    public Map<String, Object> snapshot() {
+        synchronized (lock) {
+            return new HashMap<>(values);
+        }
+    }
+
+    /**
+     * 已发布的增量次数
+     */
+    public long getPublishCount() {
+        synchronized (lock) {
+            return publishCount;
+        }
+    }
+
+    private void scheduleFlushLocked() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        long interval = publishIntervalMs;
+        if (interval == PUBLISH_PER_FRAME) {
+            scheduler.postFrame(flushTask);
+        } else if (publishCount == 0) {
+            scheduler.postDelayed(flushTask, 0);
+        } else {
+            long elapsedMs = (System.nanoTime() - lastPublishNanos) / 1_000_000L;
+            scheduler.postDelayed(flushTask, Math.max(0, interval - elapsedMs));
+        }
+    }
+
+    private void flush() {
+        Map<String, Object> delta;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            values.put("lastUpdated", now);
+            delta = new HashMap<>(pending);
+            delta.put("lastUpdated", now);
+            pending.clear();
+            lastPublishNanos = System.nanoTime();
+            publishCount++;
+        }
+        publisher.publish(delta);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.grokscanner.scan;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 重复扫描过滤
+ * 保存最近N条扫描内容的64位哈希(环形缓冲区)，并用开放寻址表索引，判断时不分配对象。
+ * 支持三种模式: 同一广播内去重、时间窗口内去重、本次会话内唯一(最多记住N条)。
+ */
+public class DuplicateFilter {
+    public static final int MODE_OFF = 0;
+    public static final int MODE_SAME_INTENT = 1;
+    public static final int MODE_TIME_WINDOW = 2;
+    public static final int MODE_SESSION = 3;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_WINDOW_MS = 1500;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private int mode = MODE_OFF;
+    private long windowMs = DEFAULT_WINDOW_MS;
+
+    // 最近的扫描，按到达顺序
+    private long[] ringHashes;
+    private long[] ringTimes;
+    private long[] ringIntents;
+    private int head;
+    private int size;
+
+    // 哈希 → 环形缓冲区位置，0表示空位
+    private long[] tableKeys;
+    private int[] tableSlots;
+    private int mask;
+
+    private long passedCount = 0;
+    private long suppressedCount = 0;
+
+    public DuplicateFilter() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 设置过滤模式
+     * @param mode MODE_* 常量
+     * @param windowMs 时间窗口模式下的窗口长度
+     * @param capacity 记住的最近扫描条数，变化时清空记录
+     */
+    public synchronized void configure(int mode, long windowMs, int capacity) {
+        this.mode = mode;
+        this.windowMs = Math.max(0, windowMs);
+        if (capacity > 0 && capacity != ringHashes.length) {
+            allocate(capacity);
+        }
+    }
+
+    /**
+     * 清空已记住的扫描，开始新的会话
+     */
+    public synchronized void reset() {
+        allocate(ringHashes.length);
+    }
+
+    /**
+     * 判断扫描是否重复，不重复时记住该扫描
+     * @param hash 扫描内容的哈希，见 {@link #hash(byte[])}
+     * @param nowMs 当前时间
+     * @param intentId 所属广播的标识
+     * @return 是否应丢弃
+     */
+    public synchronized boolean isDuplicate(long hash, long nowMs, long intentId) {
+        if (mode == MODE_OFF) {
+            passedCount++;
+            return false;
+        }
+        if (hash == 0) {
+            hash = 1;
+        }
+        int slot = find(hash);
+        if (slot >= 0) {
+            boolean duplicate;
+            switch (mode) {
+                case MODE_SAME_INTENT:
+                    duplicate = ringIntents[slot] == intentId;
+                    break;
+                case MODE_TIME_WINDOW:
+                    duplicate = nowMs - ringTimes[slot] <= windowMs;
+                    break;
+                default:
+                    duplicate = true;
+                    break;
+            }
+            if (duplicate) {
+                suppressedCount++;
+                return true;
+            }
+            ringTimes[slot] = nowMs;
+            ringIntents[slot] = intentId;
+        } else {
+            insert(hash, nowMs, intentId);
+        }
+        passedCount++;
+        return false;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", modeName(mode));
+        stats.put("windowMs", windowMs);
+        stats.put("capacity", ringHashes.length);
+        stats.put("tracked", size);
+        stats.put("passed", passedCount);
+        stats.put("suppressed", suppressedCount);
+        return stats;
+    }
+
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * 条码原始字节的64位FNV-1a哈希
+     */
+    public static long hash(byte[] value) {
+        return hash(value, 0, value.length);
+    }
+
+    /**
+     * 字节区间的64位FNV-1a哈希
+     */
+    public static long hash(byte[] value, int offset, int length) {
+        return hash(FNV_OFFSET, value, offset, length);
+    }
+
+    /**
+     * 在已有哈希上继续计算字节区间，用于拼接的数据
+     */
+    static long hash(long hash, byte[] value, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash ^= value[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * count 个 '0' 的哈希，作为 {@link #hash(long, byte[], int, int)} 的起始值
+     */
+    static long hashZeros(int count) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < count; i++) {
+            hash ^= '0';
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 解析Flutter端传来的模式名称
+     */
+    public static int parseMode(String name) {
+        if ("sameIntent".equals(name)) {
+            return MODE_SAME_INTENT;
+        } else if ("window".equals(name)) {
+            return MODE_TIME_WINDOW;
+        } else if ("session".equals(name)) {
+            return MODE_SESSION;
+        }
+        return MODE_OFF;
+    }
+
+    private static String modeName(int mode) {
+        switch (mode) {
+            case MODE_SAME_INTENT:
+                return "sameIntent";
+            case MODE_TIME_WINDOW:
+                return "window";
+            case MODE_SESSION:
+                return "session";
+            default:
+                return "off";
+        }
+    }
+
+    private void allocate(int capacity) {
+        ringHashes = new long[capacity];
+        ringTimes = new long[capacity];
+        ringIntents = new long[capacity];
+        head = 0;
+        size = 0;
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        tableKeys = new long[tableSize];
+        tableSlots = new int[tableSize];
+        mask = tableSize - 1;
+    }
+
+    private void insert(long hash, long nowMs, long intentId) {
+        int capacity = ringHashes.length;
+        if (size == capacity) {
+            // 淘汰最旧的记录
+            remove(ringHashes[head]);
+            head = (head + 1) % capacity;
+            size--;
+        }
+        int tail = (head + size) % capacity;
+        ringHashes[tail] = hash;
+        ringTimes[tail] = nowMs;
+        ringIntents[tail] = intentId;
+        size++;
+        int index = indexFor(hash);
+        while (tableKeys[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        tableKeys[index] = hash;
+        tableSlots[index] = tail;
+    }
+
+    private int find(long hash) {
+        int index = indexFor(hash);
+        while (tableKeys[index] != 0) {
+            if (tableKeys[index] == hash) {
+                return tableSlots[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // 线性探测表的删除，后续元素向前移动以保持探测链连续
+    private void remove(long hash) {
+        int index = indexFor(hash);
+        while (tableKeys[index] != hash) {
+            if (tableKeys[index] == 0) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (tableKeys[next] != 0) {
+            int ideal = indexFor(tableKeys[next]);
+            // 若 next 的理想位置不在 (gap, next] 之间，则可以移到 gap
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                tableKeys[gap] = tableKeys[next];
+                tableSlots[gap] = tableSlots[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        tableKeys[gap] = 0;
+    }
+
+    private int indexFor(long hash) {
+        long mixed = hash ^ (hash >>> 32);
+        mixed *= 0x9e3779b97f4a7c15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.grokscanner.scan;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预期条码集合 (拣货单、收货单、盘点清单)
+ * 以条码的64位哈希存入开放寻址表，可附带每个条码的目标数量；清单很大时前置Bloom过滤器，
+ * 大部分非预期条码不必访问主表。GTIN按 {@link GtinKey} 规范化为14位，清单中的EAN-13与扫到的GS1条码可以匹配。每条扫描的判断为O(1)且不分配对象，Flutter端只收到结果。
+ * check 只应在扫描线程上调用；load 可在任意线程调用，新集合构建完成后整体替换。
+ */
+public class ExpectedSet {
+    /** 未加载集合 */
+    public static final int VERDICT_NONE = 0;
+    public static final int VERDICT_EXPECTED = 1;
+    public static final int VERDICT_UNEXPECTED = 2;
+    /** 已超过目标数量 */
+    public static final int VERDICT_OVER_QUANTITY = 3;
+
+    /** 超过该条数时自动启用Bloom过滤器 */
+    public static final int BLOOM_THRESHOLD = 65536;
+
+    private static final String[] VERDICT_NAMES = {
+        "none",
+        "expected",
+        "unexpected",
+        "overQuantity",
+    };
+
+    // 每个条码10位、7个哈希函数，误判率约1%
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    /**
+     * 一份预期集合及其扫描计数
+     */
+    private static final class Table {
+        // 哈希 → 目标数量和已扫描数量，0表示空位
+        final long[] keys;
+        final int[] targets;
+        final int[] counts;
+        final int mask;
+        final int size;
+        final long[] bloom;
+        final int bloomMask;
+        // 尚未扫描完成的条码数
+        int remaining;
+
+        Table(int capacity, boolean useBloom) {
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            keys = new long[tableSize];
+            targets = new int[tableSize];
+            counts = new int[tableSize];
+            mask = tableSize - 1;
+            size = capacity;
+            if (useBloom) {
+                int bits = Integer.highestOneBit(Math.max(64, capacity * BLOOM_BITS_PER_KEY) - 1) << 1;
+                bloom = new long[bits >>> 6];
+                bloomMask = bits - 1;
+            } else {
+                bloom = null;
+                bloomMask = 0;
+            }
+        }
+    }
+
+    private volatile Table table;
+
+    private final AtomicLong expectedCount = new AtomicLong();
+    private final AtomicLong unexpectedCount = new AtomicLong();
+    private final AtomicLong overQuantityCount = new AtomicLong();
+    private final AtomicLong bloomRejectCount = new AtomicLong();
+
+    /**
+     * 加载新的预期集合，替换当前集合并清零计数
+     * @param hashes 条码哈希，见 {@link GtinKey#hash(byte[])}；重复的条码合并，目标数量相加
+     * @param targets 每个条码的目标数量，null或0表示不限数量
+     * @param bloom 是否前置Bloom过滤器；null时按 {@link #BLOOM_THRESHOLD} 自动决定
+     */
+    public void load(long[] hashes, int[] targets, Boolean bloom) {
+        boolean useBloom = bloom != null ? bloom : hashes.length > BLOOM_THRESHOLD;
+        Table next = new Table(hashes.length, useBloom);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            long hash = hashes[i] != 0 ? hashes[i] : 1;
+            int target = targets != null && i < targets.length ? Math.max(0, targets[i]) : 0;
+            int index = indexFor(hash, next.mask);
+            while (next.keys[index] != 0 && next.keys[index] != hash) {
+                index = (index + 1) & next.mask;
+            }
+            if (next.keys[index] == 0) {
+                next.keys[index] = hash;
+                distinct++;
+                if (next.bloom != null) {
+                    addToBloom(next, hash);
+                }
+            }
+            next.targets[index] += target;
+        }
+        next.remaining = distinct;
+        resetCounters();
+        table = next;
+    }
+
+    /**
+     * 卸载集合，之后的扫描不再判断
+     */
+    public void clear() {
+        table = null;
+    }
+
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    /**
+     * 清零扫描计数，保留集合 (重新开始同一张单据)
+     * 应在扫描线程上调用。
+     */
+    public void resetCounts() {
+        Table current = table;
+        if (current != null) {
+            int distinct = 0;
+            for (int i = 0; i < current.counts.length; i++) {
+                current.counts[i] = 0;
+                if (current.keys[i] != 0) {
+                    distinct++;
+                }
+            }
+            current.remaining = distinct;
+        }
+        resetCounters();
+    }
+
+    /**
+     * 判断一条扫描并计数
+     * @param key 条码所在的字节数组
+     * @return VERDICT_* 常量
+     */
+    public int check(byte[] key, int offset, int length) {
+        Table current = table;
+        if (current == null) {
+            return VERDICT_NONE;
+        }
+        long hash = GtinKey.hash(key, offset, length);
+        if (hash == 0) {
+            hash = 1;
+        }
+        if (current.bloom != null && !mightContain(current, hash)) {
+            bloomRejectCount.incrementAndGet();
+            unexpectedCount.incrementAndGet();
+            return VERDICT_UNEXPECTED;
+        }
+        int index = indexFor(hash, current.mask);
+        while (current.keys[index] != 0) {
+            if (current.keys[index] == hash) {
+                int count = ++current.counts[index];
+                int target = current.targets[index];
+                if (target > 0 && count > target) {
+                    overQuantityCount.incrementAndGet();
+                    return VERDICT_OVER_QUANTITY;
+                }
+                if (count == Math.max(1, target)) {
+                    current.remaining--;
+                }
+                expectedCount.incrementAndGet();
+                return VERDICT_EXPECTED;
+            }
+            index = (index + 1) & current.mask;
+        }
+        unexpectedCount.incrementAndGet();
+        return VERDICT_UNEXPECTED;
+    }
+
+    public static String verdictName(int verdict) {
+        return verdict >= 0 && verdict < VERDICT_NAMES.length ? VERDICT_NAMES[verdict] : VERDICT_NAMES[VERDICT_NONE];
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Table current = table;
+        stats.put("loaded", current != null);
+        if (current != null) {
+            stats.put("size", current.size);
+            stats.put("remaining", current.remaining);
+            stats.put("bloom", current.bloom != null);
+        }
+        stats.put("expected", expectedCount.get());
+        stats.put("unexpected", unexpectedCount.get());
+        stats.put("overQuantity", overQuantityCount.get());
+        stats.put("bloomRejects", bloomRejectCount.get());
+        return stats;
+    }
+
+    private void resetCounters() {
+        expectedCount.set(0);
+        unexpectedCount.set(0);
+        overQuantityCount.set(0);
+        bloomRejectCount.set(0);
+    }
+
+    private static int indexFor(long hash, int mask) {
+        long mixed = hash ^ (hash >>> 32);
+        mixed *= 0x9e3779b97f4a7c15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+
+    // 双重哈希: 第i个位置为 h1 + i * h2
+    private static void addToBloom(Table table, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & table.bloomMask;
+            table.bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean mightContain(Table table, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & table.bloomMask;
+            if ((table.bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
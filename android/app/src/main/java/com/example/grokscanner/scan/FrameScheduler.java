@@ -0,0 +1,20 @@
+package com.example.grokscanner.scan;
+
+/**
+ * 任务调度接口
+ * 扫描管线中需要按帧或延迟执行的任务都通过它投递，便于脱离Android环境运行
+ */
+public interface FrameScheduler {
+    /**
+     * 在下一帧(vsync)执行任务
+     * @param task 要执行的任务
+     */
+    void postFrame(Runnable task);
+
+    /**
+     * 延迟执行任务
+     * @param task 要执行的任务
+     * @param delayMs 延迟毫秒数
+     */
+    void postDelayed(Runnable task, long delayMs);
+}
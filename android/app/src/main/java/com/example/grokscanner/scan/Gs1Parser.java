@@ -0,0 +1,396 @@
+package com.example.grokscanner.scan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GS1 应用标识符 (AI) 解析器
+ * 对 GS1-128 / GS1 DataMatrix / GS1 QR 的原始字节单次扫描，按预先计算的AI表 (定长、变长、含小数位的AI) 切分字段，
+ * 只记录每个字段在原始字节中的位置，不截取子串。结果以 [AI, 起始位置, 长度, 小数位数] 四个整数一组输出。
+ * parse 只应在扫描线程上调用；配置可在任意线程修改。
+ */
+public class Gs1Parser {
+    /** 变长字段的默认分隔符 (FNC1 → ASCII GS) */
+    public static final int DEFAULT_SEPARATOR = 0x1D;
+    /** 每个字段占用的整数个数 */
+    public static final int FIELD_SIZE = 4;
+
+    /** 全球贸易项目代码 */
+    public static final int AI_GTIN = 1;
+
+    public static final int ERR_UNKNOWN_AI = -1;
+    public static final int ERR_TRUNCATED = -2;
+    public static final int ERR_LENGTH = -3;
+    public static final int ERR_CHARSET = -4;
+    public static final int ERR_TOO_MANY = -5;
+
+    private static final String[] ERROR_NAMES = {
+        "ok",
+        "unknownAi",
+        "truncated",
+        "length",
+        "charset",
+        "tooMany",
+    };
+
+    private static final int MAX_FIELDS = 32;
+
+    // AI规格: 低7位为最大长度，其余为标志
+    private static final int SPEC_FIXED = 1 << 7;
+    private static final int SPEC_NUMERIC = 1 << 8;
+    private static final int SPEC_DECIMAL = 1 << 9;
+    private static final int SPEC_DEFINED = 1 << 10;
+    private static final int SPEC_LENGTH_MASK = 0x7f;
+
+    // 按AI位数分表，GS1的AI互不为前缀，依次查2、3、4位即可确定
+    private static final int[] SPECS_2 = new int[100];
+    private static final int[] SPECS_3 = new int[1000];
+    private static final int[] SPECS_4 = new int[10000];
+
+    static {
+        // 定长数字
+        fixed(2, 0, 18);
+        fixed(2, 1, 14);
+        fixed(2, 2, 14);
+        for (int ai : new int[] {11, 12, 13, 15, 16, 17}) {
+            fixed(2, ai, 6);
+        }
+        fixed(2, 20, 2);
+        // 变长
+        variable(2, 10, 20, false);
+        variable(2, 21, 20, false);
+        variable(2, 22, 20, false);
+        variable(3, 235, 28, false);
+        variable(3, 240, 30, false);
+        variable(3, 241, 30, false);
+        variable(3, 242, 6, true);
+        variable(3, 243, 20, false);
+        variable(3, 250, 30, false);
+        variable(3, 251, 30, false);
+        variable(3, 253, 30, false);
+        variable(3, 254, 20, false);
+        variable(3, 255, 25, true);
+        variable(2, 30, 8, true);
+        variable(2, 37, 8, true);
+        // 计量单位，AI最后一位为小数位数
+        for (int group : new int[] {310, 311, 312, 313, 314, 315, 316,
+                320, 321, 322, 323, 324, 325, 326, 327, 328, 329,
+                330, 331, 332, 333, 334, 335, 336, 337,
+                340, 341, 342, 343, 344, 345, 346, 347, 348, 349,
+                350, 351, 352, 353, 354, 355, 356, 357,
+                360, 361, 362, 363, 364, 365, 366, 367, 368, 369}) {
+            for (int d = 0; d < 10; d++) {
+                SPECS_4[group * 10 + d] = SPEC_DEFINED | SPEC_FIXED | SPEC_NUMERIC | SPEC_DECIMAL | 6;
+            }
+        }
+        for (int d = 0; d < 10; d++) {
+            SPECS_4[3900 + d] = SPEC_DEFINED | SPEC_NUMERIC | SPEC_DECIMAL | 15;
+            SPECS_4[3910 + d] = SPEC_DEFINED | SPEC_NUMERIC | SPEC_DECIMAL | 18;
+            SPECS_4[3920 + d] = SPEC_DEFINED | SPEC_NUMERIC | SPEC_DECIMAL | 15;
+            SPECS_4[3930 + d] = SPEC_DEFINED | SPEC_NUMERIC | SPEC_DECIMAL | 18;
+            SPECS_4[3940 + d] = SPEC_DEFINED | SPEC_FIXED | SPEC_NUMERIC | SPEC_DECIMAL | 4;
+            SPECS_4[3950 + d] = SPEC_DEFINED | SPEC_FIXED | SPEC_NUMERIC | SPEC_DECIMAL | 6;
+        }
+        // 参考号、位置
+        variable(3, 400, 30, false);
+        variable(3, 401, 30, false);
+        fixed(3, 402, 17);
+        variable(3, 403, 30, false);
+        for (int ai = 410; ai <= 417; ai++) {
+            fixed(3, ai, 13);
+        }
+        variable(3, 420, 20, false);
+        variable(3, 421, 12, false);
+        fixed(3, 422, 3);
+        variable(3, 423, 15, true);
+        fixed(3, 424, 3);
+        variable(3, 425, 15, true);
+        fixed(3, 426, 3);
+        // 7xxx
+        fixed(4, 7001, 13);
+        variable(4, 7002, 30, false);
+        fixed(4, 7003, 10);
+        variable(4, 7004, 4, true);
+        variable(4, 7005, 12, false);
+        fixed(4, 7006, 6);
+        variable(4, 7007, 12, true);
+        variable(4, 7008, 3, false);
+        variable(4, 7009, 10, false);
+        variable(4, 7010, 2, false);
+        for (int ai = 710; ai <= 716; ai++) {
+            variable(3, ai, 20, false);
+        }
+        // 8xxx
+        fixed(4, 8001, 14);
+        variable(4, 8002, 20, false);
+        variable(4, 8003, 30, false);
+        variable(4, 8004, 30, false);
+        fixed(4, 8005, 6);
+        fixed(4, 8006, 18);
+        variable(4, 8007, 34, false);
+        variable(4, 8008, 12, true);
+        variable(4, 8010, 30, false);
+        variable(4, 8011, 12, true);
+        variable(4, 8012, 20, false);
+        variable(4, 8013, 25, false);
+        fixed(4, 8017, 18);
+        fixed(4, 8018, 18);
+        variable(4, 8019, 10, true);
+        variable(4, 8020, 25, false);
+        variable(4, 8200, 70, false);
+        // 公司内部使用
+        variable(2, 90, 30, false);
+        for (int ai = 91; ai <= 99; ai++) {
+            variable(2, ai, 90, false);
+        }
+    }
+
+    private static void fixed(int digits, int ai, int length) {
+        table(digits)[ai] = SPEC_DEFINED | SPEC_FIXED | SPEC_NUMERIC | length;
+    }
+
+    private static void variable(int digits, int ai, int maxLength, boolean numeric) {
+        table(digits)[ai] = SPEC_DEFINED | (numeric ? SPEC_NUMERIC : 0) | maxLength;
+    }
+
+    private static int[] table(int digits) {
+        return digits == 2 ? SPECS_2 : digits == 3 ? SPECS_3 : SPECS_4;
+    }
+
+    private volatile boolean enabled = false;
+    private volatile int symbologyMask = (1 << Symbology.GS1_128);
+    private volatile int separator = DEFAULT_SEPARATOR;
+
+    // 最近一次解析的结果，仅在扫描线程上使用
+    private final int[] fields = new int[MAX_FIELDS * FIELD_SIZE];
+    private int fieldCount = 0;
+    private int errorOffset = -1;
+
+    private final AtomicLong parsedCount = new AtomicLong();
+    private final AtomicLong fieldTotal = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * 配置解析
+     * @param enabled 是否启用
+     * @param symbologies 需要解析的码制，null表示不变；带有GS1符号标识 (]C1、]d2、]Q3、]e0) 的扫描总会解析
+     * @param separator 变长字段分隔符，扫描器通常把FNC1输出为GS (29)；0表示不变
+     */
+    public void configure(boolean enabled, int[] symbologies, int separator) {
+        if (symbologies != null) {
+            int mask = 0;
+            for (int symbology : symbologies) {
+                if (symbology > Symbology.UNKNOWN && symbology < Symbology.COUNT) {
+                    mask |= 1 << symbology;
+                }
+            }
+            this.symbologyMask = mask;
+        }
+        if (separator > 0 && separator < 256) {
+            this.separator = separator;
+        }
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 是否应对该扫描进行解析
+     * @param symbology Symbology 常量
+     * @param data 原始字节
+     */
+    public boolean shouldParse(int symbology, byte[] data) {
+        if (!enabled) {
+            return false;
+        }
+        if (symbology > Symbology.UNKNOWN && symbology < Symbology.COUNT && (symbologyMask & (1 << symbology)) != 0) {
+            return true;
+        }
+        return gs1IdentifierLength(data) > 0;
+    }
+
+    /**
+     * 解析GS1元素串
+     * @param data 原始字节，可带符号标识前缀和开头的FNC1
+     * @return 字段数，失败时返回 ERR_* 常量 (已解析的字段仍可通过 {@link #getFieldCount()} 获取)
+     */
+    public int parse(byte[] data) {
+        fieldCount = 0;
+        errorOffset = -1;
+        int length = data.length;
+        int sep = separator;
+        int pos = gs1IdentifierLength(data);
+        // 开头的FNC1
+        while (pos < length && (data[pos] & 0xff) == sep) {
+            pos++;
+        }
+        int result = 0;
+        while (pos < length) {
+            int ai = -1;
+            int aiDigits = 0;
+            int spec = 0;
+            int value = 0;
+            for (int digits = 1; digits <= 4; digits++) {
+                if (pos + digits > length) {
+                    break;
+                }
+                int c = data[pos + digits - 1] - '0';
+                if (c < 0 || c > 9) {
+                    break;
+                }
+                value = value * 10 + c;
+                if (digits >= 2) {
+                    int candidate = table(digits)[value];
+                    if (candidate != 0) {
+                        ai = value;
+                        aiDigits = digits;
+                        spec = candidate;
+                        break;
+                    }
+                }
+            }
+            if (ai < 0) {
+                result = ERR_UNKNOWN_AI;
+                break;
+            }
+            int start = pos + aiDigits;
+            int maxLength = spec & SPEC_LENGTH_MASK;
+            int end;
+            if ((spec & SPEC_FIXED) != 0) {
+                end = start + maxLength;
+                if (end > length) {
+                    result = ERR_TRUNCATED;
+                    pos = start;
+                    break;
+                }
+            } else {
+                end = start;
+                while (end < length && (data[end] & 0xff) != sep) {
+                    end++;
+                }
+                if (end == start || end - start > maxLength) {
+                    result = ERR_LENGTH;
+                    pos = start;
+                    break;
+                }
+            }
+            if ((spec & SPEC_NUMERIC) != 0) {
+                int bad = firstNonDigit(data, start, end);
+                if (bad >= 0) {
+                    result = ERR_CHARSET;
+                    pos = bad;
+                    break;
+                }
+            }
+            if (fieldCount == MAX_FIELDS) {
+                result = ERR_TOO_MANY;
+                break;
+            }
+            int base = fieldCount * FIELD_SIZE;
+            fields[base] = ai;
+            fields[base + 1] = start;
+            fields[base + 2] = end - start;
+            fields[base + 3] = (spec & SPEC_DECIMAL) != 0 ? ai % 10 : -1;
+            fieldCount++;
+            pos = end;
+            // 定长字段后也可能跟着多余的分隔符
+            if (pos < length && (data[pos] & 0xff) == sep) {
+                pos++;
+            }
+        }
+        parsedCount.incrementAndGet();
+        if (result < 0) {
+            errorOffset = pos;
+            errorCount.incrementAndGet();
+            return result;
+        }
+        fieldTotal.addAndGet(fieldCount);
+        return fieldCount;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * 最近一次解析失败的位置，成功时为-1
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+
+    /**
+     * 最近一次解析的字段，每个字段 [AI, 起始位置, 长度, 小数位数(-1表示无)]
+     * @return 新数组，长度为 字段数 × FIELD_SIZE
+     */
+    public int[] copyFields() {
+        int[] copy = new int[fieldCount * FIELD_SIZE];
+        System.arraycopy(fields, 0, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * 在解析结果中查找AI
+     * @param fields 见 {@link #copyFields()}
+     * @return 字段在数组中的起始下标，找不到时返回-1
+     */
+    public static int indexOf(int[] fields, int ai) {
+        for (int i = 0; i + FIELD_SIZE <= fields.length; i += FIELD_SIZE) {
+            if (fields[i] == ai) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static String errorName(int error) {
+        int index = -error;
+        return index >= 0 && index < ERROR_NAMES.length ? ERROR_NAMES[index] : "unknown";
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("separator", separator);
+        List<String> symbologies = new ArrayList<>();
+        int mask = symbologyMask;
+        for (int i = 1; i < Symbology.COUNT; i++) {
+            if ((mask & (1 << i)) != 0) {
+                symbologies.add(Symbology.name(i));
+            }
+        }
+        stats.put("symbologies", symbologies);
+        stats.put("parsed", parsedCount.get());
+        stats.put("fields", fieldTotal.get());
+        stats.put("errors", errorCount.get());
+        return stats;
+    }
+
+    // GS1符号标识: ]C1 (GS1-128)、]d2 (DataMatrix)、]Q3 (QR)、]e0 (DataBar)
+    private static int gs1IdentifierLength(byte[] data) {
+        if (data.length < 3 || data[0] != ']') {
+            return 0;
+        }
+        byte code = data[1];
+        byte modifier = data[2];
+        if ((code == 'C' && modifier == '1') || (code == 'd' && modifier == '2')
+                || (code == 'Q' && modifier == '3') || (code == 'e' && modifier == '0')) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private static int firstNonDigit(byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
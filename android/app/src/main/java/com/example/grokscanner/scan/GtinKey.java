@@ -0,0 +1,58 @@
+package com.example.grokscanner.scan;
+
+import java.util.Arrays;
+
+/**
+ * 主数据和预期集合的查找键规范化
+ * EAN-8、UPC-A (12位)、EAN-13 和 GTIN-14 是同一GTIN的不同长度，统一左补 '0' 到14位，
+ * 扫到EAN-13条码和GS1条码中的AI 01得到同一个键。其他内容 (非数字或其他长度) 按原样使用。
+ * 扫描时不复制数据，哈希和比较时在键前面虚拟补0。
+ */
+public final class GtinKey {
+    public static final int LENGTH = 14;
+
+    private GtinKey() {
+    }
+
+    /**
+     * 规范化时需要在键前面补的 '0' 个数
+     * @return 8、12、13、14位纯数字时返回 14 - length，否则返回0
+     */
+    public static int padding(byte[] key, int offset, int length) {
+        if (length != 8 && length != 12 && length != 13 && length != LENGTH) {
+            return 0;
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (key[i] < '0' || key[i] > '9') {
+                return 0;
+            }
+        }
+        return LENGTH - length;
+    }
+
+    /**
+     * 规范化后的键的哈希，与 {@code DuplicateFilter.hash(normalize(key))} 相同
+     */
+    public static long hash(byte[] key, int offset, int length) {
+        return DuplicateFilter.hash(DuplicateFilter.hashZeros(padding(key, offset, length)), key, offset, length);
+    }
+
+    public static long hash(byte[] key) {
+        return hash(key, 0, key.length);
+    }
+
+    /**
+     * 规范化后的键，生成索引和加载集合时使用
+     * @return 不需要补0时返回原数组
+     */
+    public static byte[] normalize(byte[] key) {
+        int padding = padding(key, 0, key.length);
+        if (padding == 0) {
+            return key;
+        }
+        byte[] normalized = new byte[LENGTH];
+        Arrays.fill(normalized, 0, padding, (byte) '0');
+        System.arraycopy(key, 0, normalized, padding, key.length);
+        return normalized;
+    }
+}
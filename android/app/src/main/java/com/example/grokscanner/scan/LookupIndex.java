@@ -0,0 +1,330 @@
+package com.example.grokscanner.scan;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地主数据查找索引
+ * 离线由CSV导出生成的只读定长索引文件 (见 benchmarks 模块的 LookupIndexBuilder)，以内存映射方式打开，按条码哈希二分查找；
+ * 查找只读取映射区，不分配对象，匹配的字段在写入Flutter端的扫描记录时才解码为字符串。
+ * 新的主数据文件通过 {@link #install(File)} 校验后原子替换，引用旧索引的扫描记录不受影响。
+ *
+ * 文件格式 (大端):
+ * <pre>
+ * 头部 32字节: int magic, int version, int count, int fieldCount, int stride, int recordsOffset, int poolOffset, int poolSize
+ * 字段名: fieldCount 个 (short length, UTF-8)
+ * 记录: count 个，按 keyHash、键升序，每个 stride 字节: long keyHash, int keyOffset, int keyLength, 每个字段 int offset, int length
+ *       键为规范化后的内容 (GTIN补0到14位)，EAN-13 条码和 GS1 条码的 AI 01 查到同一条记录
+ * 字符串池: 键和字段值的UTF-8字节，偏移相对于 poolOffset
+ * </pre>
+ */
+public class LookupIndex {
+    /** "GSLX" */
+    public static final int MAGIC = 0x47534c58;
+    /** 版本2: 键按 {@link GtinKey} 规范化 */
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_FIXED_SIZE = 16;
+    public static final int FIELD_ENTRY_SIZE = 8;
+
+    /**
+     * 已映射的索引文件，只读，可在多个线程同时使用
+     */
+    public static final class Table {
+        private final ByteBuffer buffer;
+        private final String[] fieldNames;
+        private final int count;
+        private final int stride;
+        private final int recordsOffset;
+        private final int poolOffset;
+        private final int poolSize;
+        private final long loadedAt;
+
+        private Table(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            int limit = buffer.limit();
+            if (limit < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a lookup index");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported lookup index version: " + buffer.getInt(4));
+            }
+            count = buffer.getInt(8);
+            int fieldCount = buffer.getInt(12);
+            stride = buffer.getInt(16);
+            recordsOffset = buffer.getInt(20);
+            poolOffset = buffer.getInt(24);
+            poolSize = buffer.getInt(28);
+            if (count < 0 || fieldCount < 0 || stride < RECORD_FIXED_SIZE + fieldCount * FIELD_ENTRY_SIZE
+                    || recordsOffset < HEADER_SIZE || (long) recordsOffset + (long) count * stride > poolOffset
+                    || poolSize < 0 || (long) poolOffset + poolSize > limit) {
+                throw new IOException("Corrupt lookup index header");
+            }
+            fieldNames = new String[fieldCount];
+            int position = HEADER_SIZE;
+            for (int i = 0; i < fieldCount; i++) {
+                if (position + 2 > recordsOffset) {
+                    throw new IOException("Corrupt lookup index field names");
+                }
+                int length = buffer.getShort(position) & 0xffff;
+                position += 2;
+                if (position + length > recordsOffset) {
+                    throw new IOException("Corrupt lookup index field names");
+                }
+                fieldNames[i] = decode(position, length);
+                position += length;
+            }
+            validateRecords();
+            loadedAt = System.currentTimeMillis();
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getFieldCount() {
+            return fieldNames.length;
+        }
+
+        public String getFieldName(int field) {
+            return fieldNames[field];
+        }
+
+        /**
+         * 按键查找记录，GTIN按 {@link GtinKey} 规范化后比较
+         * @param key 键所在的字节数组，如条码原始字节
+         * @return 记录下标，找不到时返回-1
+         */
+        public int find(byte[] key, int offset, int length) {
+            int padding = GtinKey.padding(key, offset, length);
+            long hash = DuplicateFilter.hash(DuplicateFilter.hashZeros(padding), key, offset, length);
+            // 找到第一个哈希不小于目标的记录
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (recordHash(mid) < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            // 哈希相同的记录相邻，逐个比较键
+            for (int i = low; i < count && recordHash(i) == hash; i++) {
+                if (keyEquals(i, padding, key, offset, length)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 读取记录的字段值
+         */
+        public String getField(int record, int field) {
+            int base = recordsOffset + record * stride + RECORD_FIXED_SIZE + field * FIELD_ENTRY_SIZE;
+            return decode(poolOffset + buffer.getInt(base), buffer.getInt(base + 4));
+        }
+
+        /**
+         * 将记录的全部字段写入扫描记录，字段名为键，空值跳过
+         */
+        public void writeFields(int record, Map<String, Object> out) {
+            for (int field = 0; field < fieldNames.length; field++) {
+                String value = getField(record, field);
+                if (!value.isEmpty()) {
+                    out.put(fieldNames[field], value);
+                }
+            }
+        }
+
+        // 加载时检查每条记录的键和字段都在字符串池内、哈希有序，查找和解码时不再检查
+        private void validateRecords() throws IOException {
+            int entries = 1 + fieldNames.length;
+            long previousHash = Long.MIN_VALUE;
+            for (int record = 0; record < count; record++) {
+                int base = recordsOffset + record * stride;
+                long hash = buffer.getLong(base);
+                if (hash < previousHash) {
+                    throw new IOException("Lookup index records not sorted at " + record);
+                }
+                previousHash = hash;
+                for (int entry = 0; entry < entries; entry++) {
+                    int offset = buffer.getInt(base + 8 + entry * FIELD_ENTRY_SIZE);
+                    int length = buffer.getInt(base + 12 + entry * FIELD_ENTRY_SIZE);
+                    if (offset < 0 || length < 0 || (long) offset + length > poolSize) {
+                        throw new IOException("Corrupt lookup index record " + record);
+                    }
+                }
+            }
+        }
+
+        // 有符号比较，与生成时的排序一致
+        private long recordHash(int record) {
+            return buffer.getLong(recordsOffset + record * stride);
+        }
+
+        private boolean keyEquals(int record, int padding, byte[] key, int offset, int length) {
+            int base = recordsOffset + record * stride;
+            if (buffer.getInt(base + 12) != padding + length) {
+                return false;
+            }
+            int position = poolOffset + buffer.getInt(base + 8);
+            for (int i = 0; i < padding; i++) {
+                if (buffer.get(position++) != '0') {
+                    return false;
+                }
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(position + i) != key[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String decode(int position, int length) {
+            if (length == 0) {
+                return "";
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final File file;
+    private volatile Table table;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong swapCount = new AtomicLong();
+
+    /**
+     * @param file 索引文件位置，不存在时查找全部跳过
+     */
+    public LookupIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 映射索引文件，文件不存在时卸载当前索引
+     * @return 是否已加载
+     */
+    public boolean load() throws IOException {
+        if (!file.isFile()) {
+            table = null;
+            return false;
+        }
+        table = map(file);
+        swapCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 安装新的索引文件: 复制到索引目录的临时文件并校验，通过后重命名覆盖旧文件并切换
+     * 校验失败时旧索引保持不变。复制和刷盘可能较慢，应在后台线程调用，查找在切换前继续使用旧索引。
+     * @param source 新的索引文件
+     */
+    public void install(File source) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create lookup directory: " + directory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(temp)) {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
+            }
+            out.getFD().sync();
+        }
+        Table next;
+        try {
+            next = map(temp);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        // 同一目录内重命名是原子的；映射区引用的是文件本身，不受重命名影响
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace lookup index: " + file);
+        }
+        table = next;
+        swapCount.incrementAndGet();
+    }
+
+    /**
+     * 卸载索引，之后的扫描不再查找
+     */
+    public void unload() {
+        table = null;
+    }
+
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    /**
+     * 查找并将匹配记录附加到扫描记录
+     * @param record 扫描记录
+     * @param key 查找键所在的字节数组
+     * @return 是否匹配
+     */
+    public boolean enrich(ScanRecord record, byte[] key, int offset, int length) {
+        Table current = table;
+        if (current == null) {
+            return false;
+        }
+        int index = current.find(key, offset, length);
+        if (index < 0) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        record.setLookup(current, index);
+        hitCount.incrementAndGet();
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Table current = table;
+        stats.put("loaded", current != null);
+        if (current != null) {
+            stats.put("records", current.getCount());
+            stats.put("fields", current.getFieldCount());
+            stats.put("loadedAt", current.loadedAt);
+        }
+        stats.put("hits", hitCount.get());
+        stats.put("misses", missCount.get());
+        stats.put("swaps", swapCount.get());
+        return stats;
+    }
+
+    private static Table map(File source) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(source, "r")) {
+            long size = raf.length();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Lookup index too large: " + size);
+            }
+            // 映射在通道关闭后仍然有效
+            return new Table(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.grokscanner.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 处理阶段使用的可修改扫描记录
+ * 每个扫描管线只有一个实例，在扫描线程上逐条重复使用；字节缓冲区按需扩大，不为每条扫描分配。
+ * 阶段修改内容后由 {@link #toRecord()} 生成新的 {@link ScanRecord}，未修改时沿用原记录。
+ */
+public final class MutableScanRecord {
+    private byte[] data = new byte[256];
+    private int length;
+    private int codeType;
+    private String symbology;
+    private ScanRecord source;
+    private boolean modified;
+    // 每次修改 (内容、路由、标签) 加一，用于统计各阶段的修改次数
+    private int version;
+    // 文本在需要时才解码，内容修改后失效
+    private String text;
+    private String route;
+    private Map<String, String> tags;
+
+    /**
+     * 以一条扫描的内容开始处理
+     */
+    public void reset(ScanRecord record) {
+        byte[] bytes = record.bytes();
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, data, 0, bytes.length);
+        length = bytes.length;
+        codeType = record.getCodeType();
+        symbology = record.getSymbology();
+        source = record;
+        modified = false;
+        text = record.hasText() ? record.text() : null;
+        route = null;
+        tags = null;
+    }
+
+    /**
+     * 内容缓冲区，有效长度为 {@link #length()}；修改后应调用 {@link #setLength(int)} 或 {@link #markModified()}
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getCodeType() {
+        return codeType;
+    }
+
+    public String getSymbology() {
+        return symbology;
+    }
+
+    /**
+     * 条码文本，见 {@link PayloadDecoder}
+     */
+    public String text() {
+        if (text == null) {
+            text = PayloadDecoder.decode(data, 0, length);
+        }
+        return text;
+    }
+
+    /**
+     * 以文本替换内容，按UTF-8编码
+     */
+    public void setText(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, data, 0, bytes.length);
+        length = bytes.length;
+        modified = true;
+        version++;
+        text = value;
+    }
+
+    /**
+     * 去掉开头的字节
+     */
+    public void removeHead(int count) {
+        System.arraycopy(data, count, data, 0, length - count);
+        setLength(length - count);
+    }
+
+    /**
+     * 截短内容 (去掉结尾)
+     */
+    public void setLength(int newLength) {
+        length = newLength;
+        markModified();
+    }
+
+    /**
+     * 直接修改 data() 后调用
+     */
+    public void markModified() {
+        modified = true;
+        version++;
+        text = null;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+        version++;
+    }
+
+    /**
+     * 附加一个标签，随扫描发送给Flutter端
+     */
+    public void putTag(String key, String value) {
+        if (tags == null) {
+            tags = new HashMap<>();
+        }
+        tags.put(key, value);
+        version++;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * 生成处理后的扫描记录，附带路由和标签
+     */
+    public ScanRecord toRecord() {
+        ScanRecord record = modified
+                ? ScanRecord.ofBytes(Arrays.copyOf(data, length), codeType, symbology)
+                : source;
+        if (route != null || tags != null) {
+            record.setRouting(route, tags);
+        }
+        return record;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (data.length < capacity) {
+            data = new byte[Math.max(capacity, data.length * 2)];
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.grokscanner.scan;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 条码原始字节的文本解码
+ * 每个线程重复使用自己的 CharsetDecoder 和字符缓冲区，只在需要文本时才解码。
+ * 先按UTF-8严格解码，遇到非法序列时改用备用字符集(默认GB18030，可设为Shift_JIS等)。
+ */
+public final class PayloadDecoder {
+    public static final String DEFAULT_FALLBACK_CHARSET = "GB18030";
+
+    private static volatile Charset fallbackCharset = defaultFallback();
+
+    private static final AtomicLong asciiCount = new AtomicLong();
+    private static final AtomicLong utf8Count = new AtomicLong();
+    private static final AtomicLong fallbackCount = new AtomicLong();
+
+    // 每个线程一套解码器，CharsetDecoder 本身不是线程安全的
+    private static final ThreadLocal<Decoders> DECODERS = new ThreadLocal<Decoders>() {
+        @Override
+        protected Decoders initialValue() {
+            return new Decoders();
+        }
+    };
+
+    private static final class Decoders {
+        final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharsetDecoder fallback;
+        CharBuffer chars = CharBuffer.allocate(256);
+
+        CharsetDecoder fallbackFor(Charset charset) {
+            if (fallback == null || !fallback.charset().equals(charset)) {
+                fallback = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            return fallback;
+        }
+    }
+
+    private PayloadDecoder() {
+    }
+
+    /**
+     * 设置UTF-8解码失败时使用的字符集
+     * @param name 字符集名称，不支持时保持原设置
+     * @return 是否已设置
+     */
+    public static boolean setFallbackCharset(String name) {
+        Charset charset = lookup(name);
+        if (charset == null) {
+            return false;
+        }
+        fallbackCharset = charset;
+        return true;
+    }
+
+    public static String getFallbackCharset() {
+        return fallbackCharset.name();
+    }
+
+    /**
+     * 将整个字节数组解码为文本
+     */
+    public static String decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 将字节数组的一部分解码为文本
+     * @param bytes 原始字节
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public static String decode(byte[] bytes, int offset, int length) {
+        if (isAscii(bytes, offset, length)) {
+            asciiCount.incrementAndGet();
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        Decoders decoders = DECODERS.get();
+        String text = decode(decoders, decoders.utf8, bytes, offset, length);
+        if (text != null) {
+            utf8Count.incrementAndGet();
+            return text;
+        }
+        fallbackCount.incrementAndGet();
+        return decode(decoders, decoders.fallbackFor(fallbackCharset), bytes, offset, length);
+    }
+
+    /**
+     * 只按UTF-8严格解码，不使用备用字符集
+     * @return 内容不是ASCII或合法UTF-8 (二进制或其他字符集) 时返回null
+     */
+    public static String decodeUtf8(byte[] bytes) {
+        if (isAscii(bytes, 0, bytes.length)) {
+            asciiCount.incrementAndGet();
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        Decoders decoders = DECODERS.get();
+        String text = decode(decoders, decoders.utf8, bytes, 0, bytes.length);
+        if (text != null) {
+            utf8Count.incrementAndGet();
+        }
+        return text;
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("fallbackCharset", getFallbackCharset());
+        stats.put("ascii", asciiCount.get());
+        stats.put("utf8", utf8Count.get());
+        stats.put("fallback", fallbackCount.get());
+        return stats;
+    }
+
+    // 解码失败时返回null
+    private static String decode(Decoders decoders, CharsetDecoder decoder, byte[] bytes, int offset, int length) {
+        // 上述字符集中每个字符至少占一个字节，字符数不会超过字节数
+        if (decoders.chars.capacity() < length) {
+            decoders.chars = CharBuffer.allocate(Integer.highestOneBit(length) << 1);
+        }
+        CharBuffer out = decoders.chars;
+        out.clear();
+        ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+        decoder.reset();
+        CoderResult result = decoder.decode(in, out, true);
+        while (result.isOverflow()) {
+            out = grow(decoders, out);
+            result = decoder.decode(in, out, true);
+        }
+        if (result.isError()) {
+            return null;
+        }
+        result = decoder.flush(out);
+        while (result.isOverflow()) {
+            out = grow(decoders, out);
+            result = decoder.flush(out);
+        }
+        return new String(out.array(), 0, out.position());
+    }
+
+    private static CharBuffer grow(Decoders decoders, CharBuffer out) {
+        CharBuffer larger = CharBuffer.allocate(out.capacity() * 2);
+        out.flip();
+        larger.put(out);
+        decoders.chars = larger;
+        return larger;
+    }
+
+    private static boolean isAscii(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 设备不支持GB18030时按单字节解码，不会失败
+    private static Charset defaultFallback() {
+        Charset charset = lookup(DEFAULT_FALLBACK_CHARSET);
+        return charset != null ? charset : StandardCharsets.ISO_8859_1;
+    }
+
+    private static Charset lookup(String name) {
+        try {
+            return name != null && Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.grokscanner.scan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 扫描数据批量发送器
+ * 扫描结果先写入有界环形缓冲区，再按帧、按条数或按时间合并成一个列表发送给Flutter端。
+ * 缓冲区满时丢弃最旧的数据并计数。
+ */
+public class ScanBatcher {
+    /**
+     * 批量发送目标，在调度线程上调用
+     */
+    public interface Sink {
+        /**
+         * @param batch 按序号排列的扫描记录
+         * @return 是否已发送；返回false时 (EventSink未就绪) 这批数据同样移出缓冲区，
+         *         由 {@link ScanDelivery} 超时重发或重新监听时补发，不再随下一批重复发送
+         */
+        boolean deliver(List<Map<String, Object>> batch);
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int DEFAULT_MAX_ITEMS = 32;
+    public static final long DEFAULT_MAX_DELAY_MS = 50;
+
+    private final FrameScheduler scheduler;
+    private final Sink sink;
+    private final Object lock = new Object();
+
+    // 环形缓冲区
+    private long[] seqs;
+    private long[] timestamps;
+    private ScanRecord[] data;
+    private int head = 0;
+    private int size = 0;
+
+    private volatile boolean enabled = false;
+    private boolean flushPerFrame = true;
+    private int maxItems = DEFAULT_MAX_ITEMS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private volatile int payloadMode = ScanRecord.PAYLOAD_TEXT;
+    private boolean flushScheduled = false;
+    private boolean immediateScheduled = false;
+
+    private long droppedCount = 0;
+    private long batchCount = 0;
+    private long deliveredCount = 0;
+    private long undeliveredCount = 0;
+    private final Runnable flushTask = this::flush;
+
+    public ScanBatcher(FrameScheduler scheduler, Sink sink) {
+        this.scheduler = scheduler;
+        this.sink = sink;
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        seqs = new long[capacity];
+        timestamps = new long[capacity];
+        data = new ScanRecord[capacity];
+        head = 0;
+        size = 0;
+    }
+
+    private void resizeLocked(int capacity) {
+        long[] oldSeqs = seqs;
+        long[] oldTimestamps = timestamps;
+        ScanRecord[] oldData = data;
+        int oldHead = head;
+        int oldSize = size;
+        allocate(capacity);
+        int skip = Math.max(0, oldSize - capacity);
+        droppedCount += skip;
+        for (int i = skip; i < oldSize; i++) {
+            int index = (oldHead + i) % oldSeqs.length;
+            seqs[size] = oldSeqs[index];
+            timestamps[size] = oldTimestamps[index];
+            data[size] = oldData[index];
+            size++;
+        }
+    }
+
+    /**
+     * 是否启用批量模式，未启用时调用方应逐条发送
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 配置批量模式
+     * @param enabled 是否启用
+     * @param flushPerFrame 是否按帧发送；为false时按条数或时间发送
+     * @param maxItems 达到该条数立即发送
+     * @param maxDelayMs 非按帧模式下的最长等待时间
+     * @param capacity 缓冲区容量，缩小时丢弃最旧的数据
+     */
+    public void configure(boolean enabled, boolean flushPerFrame, int maxItems, long maxDelayMs, int capacity) {
+        synchronized (lock) {
+            this.flushPerFrame = flushPerFrame;
+            this.maxItems = Math.max(1, maxItems);
+            this.maxDelayMs = Math.max(0, maxDelayMs);
+            if (capacity > 0 && capacity != seqs.length) {
+                resizeLocked(capacity);
+            }
+            this.enabled = enabled;
+        }
+        if (!enabled) {
+            // 关闭时把剩余数据发送出去
+            scheduler.postDelayed(flushTask, 0);
+        }
+    }
+
+    /**
+     * 设置扫描数据的发送格式
+     * @param payloadMode ScanRecord.PAYLOAD_* 常量
+     */
+    public void setPayloadMode(int payloadMode) {
+        this.payloadMode = payloadMode;
+    }
+
+    /**
+     * 加入一条扫描记录，可在任意线程调用
+     */
+    public void offer(long seq, long timestamp, ScanRecord value) {
+        synchronized (lock) {
+            int capacity = seqs.length;
+            if (size == capacity) {
+                // 缓冲区已满，覆盖最旧的记录
+                data[head] = null;
+                head = (head + 1) % capacity;
+                size--;
+                droppedCount++;
+            }
+            int tail = (head + size) % capacity;
+            seqs[tail] = seq;
+            timestamps[tail] = timestamp;
+            data[tail] = value;
+            size++;
+            scheduleFlushLocked(size >= maxItems);
+        }
+    }
+
+    private void scheduleFlushLocked(boolean immediate) {
+        if (immediateScheduled || (flushScheduled && !immediate)) {
+            return;
+        }
+        flushScheduled = true;
+        if (immediate) {
+            immediateScheduled = true;
+            scheduler.postDelayed(flushTask, 0);
+        } else if (flushPerFrame) {
+            scheduler.postFrame(flushTask);
+        } else {
+            scheduler.postDelayed(flushTask, maxDelayMs);
+        }
+    }
+
+    /**
+     * 发送缓冲区中的所有记录
+     */
+    public void flush() {
+        List<Map<String, Object>> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            immediateScheduled = false;
+            if (size == 0) {
+                return;
+            }
+            batch = new ArrayList<>(size);
+            int capacity = seqs.length;
+            int mode = payloadMode;
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % capacity;
+                Map<String, Object> entry = new HashMap<>(8);
+                entry.put("seq", seqs[index]);
+                entry.put("timestamp", timestamps[index]);
+                data[index].writeTo(entry, mode);
+                batch.add(entry);
+            }
+        }
+        boolean delivered = sink.deliver(batch);
+        synchronized (lock) {
+            // 发送期间可能有新数据写入或旧数据被覆盖，只移除本批的部分 (未发送时也移除，由ScanDelivery补发)
+            int capacity = seqs.length;
+            long lastSent = (Long) batch.get(batch.size() - 1).get("seq");
+            while (size > 0 && seqs[head] <= lastSent) {
+                data[head] = null;
+                head = (head + 1) % capacity;
+                size--;
+            }
+            if (delivered) {
+                batchCount++;
+                deliveredCount += batch.size();
+            } else {
+                undeliveredCount += batch.size();
+            }
+            if (size > 0) {
+                scheduleFlushLocked(size >= maxItems);
+            }
+        }
+    }
+
+    /**
+     * 获取批量发送的统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (lock) {
+            stats.put("enabled", enabled);
+            stats.put("flushPerFrame", flushPerFrame);
+            stats.put("maxItems", maxItems);
+            stats.put("maxDelayMs", maxDelayMs);
+            stats.put("capacity", seqs.length);
+            stats.put("buffered", size);
+            stats.put("dropped", droppedCount);
+            stats.put("batches", batchCount);
+            stats.put("delivered", deliveredCount);
+            stats.put("undelivered", undeliveredCount);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.grokscanner.scan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 扫描数据序号化发送协议
+ * 每条扫描带有递增序号，先通过主通道(EventChannel)发送一次，并保存在有界的未确认缓冲区中。
+ * Flutter端按序号确认后移除；超时未确认的记录才通过备用通道(MethodChannel)重发。
+ * Flutter端按序号去重，保证每条扫描只处理一次。
+ * Flutter端尚未监听时 (冷启动) 扫描只保留在缓冲区中，不发送也不计重发次数，监听后再补发。
+ */
+public class ScanDelivery {
+    /**
+     * 发送通道，在调度线程上调用
+     */
+    public interface Transport {
+        /**
+         * 通过主通道发送一条扫描
+         * @return 是否已发送
+         */
+        boolean sendPrimary(Map<String, Object> scan);
+
+        /**
+         * 通过备用通道重发一条扫描
+         * @return 是否已发送
+         */
+        boolean sendFallback(Map<String, Object> scan);
+    }
+
+    public static final int DEFAULT_CAPACITY = 512;
+    public static final long DEFAULT_ACK_TIMEOUT_MS = 1000;
+    public static final int DEFAULT_MAX_RETRANSMITS = 3;
+
+    private final FrameScheduler scheduler;
+    private final Transport transport;
+    private final ScanBatcher batcher;
+    private final ScanMetrics metrics;
+    private final Object lock = new Object();
+
+    // 未确认记录的环形缓冲区，序号连续递增
+    private final long[] seqs;
+    private final long[] timestamps;
+    private final ScanRecord[] data;
+    private final long[] receivedNanos;
+    private final long[] firstSentNanos;
+    private final long[] channelSentNanos;
+    private final long[] lastSentNanos;
+    private final int[] attempts;
+    private final boolean[] acked;
+    private int head = 0;
+    private int size = 0;
+
+    private long ackTimeoutMs = DEFAULT_ACK_TIMEOUT_MS;
+    private int maxRetransmits = DEFAULT_MAX_RETRANSMITS;
+    private volatile int payloadMode = ScanRecord.PAYLOAD_TEXT;
+    private boolean held = false;
+    private boolean checkScheduled = false;
+    private final Runnable checkTask = this::checkTimeouts;
+
+    // 待交给主通道的扫描，双缓冲交换，一次调度发送全部
+    private List<Map<String, Object>> handoff = new ArrayList<>();
+    private List<Map<String, Object>> draining = new ArrayList<>();
+    private boolean handoffScheduled = false;
+    private final Runnable handoffTask = this::drainHandoff;
+
+    // 统计
+    private long sentCount = 0;
+    private long ackedCount = 0;
+    private long duplicateAckCount = 0;
+    private long retransmitCount = 0;
+    private long evictedCount = 0;
+    private long abandonedCount = 0;
+    private long ackLatencyTotalNanos = 0;
+    private long ackLatencyMaxNanos = 0;
+    private long heldCount = 0;
+
+    public ScanDelivery(FrameScheduler scheduler, Transport transport, ScanBatcher batcher, ScanMetrics metrics, int capacity) {
+        this.scheduler = scheduler;
+        this.transport = transport;
+        this.batcher = batcher;
+        this.metrics = metrics;
+        int cap = Math.max(1, capacity);
+        seqs = new long[cap];
+        timestamps = new long[cap];
+        data = new ScanRecord[cap];
+        receivedNanos = new long[cap];
+        firstSentNanos = new long[cap];
+        channelSentNanos = new long[cap];
+        lastSentNanos = new long[cap];
+        attempts = new int[cap];
+        acked = new boolean[cap];
+    }
+
+    /**
+     * 设置确认超时和最大重发次数
+     */
+    public void configure(long ackTimeoutMs, int maxRetransmits) {
+        synchronized (lock) {
+            this.ackTimeoutMs = Math.max(1, ackTimeoutMs);
+            this.maxRetransmits = Math.max(0, maxRetransmits);
+        }
+    }
+
+    /**
+     * 设置扫描数据的发送格式，批量发送时同样适用
+     * @param payloadMode ScanRecord.PAYLOAD_* 常量
+     */
+    public void setPayloadMode(int payloadMode) {
+        this.payloadMode = payloadMode;
+        batcher.setPayloadMode(payloadMode);
+    }
+
+    public int getPayloadMode() {
+        return payloadMode;
+    }
+
+    /**
+     * 暂停或恢复发送
+     * 暂停期间新的扫描只进入未确认缓冲区，不经主通道发送，也不超时重发；
+     * 恢复后重新计算确认超时，由调用方通过日志重放或 {@link #resendPending()} 补发。
+     * @param held 是否暂停
+     */
+    public void setHeld(boolean held) {
+        synchronized (lock) {
+            if (this.held == held) {
+                return;
+            }
+            this.held = held;
+            if (!held && size > 0) {
+                long now = System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    lastSentNanos[(head + i) % seqs.length] = now;
+                }
+                scheduleCheckLocked();
+            }
+        }
+    }
+
+    public boolean isHeld() {
+        synchronized (lock) {
+            return held;
+        }
+    }
+
+    /**
+     * 缓冲区中尚未全部确认的扫描数，即Flutter端的积压
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * 发送一条扫描，序号必须递增，可在任意线程调用。
+     * 主通道的发送统一由调度器在平台线程上批量执行。
+     * @param receivedNanos 收到广播时的 System.nanoTime()，用于统计端到端延迟
+     */
+    public void send(long seq, long timestamp, ScanRecord value, long receivedNanos) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            int capacity = seqs.length;
+            if (size == capacity) {
+                // 缓冲区已满，放弃最旧的未确认记录
+                if (!acked[head]) {
+                    evictedCount++;
+                    metrics.recordDrop();
+                }
+                removeHeadLocked();
+            }
+            int tail = (head + size) % capacity;
+            seqs[tail] = seq;
+            timestamps[tail] = timestamp;
+            data[tail] = value;
+            this.receivedNanos[tail] = receivedNanos;
+            firstSentNanos[tail] = now;
+            channelSentNanos[tail] = 0;
+            lastSentNanos[tail] = now;
+            attempts[tail] = 0;
+            acked[tail] = false;
+            size++;
+            sentCount++;
+            if (held) {
+                heldCount++;
+                return;
+            }
+            scheduleCheckLocked();
+            if (!batcher.isEnabled()) {
+                handoff.add(toMap(seq, timestamp, value, 0));
+                if (!handoffScheduled) {
+                    handoffScheduled = true;
+                    scheduler.postDelayed(handoffTask, 0);
+                }
+                return;
+            }
+        }
+        batcher.offer(seq, timestamp, value);
+    }
+
+    private void drainHandoff() {
+        List<Map<String, Object>> batch;
+        synchronized (lock) {
+            handoffScheduled = false;
+            batch = handoff;
+            handoff = draining;
+            draining = batch;
+        }
+        // 只记录实际交给EventSink的扫描；未发送的 (EventSink尚未就绪) 由超时重发或重新监听时补发
+        int sent = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Map<String, Object> scan = batch.get(i);
+            if (transport.sendPrimary(scan)) {
+                batch.set(sent++, scan);
+            }
+        }
+        batch.subList(sent, batch.size()).clear();
+        markSent(batch);
+        batch.clear();
+    }
+
+    /**
+     * 记录扫描已交给EventSink，统计发送和端到端延迟
+     * @param scans 已发送的扫描，每项包含 seq
+     */
+    public void markSent(List<Map<String, Object>> scans) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            for (int i = 0; i < scans.size(); i++) {
+                Object seq = scans.get(i).get("seq");
+                int index = seq instanceof Long ? indexOfLocked((Long) seq) : -1;
+                if (index < 0 || channelSentNanos[index] != 0) {
+                    continue;
+                }
+                channelSentNanos[index] = now;
+                metrics.recordStage(ScanMetrics.STAGE_CHANNEL_SEND, firstSentNanos[index], now);
+                metrics.recordStage(ScanMetrics.STAGE_END_TO_END, receivedNanos[index], now);
+            }
+        }
+    }
+
+    /**
+     * 处理Flutter端的确认
+     * @param ackedSeqs 已处理的序号
+     */
+    public void ack(List<? extends Number> ackedSeqs) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            for (Number number : ackedSeqs) {
+                int index = indexOfLocked(number.longValue());
+                if (index < 0 || acked[index]) {
+                    duplicateAckCount++;
+                    continue;
+                }
+                acked[index] = true;
+                ackedCount++;
+                long sentAt = channelSentNanos[index] != 0 ? channelSentNanos[index] : firstSentNanos[index];
+                metrics.recordStage(ScanMetrics.STAGE_DART_ACK, sentAt, now);
+                long latency = now - firstSentNanos[index];
+                ackLatencyTotalNanos += latency;
+                if (latency > ackLatencyMaxNanos) {
+                    ackLatencyMaxNanos = latency;
+                }
+            }
+            while (size > 0 && acked[head]) {
+                removeHeadLocked();
+            }
+        }
+    }
+
+    /**
+     * 通过主通道立即重发所有未确认的记录，用于Flutter端重新开始监听时
+     */
+    public void resendPending() {
+        List<Map<String, Object>> pending = new ArrayList<>();
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % seqs.length;
+                if (!acked[index]) {
+                    pending.add(toMap(seqs[index], timestamps[index], data[index], attempts[index]));
+                }
+            }
+        }
+        List<Map<String, Object>> sent = new ArrayList<>(pending.size());
+        for (Map<String, Object> scan : pending) {
+            if (transport.sendPrimary(scan)) {
+                sent.add(scan);
+            }
+        }
+        markSent(sent);
+    }
+
+    /**
+     * 缓冲区中是否仍保存该序号的扫描 (含已确认但尚未移出的)
+     */
+    public boolean holds(long seq) {
+        synchronized (lock) {
+            return indexOfLocked(seq) >= 0;
+        }
+    }
+
+    private int indexOfLocked(long seq) {
+        if (size == 0) {
+            return -1;
+        }
+        long offset = seq - seqs[head];
+        if (offset < 0) {
+            return -1;
+        }
+        offset = Math.min(offset, size - 1);
+        int index = (int) ((head + offset) % seqs.length);
+        if (seqs[index] == seq) {
+            return index;
+        }
+        // 序号不连续时二分查找
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = seqs[(head + mid) % seqs.length];
+            if (value < seq) {
+                low = mid + 1;
+            } else if (value > seq) {
+                high = mid - 1;
+            } else {
+                return (head + mid) % seqs.length;
+            }
+        }
+        return -1;
+    }
+
+    private void removeHeadLocked() {
+        data[head] = null;
+        head = (head + 1) % seqs.length;
+        size--;
+    }
+
+    private void scheduleCheckLocked() {
+        if (!checkScheduled) {
+            checkScheduled = true;
+            scheduler.postDelayed(checkTask, ackTimeoutMs);
+        }
+    }
+
+    private void checkTimeouts() {
+        List<Map<String, Object>> retransmits = new ArrayList<>();
+        synchronized (lock) {
+            checkScheduled = false;
+            if (held) {
+                // 恢复发送时重新调度
+                return;
+            }
+            long now = System.nanoTime();
+            long timeoutNanos = ackTimeoutMs * 1_000_000L;
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % seqs.length;
+                if (acked[index] || now - lastSentNanos[index] < timeoutNanos) {
+                    continue;
+                }
+                if (attempts[index] >= maxRetransmits) {
+                    // 超过重发次数，视为已放弃
+                    acked[index] = true;
+                    abandonedCount++;
+                    metrics.recordDrop();
+                    continue;
+                }
+                attempts[index]++;
+                lastSentNanos[index] = now;
+                retransmitCount++;
+                retransmits.add(toMap(seqs[index], timestamps[index], data[index], attempts[index]));
+            }
+            while (size > 0 && acked[head]) {
+                removeHeadLocked();
+            }
+            if (size > 0) {
+                scheduleCheckLocked();
+            }
+        }
+        for (Map<String, Object> scan : retransmits) {
+            transport.sendFallback(scan);
+        }
+    }
+
+    private Map<String, Object> toMap(long seq, long timestamp, ScanRecord value, int attempt) {
+        Map<String, Object> scan = new HashMap<>(8);
+        scan.put("seq", seq);
+        scan.put("timestamp", timestamp);
+        value.writeTo(scan, payloadMode);
+        if (attempt > 0) {
+            scan.put("retransmit", attempt);
+        }
+        return scan;
+    }
+
+    /**
+     * 获取发送协议的统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (lock) {
+            stats.put("sent", sentCount);
+            stats.put("acked", ackedCount);
+            stats.put("duplicateAcks", duplicateAckCount);
+            stats.put("retransmits", retransmitCount);
+            stats.put("evicted", evictedCount);
+            stats.put("abandoned", abandonedCount);
+            stats.put("pending", size);
+            stats.put("held", held);
+            stats.put("heldTotal", heldCount);
+            stats.put("ackTimeoutMs", ackTimeoutMs);
+            stats.put("maxRetransmits", maxRetransmits);
+            stats.put("payloadMode", ScanRecord.payloadModeName(payloadMode));
+            stats.put("ackLatencyAvgMs", ackedCount > 0 ? ackLatencyTotalNanos / ackedCount / 1e6 : 0.0);
+            stats.put("ackLatencyMaxMs", ackLatencyMaxNanos / 1e6);
+        }
+        return stats;
+    }
+}
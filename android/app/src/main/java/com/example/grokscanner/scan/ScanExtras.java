@@ -0,0 +1,16 @@
+package com.example.grokscanner.scan;
+
+/**
+ * 广播附加数据的只读视图，对应 Intent 的 extras
+ */
+public interface ScanExtras {
+    /**
+     * 获取指定键的值，不存在时返回null
+     */
+    Object get(String key);
+
+    /**
+     * 所有键
+     */
+    Iterable<String> keys();
+}
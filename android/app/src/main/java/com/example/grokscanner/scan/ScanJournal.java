@@ -0,0 +1,539 @@
+package com.example.grokscanner.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化扫描日志
+ * 每条扫描以紧凑的二进制记录追加到内存映射的分段文件中，追加时不分配对象也不产生系统调用。
+ * 进程被杀后按CRC校验恢复，Flutter端重新监听时按顺序重放未确认的记录。
+ *
+ * 记录格式:
+ * <pre>
+ * int  length   记录体长度，0表示分段结束
+ * int  crc32    记录体的CRC
+ * byte type     1=扫描 2=确认 3=序号
+ * 扫描: long seq, long timestamp, int codeType, short actionLength, int payloadLength, action, payload
+ * 确认: long fromSeq, long toSeq
+ * 序号: long lastSeq (每个新分段开头写入，旧分段全部删除后序号仍从此继续)
+ * </pre>
+ */
+public class ScanJournal {
+    /**
+     * 重放回调
+     */
+    public interface Visitor {
+        void onScan(long seq, long timestamp, String action, int codeType, byte[] payload);
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+    public static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_SIZE = 8;
+    private static final byte TYPE_SCAN = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final byte TYPE_SEQ = 3;
+    private static final int SCAN_FIXED_SIZE = 1 + 8 + 8 + 4 + 2 + 4;
+    private static final int ACK_SIZE = 1 + 8 + 8;
+    private static final int SEQ_SIZE = 1 + 8;
+
+    /**
+     * 日志分段，记录其中的扫描序号范围及确认状态
+     */
+    private static final class Segment {
+        final File file;
+        final long index;
+        long firstSeq = -1;
+        long lastSeq = -1;
+        // 以 seq - firstSeq 为下标
+        final BitSet present = new BitSet();
+        final BitSet acked = new BitSet();
+        int unacked = 0;
+
+        Segment(File file, long index) {
+            this.file = file;
+            this.index = index;
+        }
+
+        boolean contains(long seq) {
+            return firstSeq >= 0 && seq >= firstSeq && seq <= lastSeq;
+        }
+
+        void addScan(long seq) {
+            if (firstSeq < 0) {
+                firstSeq = seq;
+            }
+            if (seq < firstSeq) {
+                return;
+            }
+            lastSeq = Math.max(lastSeq, seq);
+            int offset = (int) (seq - firstSeq);
+            if (!present.get(offset)) {
+                present.set(offset);
+                unacked++;
+            }
+        }
+
+        boolean ack(long seq) {
+            if (!contains(seq)) {
+                return false;
+            }
+            int offset = (int) (seq - firstSeq);
+            if (!present.get(offset) || acked.get(offset)) {
+                return false;
+            }
+            acked.set(offset);
+            unacked--;
+            return true;
+        }
+
+        boolean isAcked(long seq) {
+            int offset = (int) (seq - firstSeq);
+            return acked.get(offset);
+        }
+    }
+
+    /**
+     * 重放时从日志读出的一条扫描
+     */
+    private static final class PendingScan {
+        final long seq;
+        final long timestamp;
+        final String action;
+        final int codeType;
+        final byte[] payload;
+
+        PendingScan(long seq, long timestamp, String action, int codeType, byte[] payload) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.action = action;
+            this.codeType = codeType;
+            this.payload = payload;
+        }
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final List<Segment> segments = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    // 预分配的记录缓冲区，先组装记录体并计算CRC，再一次性写入映射区
+    private final byte[] scratch = new byte[MAX_RECORD_SIZE];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private final Map<String, byte[]> actionBytes = new HashMap<>();
+
+    private Segment active;
+    private MappedByteBuffer activeBuffer;
+    // 下一个新分段的编号，大于目录中已有的所有分段 (包括无法读取的分段)
+    private long nextIndex = 0;
+    private long lastSeq = 0;
+
+    // 统计
+    private long appendedCount = 0;
+    private long rejectedCount = 0;
+    private long recoveredCount = 0;
+    private long corruptCount = 0;
+    private long lostCount = 0;
+    private long replayedCount = 0;
+    private long checkpointFailedCount = 0;
+
+    /**
+     * 打开日志目录并恢复已有分段
+     * @param directory 日志目录
+     */
+    public ScanJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public ScanJournal(File directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, MAX_RECORD_SIZE * 2);
+        this.maxSegments = Math.max(2, maxSegments);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory: " + directory);
+        }
+        recover();
+    }
+
+    /**
+     * 日志中最大的扫描序号，新扫描的序号应从此继续
+     */
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * 追加一条扫描记录
+     * @return 是否已写入；记录过大或无法新建分段 (见统计中的 checkpointFailed) 时返回false
+     */
+    public synchronized boolean append(long seq, long timestamp, String action, int codeType, byte[] payload) {
+        byte[] actionData = encodeAction(action);
+        int payloadLength = payload != null ? payload.length : 0;
+        int bodyLength = SCAN_FIXED_SIZE + actionData.length + payloadLength;
+        if (bodyLength > MAX_RECORD_SIZE) {
+            rejectedCount++;
+            return false;
+        }
+        try {
+            ensureCapacity(bodyLength);
+        } catch (IOException e) {
+            rejectedCount++;
+            return false;
+        }
+        scratchBuffer.clear();
+        scratchBuffer.put(TYPE_SCAN)
+                .putLong(seq)
+                .putLong(timestamp)
+                .putInt(codeType)
+                .putShort((short) actionData.length)
+                .putInt(payloadLength)
+                .put(actionData);
+        if (payloadLength > 0) {
+            scratchBuffer.put(payload);
+        }
+        writeRecord(bodyLength);
+        active.addScan(seq);
+        lastSeq = Math.max(lastSeq, seq);
+        appendedCount++;
+        return true;
+    }
+
+    /**
+     * 记录Flutter端的确认，全部确认的旧分段会被删除
+     */
+    public synchronized void ack(List<? extends Number> seqs) {
+        if (seqs.isEmpty()) {
+            return;
+        }
+        long[] sorted = new long[seqs.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = seqs.get(i).longValue();
+        }
+        Arrays.sort(sorted);
+        // 连续的序号合并为一条确认记录
+        int start = 0;
+        for (int i = 1; i <= sorted.length; i++) {
+            if (i == sorted.length || sorted[i] > sorted[i - 1] + 1) {
+                appendAck(sorted[start], sorted[i - 1]);
+                start = i;
+            }
+        }
+        for (long seq : sorted) {
+            applyAck(seq);
+        }
+        deleteAckedSegments();
+    }
+
+    /**
+     * 按顺序重放所有未确认的扫描
+     * 记录在锁内读出，回调在释放锁之后调用，重放期间扫描线程的追加不被阻塞。
+     * @return 重放的记录数
+     */
+    public int replay(Visitor visitor) {
+        List<PendingScan> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.unacked == 0) {
+                    continue;
+                }
+                ByteBuffer buffer = segment == active ? activeBuffer.duplicate() : map(segment, FileChannel.MapMode.READ_ONLY);
+                if (buffer == null) {
+                    continue;
+                }
+                int position = 0;
+                while (position + HEADER_SIZE <= buffer.capacity()) {
+                    int length = buffer.getInt(position);
+                    if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                        break;
+                    }
+                    int body = position + HEADER_SIZE;
+                    if (buffer.get(body) == TYPE_SCAN) {
+                        long seq = buffer.getLong(body + 1);
+                        if (segment.contains(seq) && !segment.isAcked(seq)) {
+                            byte[] action = new byte[buffer.getShort(body + 21)];
+                            byte[] payload = new byte[buffer.getInt(body + 23)];
+                            buffer.position(body + SCAN_FIXED_SIZE);
+                            buffer.get(action);
+                            buffer.get(payload);
+                            pending.add(new PendingScan(seq, buffer.getLong(body + 9), new String(action, StandardCharsets.UTF_8),
+                                    buffer.getInt(body + 17), payload));
+                        }
+                    }
+                    position = body + length;
+                }
+            }
+            replayedCount += pending.size();
+        }
+        for (PendingScan scan : pending) {
+            visitor.onScan(scan.seq, scan.timestamp, scan.action, scan.codeType, scan.payload);
+        }
+        return pending.size();
+    }
+
+    /**
+     * 将映射区的修改刷写到存储设备，进程被杀时页缓存不会丢失，只在需要防止断电丢失时调用
+     */
+    public synchronized void sync() {
+        if (activeBuffer != null) {
+            activeBuffer.force();
+        }
+    }
+
+    /**
+     * 获取日志统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        int unacked = 0;
+        for (Segment segment : segments) {
+            unacked += segment.unacked;
+        }
+        stats.put("segments", segments.size());
+        stats.put("unacked", unacked);
+        stats.put("lastSeq", lastSeq);
+        stats.put("appended", appendedCount);
+        stats.put("rejected", rejectedCount);
+        stats.put("recovered", recoveredCount);
+        stats.put("corrupt", corruptCount);
+        stats.put("lost", lostCount);
+        stats.put("replayed", replayedCount);
+        stats.put("checkpointFailed", checkpointFailedCount);
+        return stats;
+    }
+
+    private byte[] encodeAction(String action) {
+        if (action == null) {
+            action = "";
+        }
+        byte[] data = actionBytes.get(action);
+        if (data == null) {
+            data = action.getBytes(StandardCharsets.UTF_8);
+            if (data.length > Short.MAX_VALUE) {
+                data = Arrays.copyOf(data, Short.MAX_VALUE);
+            }
+            actionBytes.put(action, data);
+        }
+        return data;
+    }
+
+    private void appendAck(long fromSeq, long toSeq) {
+        try {
+            ensureCapacity(ACK_SIZE);
+        } catch (IOException e) {
+            return;
+        }
+        scratchBuffer.clear();
+        scratchBuffer.put(TYPE_ACK).putLong(fromSeq).putLong(toSeq);
+        writeRecord(ACK_SIZE);
+    }
+
+    private void applyAck(long seq) {
+        for (Segment segment : segments) {
+            if (segment.ack(seq)) {
+                return;
+            }
+        }
+    }
+
+    // 依次写入记录体、CRC和长度，长度最后写入，未写完的记录在恢复时视为结束
+    private void writeRecord(int bodyLength) {
+        crc.reset();
+        crc.update(scratch, 0, bodyLength);
+        int position = activeBuffer.position();
+        activeBuffer.position(position + HEADER_SIZE);
+        activeBuffer.put(scratch, 0, bodyLength);
+        activeBuffer.putInt(position + 4, (int) crc.getValue());
+        activeBuffer.putInt(position, bodyLength);
+    }
+
+    private void ensureCapacity(int bodyLength) throws IOException {
+        if (activeBuffer != null && activeBuffer.remaining() >= HEADER_SIZE + bodyLength + HEADER_SIZE) {
+            return;
+        }
+        rotate();
+    }
+
+    // 新建分段，并把旧分段的确认状态写入新分段，使旧分段删除后确认信息不会丢失
+    // 确认状态放不进一个分段时不新建分段并抛出异常，追加被拒绝，而不是丢掉部分确认信息
+    private void rotate() throws IOException {
+        // 新建分段后超出上限的最旧分段被丢弃，全部确认的旧分段被删除，不需要写入它们的确认状态
+        int evicted = Math.max(0, segments.size() + 1 - maxSegments);
+        List<long[]> checkpoint = new ArrayList<>();
+        for (int i = evicted; i < segments.size(); i++) {
+            Segment old = segments.get(i);
+            if (old.unacked > 0) {
+                collectAckedRanges(old, checkpoint);
+            }
+        }
+        int required = HEADER_SIZE + SEQ_SIZE + checkpoint.size() * (HEADER_SIZE + ACK_SIZE)
+                + HEADER_SIZE + MAX_RECORD_SIZE + HEADER_SIZE;
+        if (required > segmentSize) {
+            checkpointFailedCount++;
+            throw new IOException("Ack checkpoint does not fit in a segment: " + checkpoint.size() + " ranges");
+        }
+        Segment segment = new Segment(new File(directory, segmentName(nextIndex)), nextIndex);
+        try (RandomAccessFile file = new RandomAccessFile(segment.file, "rw")) {
+            file.setLength(segmentSize);
+            activeBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        nextIndex++;
+        active = segment;
+        segments.add(segment);
+        if (lastSeq > 0) {
+            scratchBuffer.clear();
+            scratchBuffer.put(TYPE_SEQ).putLong(lastSeq);
+            writeRecord(SEQ_SIZE);
+        }
+        for (long[] range : checkpoint) {
+            scratchBuffer.clear();
+            scratchBuffer.put(TYPE_ACK).putLong(range[0]).putLong(range[1]);
+            writeRecord(ACK_SIZE);
+        }
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.remove(0);
+            lostCount += oldest.unacked;
+            deleteFile(oldest);
+        }
+        deleteAckedSegments();
+    }
+
+    // 分段内已确认的序号合并为区间，不存在的序号一并计入，减少记录数
+    private static void collectAckedRanges(Segment segment, List<long[]> ranges) {
+        long runStart = -1;
+        for (long seq = segment.firstSeq; seq <= segment.lastSeq + 1; seq++) {
+            boolean open = seq <= segment.lastSeq && segment.present.get((int) (seq - segment.firstSeq)) && !segment.isAcked(seq);
+            if (!open && seq <= segment.lastSeq) {
+                if (runStart < 0) {
+                    runStart = seq;
+                }
+            } else if (runStart >= 0) {
+                ranges.add(new long[]{runStart, seq - 1});
+                runStart = -1;
+            }
+        }
+    }
+
+    private void deleteAckedSegments() {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment != active && segment.unacked == 0) {
+                segments.remove(i);
+                deleteFile(segment);
+            }
+        }
+    }
+
+    private void deleteFile(Segment segment) {
+        if (!segment.file.delete()) {
+            segment.file.deleteOnExit();
+        }
+    }
+
+    private MappedByteBuffer map(Segment segment, FileChannel.MapMode mode) {
+        try (RandomAccessFile file = new RandomAccessFile(segment.file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+            return file.getChannel().map(mode, 0, file.length());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String segmentName(long index) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    // 读取所有分段，校验CRC，最后一个分段作为当前写入分段继续追加
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files);
+        List<long[]> ackRanges = new ArrayList<>();
+        MappedByteBuffer lastBuffer = null;
+        int lastEnd = 0;
+        for (File file : files) {
+            long index;
+            try {
+                index = Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            nextIndex = Math.max(nextIndex, index + 1);
+            Segment segment = new Segment(file, index);
+            MappedByteBuffer buffer = map(segment, FileChannel.MapMode.READ_WRITE);
+            if (buffer == null) {
+                continue;
+            }
+            int position = 0;
+            while (position + HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                int body = position + HEADER_SIZE;
+                if (length < 0 || length > MAX_RECORD_SIZE || body + length > buffer.capacity()) {
+                    corruptCount++;
+                    break;
+                }
+                buffer.position(body);
+                buffer.get(scratch, 0, length);
+                crc.reset();
+                crc.update(scratch, 0, length);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    corruptCount++;
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(scratch, 0, length);
+                byte type = record.get();
+                if (type == TYPE_SCAN) {
+                    long seq = record.getLong();
+                    segment.addScan(seq);
+                    lastSeq = Math.max(lastSeq, seq);
+                } else if (type == TYPE_ACK) {
+                    ackRanges.add(new long[]{record.getLong(), record.getLong()});
+                } else if (type == TYPE_SEQ) {
+                    lastSeq = Math.max(lastSeq, record.getLong());
+                }
+                position = body + length;
+            }
+            segments.add(segment);
+            lastBuffer = buffer;
+            lastEnd = position;
+        }
+        for (long[] range : ackRanges) {
+            for (long seq = range[0]; seq <= range[1]; seq++) {
+                applyAck(seq);
+            }
+        }
+        for (Segment segment : segments) {
+            recoveredCount += segment.unacked;
+        }
+        if (!segments.isEmpty()) {
+            active = segments.get(segments.size() - 1);
+            activeBuffer = lastBuffer;
+            // 清除最后一条不完整记录留下的数据
+            for (int i = lastEnd; i < Math.min(lastEnd + HEADER_SIZE + MAX_RECORD_SIZE, activeBuffer.capacity()); i++) {
+                activeBuffer.put(i, (byte) 0);
+            }
+            activeBuffer.position(lastEnd);
+            deleteAckedSegments();
+        } else {
+            rotate();
+        }
+    }
+}
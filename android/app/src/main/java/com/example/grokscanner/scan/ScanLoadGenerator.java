@@ -0,0 +1,290 @@
+package com.example.grokscanner.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 合成扫描负载生成器，用于各机型的容量测试
+ * 按目标速率 (或尽快) 注入N条带标记的条码，记录每条到达扫描管线入队和Flutter端确认的时间，
+ * 汇总实际吞吐、丢失、乱序和延迟百分位数。条码内容以 "LT运行号-下标-" 开头，其余按长度分布填充。
+ * 重复的条码重新注入上一条的内容，用于检查去重过滤。合成扫描在发给Flutter端的记录中带有 "synthetic": 运行号，
+ * 不查找主数据、不计入预期集合，也不写入扫描日志和发件箱。
+ */
+public class ScanLoadGenerator implements ScanPipeline.Observer {
+    /**
+     * 注入一条扫描，在生成线程上调用
+     */
+    public interface Injector {
+        void inject(byte[] payload, int codeType);
+    }
+
+    public static final int MAX_COUNT = 200000;
+    public static final long DEFAULT_SETTLE_MS = 2000;
+
+    private static final AtomicInteger RUN_IDS = new AtomicInteger(new Random().nextInt(9000) + 1000);
+
+    /**
+     * 负载参数
+     */
+    public static class Config {
+        /** 注入条数 */
+        public int count = 1000;
+        /** 每秒条数，0表示尽快 */
+        public double ratePerSecond = 0;
+        /** 条码长度及权重，lengths为null时在 [minLength, maxLength] 间均匀分布 */
+        public int[] lengths;
+        public double[] weights;
+        public int minLength = 13;
+        public int maxLength = 13;
+        /** 厂商码制编号，随机选择 */
+        public int[] codeTypes = {ScanRecord.CODE_TYPE_UNKNOWN};
+        /** 重复注入上一条的比例，0-1 */
+        public double duplicateRatio = 0;
+        /** 注入结束后等待入队和确认的最长时间 */
+        public long settleMs = DEFAULT_SETTLE_MS;
+        /** 是否等待Flutter端确认 */
+        public boolean waitForAck = false;
+        public long seed = 1;
+    }
+
+    private final Config config;
+    private final byte[] marker;
+    private final int runId;
+    private final byte[][] payloads;
+    private final int[] indexes;
+    private final int[] codeTypes;
+    private final int uniqueCount;
+
+    // 以下下标为唯一条码的下标
+    private final AtomicLongArray injectNanos;
+    private final BitSet queued;
+    private final Map<Long, Integer> seqToIndex = new ConcurrentHashMap<>();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+
+    // 只在扫描线程上修改
+    private volatile int queuedCount = 0;
+    private volatile int passedDuplicates = 0;
+    private volatile int reorderings = 0;
+    private int maxIndexQueued = -1;
+    private volatile long lastQueuedNanos = 0;
+    private final AtomicInteger ackedCount = new AtomicInteger();
+
+    /**
+     * 按参数预先生成全部条码，注入时不再分配
+     */
+    public ScanLoadGenerator(Config config) {
+        this.config = config;
+        int count = Math.max(1, Math.min(config.count, MAX_COUNT));
+        runId = RUN_IDS.incrementAndGet();
+        marker = ("LT" + runId + "-").getBytes(StandardCharsets.US_ASCII);
+        payloads = new byte[count][];
+        indexes = new int[count];
+        codeTypes = new int[count];
+        Random random = new Random(config.seed);
+        int[] types = config.codeTypes != null && config.codeTypes.length > 0
+                ? config.codeTypes : new int[]{ScanRecord.CODE_TYPE_UNKNOWN};
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            codeTypes[i] = types[random.nextInt(types.length)];
+            if (i > 0 && random.nextDouble() < config.duplicateRatio) {
+                payloads[i] = payloads[i - 1];
+                indexes[i] = indexes[i - 1];
+            } else {
+                payloads[i] = createPayload(unique, nextLength(random));
+                indexes[i] = unique++;
+            }
+        }
+        uniqueCount = unique;
+        injectNanos = new AtomicLongArray(unique);
+        queued = new BitSet(unique);
+    }
+
+    public int getRunId() {
+        return runId;
+    }
+
+    /**
+     * 按节奏注入全部条码并等待结果，在调用线程上阻塞执行
+     * @return 测试报告
+     */
+    public Map<String, Object> run(Injector injector) {
+        long intervalNanos = config.ratePerSecond > 0 ? (long) (1_000_000_000L / config.ratePerSecond) : 0;
+        long start = System.nanoTime();
+        long behind = 0;
+        for (int i = 0; i < payloads.length; i++) {
+            if (intervalNanos > 0) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (-wait > intervalNanos) {
+                    behind++;
+                }
+            }
+            int index = indexes[i];
+            if (injectNanos.get(index) == 0) {
+                injectNanos.set(index, System.nanoTime());
+            }
+            injector.inject(payloads[i], codeTypes[i]);
+        }
+        long injectedNanos = System.nanoTime() - start;
+
+        // 等待全部入队 (和确认)，超时后未到达的计为丢失
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.settleMs);
+        while (System.nanoTime() < deadline) {
+            int done = queuedCount;
+            if (done >= uniqueCount && (!config.waitForAck || ackedCount.get() >= done)) {
+                break;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        return report(start, injectedNanos, behind);
+    }
+
+    /**
+     * 识别本次测试注入的扫描，在扫描线程上调用
+     */
+    @Override
+    public int getSyntheticRunId(ScanRecord record) {
+        return parseIndex(record.bytes()) >= 0 ? runId : 0;
+    }
+
+    /**
+     * 本次测试的扫描入队，在扫描线程上调用
+     */
+    @Override
+    public void onQueued(long seq, ScanRecord record) {
+        int index = parseIndex(record.bytes());
+        if (index < 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (queued.get(index)) {
+            // 重复条码通过了去重过滤 (过滤关闭或窗口已过)
+            passedDuplicates++;
+            return;
+        }
+        queued.set(index);
+        queueLatency.recordNanos(now - injectNanos.get(index));
+        if (index < maxIndexQueued) {
+            reorderings++;
+        } else {
+            maxIndexQueued = index;
+        }
+        seqToIndex.put(seq, index);
+        lastQueuedNanos = now;
+        queuedCount++;
+    }
+
+    /**
+     * Flutter端确认的序号，在平台线程上调用
+     */
+    public void onAcked(List<? extends Number> seqs) {
+        long now = System.nanoTime();
+        for (Number seq : seqs) {
+            Integer index = seqToIndex.remove(seq.longValue());
+            if (index != null) {
+                ackLatency.recordNanos(now - injectNanos.get(index));
+                ackedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private Map<String, Object> report(long start, long injectedNanos, long behind) {
+        int queuedUnique = queuedCount;
+        long totalBytes = 0;
+        for (byte[] payload : payloads) {
+            totalBytes += payload.length;
+        }
+        Map<String, Object> report = new HashMap<>();
+        report.put("runId", runId);
+        report.put("injected", payloads.length);
+        report.put("unique", uniqueCount);
+        report.put("duplicatesInjected", payloads.length - uniqueCount);
+        report.put("duplicatesPassed", passedDuplicates);
+        report.put("meanLength", totalBytes / (double) payloads.length);
+        report.put("targetRate", config.ratePerSecond);
+        double injectSeconds = injectedNanos / 1e9;
+        report.put("injectMs", injectedNanos / 1e6);
+        report.put("injectRate", injectSeconds > 0 ? payloads.length / injectSeconds : 0.0);
+        // 超过一个间隔未能按时注入的次数 (注入线程跟不上目标速率)
+        report.put("injectBehind", behind);
+        report.put("queued", queuedUnique);
+        double queueSeconds = lastQueuedNanos > start ? (lastQueuedNanos - start) / 1e9 : 0;
+        report.put("throughput", queueSeconds > 0 ? queuedUnique / queueSeconds : 0.0);
+        report.put("drops", uniqueCount - queuedUnique);
+        report.put("reorderings", reorderings);
+        report.put("acked", ackedCount.get());
+        report.put("queueLatency", queueLatency.summary());
+        report.put("ackLatency", ackLatency.summary());
+        return report;
+    }
+
+    private int nextLength(Random random) {
+        if (config.lengths != null && config.lengths.length > 0) {
+            if (config.weights == null || config.weights.length != config.lengths.length) {
+                return config.lengths[random.nextInt(config.lengths.length)];
+            }
+            double total = 0;
+            for (double weight : config.weights) {
+                total += Math.max(0, weight);
+            }
+            double pick = random.nextDouble() * total;
+            for (int i = 0; i < config.lengths.length; i++) {
+                pick -= Math.max(0, config.weights[i]);
+                if (pick < 0) {
+                    return config.lengths[i];
+                }
+            }
+            return config.lengths[config.lengths.length - 1];
+        }
+        int min = Math.max(1, config.minLength);
+        int max = Math.max(min, config.maxLength);
+        return min + random.nextInt(max - min + 1);
+    }
+
+    // 标记和下标之后以数字填充到指定长度，标记本身超过长度时不截断
+    private byte[] createPayload(int index, int length) {
+        byte[] head = (new String(marker, StandardCharsets.US_ASCII) + index + "-").getBytes(StandardCharsets.US_ASCII);
+        byte[] payload = new byte[Math.max(length, head.length)];
+        System.arraycopy(head, 0, payload, 0, head.length);
+        for (int i = head.length; i < payload.length; i++) {
+            payload[i] = (byte) ('0' + i % 10);
+        }
+        return payload;
+    }
+
+    // 不是本次测试的条码时返回-1
+    private int parseIndex(byte[] bytes) {
+        if (bytes.length <= marker.length) {
+            return -1;
+        }
+        for (int i = 0; i < marker.length; i++) {
+            if (bytes[i] != marker[i]) {
+                return -1;
+            }
+        }
+        int index = 0;
+        for (int i = marker.length; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (b == '-') {
+                return index < uniqueCount ? index : -1;
+            }
+            if (b < '0' || b > '9' || index > MAX_COUNT) {
+                return -1;
+            }
+            index = index * 10 + (b - '0');
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.grokscanner.scan;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 扫描路径的结构化日志
+ * 低于当前级别的调用直接返回，不拼接字符串也不装箱；启用的事件以定长记录写入预分配的环形缓冲区，
+ * 只在 {@link #dump(int)} 时才格式化为文本。可选地同时转发到logcat (仅高于转发级别的事件)。
+ */
+public class ScanLog {
+    /**
+     * logcat 等外部输出，只在事件级别不低于转发级别时调用
+     */
+    public interface Sink {
+        void write(int level, String message);
+    }
+
+    // 与 android.util.Log 的级别一致
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    /** 作为级别使用时关闭全部输出 */
+    public static final int OFF = 8;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // 事件编号，消息模板中 %1$s 为文本参数，%2$d 和 %3$d 为数值参数
+    public static final int EVT_INTENT_RECEIVED = 0;
+    public static final int EVT_SERVICE_CONNECTED = 1;
+    public static final int EVT_DECODE_ERROR = 2;
+    public static final int EVT_NO_DATA = 3;
+    public static final int EVT_DUPLICATE = 4;
+    public static final int EVT_SCAN_QUEUED = 5;
+    public static final int EVT_SINK_NULL = 6;
+    public static final int EVT_SEND_FAILED = 7;
+    public static final int EVT_RETRANSMIT = 8;
+    public static final int EVT_RETRANSMIT_FAILED = 9;
+    public static final int EVT_READER_CONFIGURED = 10;
+    public static final int EVT_READER_CONFIG_FAILED = 11;
+    public static final int EVT_JOURNAL_REPLAYED = 12;
+    public static final int EVT_SCAN_INJECTED = 13;
+    public static final int EVT_INVALID = 14;
+    public static final int EVT_GS1_ERROR = 15;
+    public static final int EVT_NOT_EXPECTED = 16;
+    public static final int EVT_READER_CONFIG_UNCHANGED = 17;
+    public static final int EVT_STAGE_DROPPED = 18;
+    public static final int EVT_SOFT_TRIGGER_PAUSED = 19;
+    public static final int EVT_SOFT_TRIGGER_RESUMED = 20;
+
+    private static final String[] MESSAGES = {
+        "intent received action=%1$s",
+        "reader service connected",
+        "decode error action=%1$s",
+        "no barcode data action=%1$s",
+        "duplicate suppressed bytes=%2$d suppressed=%3$d",
+        "scan queued seq=%2$d bytes=%3$d",
+        "eventSink is null seq=%2$d",
+        "eventSink send failed seq=%2$d: %1$s",
+        "retransmit via method channel seq=%2$d",
+        "method channel send failed seq=%2$d: %1$s",
+        "reader configured changed=%2$d ms=%3$d",
+        "reader config failed: %1$s",
+        "journal replayed count=%2$d",
+        "simulated scan source=%1$s",
+        "invalid scan reason=%1$s symbology=%2$d bytes=%3$d",
+        "gs1 parse failed error=%1$s offset=%2$d fields=%3$d",
+        "scan not expected verdict=%1$s bytes=%2$d",
+        "reader config unchanged, set skipped",
+        "scan dropped by stage=%1$s bytes=%2$d",
+        "continuous scan paused pending=%2$d",
+        "continuous scan resumed pending=%2$d pausedMs=%3$d",
+    };
+
+    private static final String LEVELS = "??VDIWEA";
+
+    // 每条记录4个long: 时间、级别/事件/线程、两个数值参数；文本参数只保存引用
+    private static final int SLOTS = 4;
+
+    private final long[] records;
+    private final String[] texts;
+    private final int capacity;
+    private long written = 0;
+
+    private volatile int level;
+    private volatile int sinkLevel = OFF;
+    private volatile Sink sink;
+
+    /**
+     * @param capacity 保留的记录条数
+     * @param level 记录级别
+     */
+    public ScanLog(int capacity, int level) {
+        this.capacity = Math.max(1, capacity);
+        this.records = new long[this.capacity * SLOTS];
+        this.texts = new String[this.capacity];
+        this.level = level;
+    }
+
+    /**
+     * 设置记录级别，低于该级别的事件被忽略
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 设置外部输出，级别不低于 sinkLevel 的事件会格式化后转发
+     */
+    public void setSink(Sink sink, int sinkLevel) {
+        this.sink = sink;
+        this.sinkLevel = sinkLevel;
+    }
+
+    public int getSinkLevel() {
+        return sinkLevel;
+    }
+
+    /**
+     * 是否会记录该级别，调用方在准备较重的参数前检查
+     */
+    public boolean isLoggable(int level) {
+        return level >= this.level || level >= sinkLevel;
+    }
+
+    public void log(int level, int event) {
+        if (isLoggable(level)) {
+            write(level, event, null, 0, 0);
+        }
+    }
+
+    public void log(int level, int event, long a) {
+        if (isLoggable(level)) {
+            write(level, event, null, a, 0);
+        }
+    }
+
+    public void log(int level, int event, long a, long b) {
+        if (isLoggable(level)) {
+            write(level, event, null, a, b);
+        }
+    }
+
+    public void log(int level, int event, String text) {
+        if (isLoggable(level)) {
+            write(level, event, text, 0, 0);
+        }
+    }
+
+    public void log(int level, int event, String text, long a) {
+        if (isLoggable(level)) {
+            write(level, event, text, a, 0);
+        }
+    }
+
+    public void log(int level, int event, String text, long a, long b) {
+        if (isLoggable(level)) {
+            write(level, event, text, a, b);
+        }
+    }
+
+    private void write(int level, int event, String text, long a, long b) {
+        long now = System.nanoTime();
+        if (level >= this.level) {
+            synchronized (records) {
+                int index = (int) (written % capacity);
+                int base = index * SLOTS;
+                records[base] = now;
+                records[base + 1] = ((long) level << 56) | ((long) event << 32) | (Thread.currentThread().getId() & 0xffffffffL);
+                records[base + 2] = a;
+                records[base + 3] = b;
+                texts[index] = text;
+                written++;
+            }
+        }
+        Sink out = sink;
+        if (out != null && level >= sinkLevel) {
+            out.write(level, format(event, text, a, b));
+        }
+    }
+
+    /**
+     * 将缓冲区中的记录格式化为文本，按时间顺序
+     * @param minLevel 只输出不低于该级别的记录
+     */
+    public String dump(int minLevel) {
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ROOT);
+        StringBuilder out = new StringBuilder();
+        synchronized (records) {
+            long first = Math.max(0, written - capacity);
+            for (long i = first; i < written; i++) {
+                int index = (int) (i % capacity);
+                int base = index * SLOTS;
+                long header = records[base + 1];
+                int recordLevel = (int) (header >>> 56);
+                if (recordLevel < minLevel) {
+                    continue;
+                }
+                int event = (int) ((header >>> 32) & 0xffffff);
+                long wall = nowMillis - (nowNanos - records[base]) / 1_000_000L;
+                out.append(time.format(new Date(wall)))
+                        .append(' ').append(recordLevel < LEVELS.length() ? LEVELS.charAt(recordLevel) : '?')
+                        .append(" [").append(header & 0xffffffffL).append("] ")
+                        .append(format(event, texts[index], records[base + 2], records[base + 3]))
+                        .append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 已写入的记录总数，包括已被覆盖的
+     */
+    public long getWrittenCount() {
+        synchronized (records) {
+            return written;
+        }
+    }
+
+    public void clear() {
+        synchronized (records) {
+            written = 0;
+            for (int i = 0; i < capacity; i++) {
+                texts[i] = null;
+            }
+        }
+    }
+
+    /**
+     * 解析Flutter端传来的级别名称: verbose / debug / info / warn / error / off
+     * @param fallback 无法解析时返回的级别
+     */
+    public static int parseLevel(String name, int fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "verbose":
+                return VERBOSE;
+            case "debug":
+                return DEBUG;
+            case "info":
+                return INFO;
+            case "warn":
+                return WARN;
+            case "error":
+                return ERROR;
+            case "off":
+                return OFF;
+            default:
+                return fallback;
+        }
+    }
+
+    private static String format(int event, String text, long a, long b) {
+        if (event < 0 || event >= MESSAGES.length) {
+            return "event " + event + " " + text + " " + a + " " + b;
+        }
+        return String.format(Locale.ROOT, MESSAGES[event], text, a, b);
+    }
+}
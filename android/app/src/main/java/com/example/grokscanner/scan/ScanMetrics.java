@@ -0,0 +1,151 @@
+package com.example.grokscanner.scan;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 扫描管线的延迟与吞吐统计
+ * 每个阶段一个固定桶直方图，另有扫描速率、丢弃和错误计数，记录时不分配对象。
+ */
+public class ScanMetrics {
+    /** 广播到达 → 找到条码数据 */
+    public static final int STAGE_KEY_RESOLUTION = 0;
+    /** 找到条码数据 → 进入发送队列 (处理阶段、校验、去重、GS1解析、查找和写入日志) */
+    public static final int STAGE_PROCESSING = 1;
+    /** 进入发送队列 → EventSink.success */
+    public static final int STAGE_CHANNEL_SEND = 2;
+    /** EventSink.success → Flutter端确认 */
+    public static final int STAGE_DART_ACK = 3;
+    /** 广播到达 → EventSink.success */
+    public static final int STAGE_END_TO_END = 4;
+
+    private static final String[] STAGE_NAMES = {
+        "keyResolution",
+        "processing",
+        "channelSend",
+        "dartAck",
+        "endToEnd",
+    };
+
+    // 按秒统计扫描数，保留最近16秒
+    private static final int RATE_SLOTS = 16;
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_NAMES.length];
+    private final AtomicLong intents = new AtomicLong();
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private final long[] rateSeconds = new long[RATE_SLOTS];
+    private final int[] rateCounts = new int[RATE_SLOTS];
+    private int peakPerSecond = 0;
+
+    public ScanMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     * @param stage 阶段，见 STAGE_* 常量
+     * @param startNanos 阶段开始的 System.nanoTime()，为0时忽略
+     * @param endNanos 阶段结束的 System.nanoTime()
+     */
+    public void recordStage(int stage, long startNanos, long endNanos) {
+        if (startNanos != 0) {
+            stages[stage].recordNanos(endNanos - startNanos);
+        }
+    }
+
+    /**
+     * 收到一个广播
+     */
+    public void recordIntent() {
+        intents.incrementAndGet();
+    }
+
+    /**
+     * 一条扫描进入发送队列
+     */
+    public void recordScan(long nowNanos) {
+        scans.incrementAndGet();
+        long second = nowNanos / 1_000_000_000L;
+        synchronized (rateSeconds) {
+            int slot = (int) (second % RATE_SLOTS);
+            if (rateSeconds[slot] != second) {
+                rateSeconds[slot] = second;
+                rateCounts[slot] = 0;
+            }
+            rateCounts[slot]++;
+            if (rateCounts[slot] > peakPerSecond) {
+                peakPerSecond = rateCounts[slot];
+            }
+        }
+    }
+
+    public void recordDrop() {
+        drops.incrementAndGet();
+    }
+
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : stages) {
+            histogram.reset();
+        }
+        intents.set(0);
+        scans.set(0);
+        drops.set(0);
+        errors.set(0);
+        synchronized (rateSeconds) {
+            for (int i = 0; i < RATE_SLOTS; i++) {
+                rateSeconds[i] = 0;
+                rateCounts[i] = 0;
+            }
+            peakPerSecond = 0;
+        }
+    }
+
+    /**
+     * 汇总所有统计，延迟单位为毫秒
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stageSummary = new LinkedHashMap<>();
+        for (int i = 0; i < stages.length; i++) {
+            stageSummary.put(STAGE_NAMES[i], stages[i].summary());
+        }
+
+        Map<String, Object> throughput = new HashMap<>();
+        long nowSecond = System.nanoTime() / 1_000_000_000L;
+        int recent = 0;
+        synchronized (rateSeconds) {
+            // 不含当前未结束的一秒
+            for (int i = 0; i < RATE_SLOTS; i++) {
+                long age = nowSecond - rateSeconds[i];
+                if (age >= 1 && age <= RATE_WINDOW_SECONDS) {
+                    recent += rateCounts[i];
+                }
+            }
+            throughput.put("peakPerSec", peakPerSecond);
+        }
+        throughput.put("scansPerSec", recent / (double) RATE_WINDOW_SECONDS);
+
+        Map<String, Object> counters = new HashMap<>();
+        counters.put("intents", intents.get());
+        counters.put("scans", scans.get());
+        counters.put("drops", drops.get());
+        counters.put("errors", errors.get());
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("stages", stageSummary);
+        metrics.put("throughput", throughput);
+        metrics.put("counters", counters);
+        return metrics;
+    }
+}
@@ -0,0 +1,569 @@
+package com.example.grokscanner.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 离线扫描发件箱
+ * 扫描在扫描线程上写入独立的 {@link ScanJournal} (与Flutter端的确认互不影响)，按条数、字节数或等待时间合并成批，
+ * 以gzip压缩的JSON在后台线程上传。网络不可用时按指数退避重试，成功后才在日志中确认；进程重启后未上传的扫描从日志恢复。
+ * 每条扫描的幂等标识为 "设备-序号" (id)，序号在设备上单调递增且跨进程重启不重复，服务器应按此去重，
+ * 已收到的扫描再次上传时照常返回成功。批次的幂等键 (Idempotency-Key) 只在同一进程内重试时不变，
+ * 进程重启后未确认的扫描可能按不同的范围重新分批，不能只依赖它去重。
+ *
+ * 请求体 (gzip前):
+ * <pre>
+ * {"device":"...","batch":"幂等键","scans":[{"id":"设备-1","seq":1,"timestamp":1700000000000,"codeType":3,"data":"..."}]}
+ * </pre>
+ * data 为条码文本；内容不是ASCII或UTF-8时 (二进制PDF417/DataMatrix等) 另带 "bytes": 原始字节的Base64，
+ * data 只是按备用字符集解码的近似文本，不能还原原始字节。
+ */
+public class ScanOutbox {
+    /**
+     * 上传一批数据，在上传线程上调用
+     */
+    public interface Uploader {
+        /**
+         * @param body gzip压缩的请求体
+         * @param idempotencyKey 批次的幂等键
+         * @return HTTP状态码
+         * @throws IOException 网络错误，稍后重试
+         */
+        int upload(byte[] body, String idempotencyKey) throws IOException;
+    }
+
+    public static final int DEFAULT_MAX_ITEMS = 500;
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+    public static final long DEFAULT_MAX_DELAY_MS = 5000;
+    /** 内存中排队的扫描上限，超过时丢弃最旧的 */
+    public static final int DEFAULT_MAX_QUEUED = 50000;
+    public static final long BACKOFF_BASE_MS = 1000;
+    public static final long BACKOFF_MAX_MS = 5 * 60 * 1000;
+
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final class Entry {
+        final long seq;
+        final long timestamp;
+        final int codeType;
+        final byte[] payload;
+        final long queuedNanos;
+
+        Entry(long seq, long timestamp, int codeType, byte[] payload, long queuedNanos) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.codeType = codeType;
+            this.payload = payload;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    /**
+     * 已开始上传的一批，重试时内容和幂等键不变
+     */
+    private static final class Batch {
+        final List<Entry> entries;
+        final String key;
+        final byte[] body;
+        final int rawSize;
+
+        Batch(List<Entry> entries, String key, byte[] body, int rawSize) {
+            this.entries = entries;
+            this.key = key;
+            this.body = body;
+            this.rawSize = rawSize;
+        }
+    }
+
+    private final ScanJournal journal;
+    private final String deviceId;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GrokScanner-Outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Runnable drainTask = this::drain;
+    private final Object lock = new Object();
+
+    // 以下字段由 lock 保护
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private Uploader uploader;
+    private int maxItems = DEFAULT_MAX_ITEMS;
+    private int maxBytes = DEFAULT_MAX_BYTES;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+    private boolean flushRequested = false;
+    private ScheduledFuture<?> scheduled;
+    private long scheduledAtNanos = 0;
+    private long retryAtNanos = 0;
+    private int consecutiveFailures = 0;
+
+    // 只在上传线程上访问
+    private Batch inFlight;
+    private final ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream(64 * 1024);
+    private final StringBuilder json = new StringBuilder(64 * 1024);
+
+    // 统计
+    private final LatencyHistogram uploadLatency = new LatencyHistogram();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+    private volatile long uploadedScans = 0;
+    private volatile long uploadedBatches = 0;
+    private volatile long failedUploads = 0;
+    private volatile long rejectedScans = 0;
+    private volatile long droppedScans = 0;
+    private volatile long rawBytes = 0;
+    private volatile long compressedBytes = 0;
+    private volatile int lastStatus = 0;
+    private volatile String lastError = null;
+
+    /**
+     * 打开发件箱并恢复日志中未上传的扫描；恢复的扫描在设置上传器后上传，设置之前新的扫描不排队也不写入日志
+     * @param journal 发件箱专用的日志
+     * @param deviceId 设备标识，写入请求体和幂等键
+     */
+    public ScanOutbox(ScanJournal journal, String deviceId) {
+        this.journal = journal;
+        this.deviceId = deviceId;
+        long now = System.nanoTime();
+        journal.replay((seq, timestamp, action, codeType, payload) -> {
+            queue.addLast(new Entry(seq, timestamp, codeType, payload, now));
+            queuedBytes += payload.length;
+        });
+    }
+
+    /**
+     * 设置上传目标和批次大小
+     * @param uploader 上传器，null时暂停上传，新的扫描也不再排队
+     * @param maxItems 每批最多条数，0表示不变
+     * @param maxBytes 每批原始数据最多字节数，0表示不变
+     * @param maxDelayMs 第一条扫描入队后最长等待时间，0表示不变
+     */
+    public void configure(Uploader uploader, int maxItems, int maxBytes, long maxDelayMs) {
+        synchronized (lock) {
+            this.uploader = uploader;
+            if (maxItems > 0) {
+                this.maxItems = maxItems;
+            }
+            if (maxBytes > 0) {
+                this.maxBytes = maxBytes;
+            }
+            if (maxDelayMs > 0) {
+                this.maxDelayMs = maxDelayMs;
+            }
+            consecutiveFailures = 0;
+            retryAtNanos = 0;
+            scheduleLocked(0);
+        }
+    }
+
+    /**
+     * 发件箱日志中最大的扫描序号
+     */
+    public long getLastSeq() {
+        return journal.getLastSeq();
+    }
+
+    public boolean isEnabled() {
+        synchronized (lock) {
+            return uploader != null;
+        }
+    }
+
+    /**
+     * 加入一条扫描，在扫描线程上调用
+     * @param payload 条码原始字节，不复制，调用方之后不应修改
+     */
+    public void offer(long seq, long timestamp, int codeType, byte[] payload) {
+        synchronized (lock) {
+            if (uploader == null) {
+                return;
+            }
+        }
+        if (!journal.append(seq, timestamp, null, codeType, payload)) {
+            return;
+        }
+        List<Long> dropped = null;
+        synchronized (lock) {
+            queue.addLast(new Entry(seq, timestamp, codeType, payload, System.nanoTime()));
+            queuedBytes += payload.length;
+            // 长时间离线时丢弃最旧的扫描；正在上传的一批中被丢弃的扫描仍随该批上传
+            while (queue.size() > maxQueued) {
+                Entry oldest = queue.pollFirst();
+                queuedBytes -= oldest.payload.length;
+                droppedScans++;
+                if (dropped == null) {
+                    dropped = new ArrayList<>();
+                }
+                dropped.add(oldest.seq);
+            }
+            if (queue.size() >= maxItems || queuedBytes >= maxBytes) {
+                scheduleLocked(0);
+            } else if (scheduled == null) {
+                scheduleLocked(maxDelayMs);
+            }
+        }
+        if (dropped != null) {
+            journal.ack(dropped);
+        }
+    }
+
+    /**
+     * 立即上传已排队的扫描，同时结束退避等待 (网络恢复时调用)
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushRequested = true;
+            consecutiveFailures = 0;
+            retryAtNanos = 0;
+            scheduleLocked(0);
+        }
+    }
+
+    /**
+     * 丢弃全部未上传的扫描
+     * @return 丢弃的条数
+     */
+    public int clear() {
+        List<Long> seqs = new ArrayList<>();
+        synchronized (lock) {
+            for (Entry entry : queue) {
+                seqs.add(entry.seq);
+            }
+            queue.clear();
+            queuedBytes = 0;
+        }
+        executor.execute(() -> inFlight = null);
+        journal.ack(seqs);
+        return seqs.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (lock) {
+            stats.put("enabled", uploader != null);
+            stats.put("queued", queue.size());
+            stats.put("queuedBytes", queuedBytes);
+            Entry oldest = queue.peekFirst();
+            stats.put("oldestAgeMs", oldest != null ? Math.max(0, System.currentTimeMillis() - oldest.timestamp) : 0);
+            stats.put("consecutiveFailures", consecutiveFailures);
+            long now = System.nanoTime();
+            stats.put("nextRetryMs", retryAtNanos > now ? TimeUnit.NANOSECONDS.toMillis(retryAtNanos - now) : 0);
+            stats.put("maxItems", maxItems);
+            stats.put("maxBytes", maxBytes);
+            stats.put("maxDelayMs", maxDelayMs);
+        }
+        stats.put("uploadedScans", uploadedScans);
+        stats.put("uploadedBatches", uploadedBatches);
+        stats.put("failedUploads", failedUploads);
+        stats.put("rejectedScans", rejectedScans);
+        stats.put("droppedScans", droppedScans);
+        stats.put("rawBytes", rawBytes);
+        stats.put("compressedBytes", compressedBytes);
+        stats.put("lastStatus", lastStatus);
+        stats.put("lastError", lastError);
+        stats.put("uploadLatency", uploadLatency.summary());
+        // 扫描时间到上传成功的时间
+        stats.put("deliveryLatency", deliveryLatency.summary());
+        stats.put("journal", journal.getStats());
+        return stats;
+    }
+
+    /**
+     * 停止上传线程，未上传的扫描保留在日志中
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 已有更早的计划时不重新安排；退避期间推迟到重试时间
+    private void scheduleLocked(long delayMs) {
+        if (uploader == null || queue.isEmpty() || executor.isShutdown()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long at = Math.max(now + TimeUnit.MILLISECONDS.toNanos(delayMs), retryAtNanos);
+        if (scheduled != null) {
+            if (scheduledAtNanos - at <= 0) {
+                return;
+            }
+            scheduled.cancel(false);
+        }
+        scheduledAtNanos = at;
+        scheduled = executor.schedule(drainTask, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+    }
+
+    // 在上传线程上逐批上传，直到队列中剩余的不足一批且未超时
+    private void drain() {
+        while (true) {
+            Uploader target;
+            synchronized (lock) {
+                scheduled = null;
+                target = uploader;
+                if (target == null || queue.isEmpty()) {
+                    flushRequested = false;
+                    return;
+                }
+                if (inFlight == null) {
+                    long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queue.peekFirst().queuedNanos);
+                    if (!flushRequested && queue.size() < maxItems && queuedBytes < maxBytes && waitedMs < maxDelayMs) {
+                        scheduleLocked(maxDelayMs - waitedMs);
+                        return;
+                    }
+                    inFlight = takeBatchLocked();
+                }
+            }
+            Batch batch = inFlight;
+            int status;
+            long start = System.nanoTime();
+            try {
+                status = target.upload(batch.body, batch.key);
+            } catch (IOException | RuntimeException e) {
+                lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+                retryLater();
+                return;
+            }
+            lastStatus = status;
+            if (status >= 200 && status < 300 || status == 409) {
+                // 409: 服务器已收到同一幂等键的批次
+                uploadLatency.recordNanos(System.nanoTime() - start);
+                long now = System.currentTimeMillis();
+                for (Entry entry : batch.entries) {
+                    deliveryLatency.recordNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - entry.timestamp)));
+                }
+                uploadedScans += batch.entries.size();
+                uploadedBatches++;
+                rawBytes += batch.rawSize;
+                compressedBytes += batch.body.length;
+                lastError = null;
+                complete(batch);
+            } else if (status == 408 || status == 429 || status >= 500) {
+                lastError = "HTTP " + status;
+                retryLater();
+                return;
+            } else {
+                // 其他4xx重试也不会成功，丢弃该批，避免阻塞后面的扫描
+                lastError = "HTTP " + status + " rejected batch " + batch.key;
+                rejectedScans += batch.entries.size();
+                complete(batch);
+            }
+        }
+    }
+
+    // 从队首移除已完成的一批并在日志中确认
+    private void complete(Batch batch) {
+        List<Long> seqs = new ArrayList<>(batch.entries.size());
+        synchronized (lock) {
+            inFlight = null;
+            consecutiveFailures = 0;
+            retryAtNanos = 0;
+            for (Entry entry : batch.entries) {
+                // clear() 或丢弃最旧数据后队首可能已不是这批
+                if (queue.peekFirst() == entry) {
+                    queue.pollFirst();
+                    queuedBytes -= entry.payload.length;
+                }
+                seqs.add(entry.seq);
+            }
+        }
+        journal.ack(seqs);
+    }
+
+    // 指数退避，在 [退避/2, 退避] 之间随机，避免多台设备同时重试
+    private void retryLater() {
+        failedUploads++;
+        synchronized (lock) {
+            consecutiveFailures++;
+            long backoff = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(consecutiveFailures - 1, 20));
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            scheduleLocked(0);
+        }
+    }
+
+    private Batch takeBatchLocked() {
+        List<Entry> entries = new ArrayList<>(Math.min(queue.size(), maxItems));
+        int size = 0;
+        for (Entry entry : queue) {
+            if (entries.size() >= maxItems || (!entries.isEmpty() && size + entry.payload.length > maxBytes)) {
+                break;
+            }
+            entries.add(entry);
+            size += entry.payload.length;
+        }
+        if (entries.size() == queue.size()) {
+            flushRequested = false;
+        }
+        Entry first = entries.get(0);
+        Entry last = entries.get(entries.size() - 1);
+        // 同一批重试时幂等键不变: 设备、序号范围和第一条的时间；跨重启的去重依靠每条扫描的id
+        String key = deviceId + "-" + first.seq + "-" + last.seq + "-" + first.timestamp;
+        return encode(entries, key);
+    }
+
+    private Batch encode(List<Entry> entries, String key) {
+        json.setLength(0);
+        json.append("{\"device\":");
+        appendString(json, deviceId);
+        json.append(",\"batch\":");
+        appendString(json, key);
+        json.append(",\"scans\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":");
+            appendString(json, deviceId + "-" + entry.seq);
+            json.append(",\"seq\":").append(entry.seq)
+                    .append(",\"timestamp\":").append(entry.timestamp)
+                    .append(",\"codeType\":").append(entry.codeType)
+                    .append(",\"data\":");
+            String text = PayloadDecoder.decodeUtf8(entry.payload);
+            if (text != null) {
+                appendString(json, text);
+            } else {
+                // 二进制或非UTF-8内容: data 按备用字符集解码仅供显示，bytes 为原始字节
+                appendString(json, PayloadDecoder.decode(entry.payload));
+                json.append(",\"bytes\":");
+                appendBase64(json, entry.payload);
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        byte[] raw = json.toString().getBytes(StandardCharsets.UTF_8);
+        bodyBuffer.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bodyBuffer, 8192)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            // 写入内存不会失败
+            throw new IllegalStateException(e);
+        }
+        return new Batch(entries, key, bodyBuffer.toByteArray(), raw.length);
+    }
+
+    // 标准Base64 (RFC 4648，带填充)，Android低版本没有 java.util.Base64
+    private static void appendBase64(StringBuilder out, byte[] data) {
+        out.append('"');
+        int i = 0;
+        for (; i + 2 < data.length; i += 3) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+            out.append(BASE64[bits >>> 18]).append(BASE64[(bits >>> 12) & 0x3f])
+                    .append(BASE64[(bits >>> 6) & 0x3f]).append(BASE64[bits & 0x3f]);
+        }
+        int remaining = data.length - i;
+        if (remaining > 0) {
+            int bits = (data[i] & 0xff) << 16 | (remaining > 1 ? (data[i + 1] & 0xff) << 8 : 0);
+            out.append(BASE64[bits >>> 18]).append(BASE64[(bits >>> 12) & 0x3f])
+                    .append(remaining > 1 ? BASE64[(bits >>> 6) & 0x3f] : '=').append('=');
+        }
+        out.append('"');
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * 以HTTP POST上传到指定地址
+     */
+    public static class HttpUploader implements Uploader {
+        private static final int CONNECT_TIMEOUT_MS = 10000;
+        private static final int READ_TIMEOUT_MS = 20000;
+
+        private final URL endpoint;
+        private final String authorization;
+
+        /**
+         * @param endpoint 上传地址
+         * @param authorization Authorization 请求头，可为null
+         */
+        public HttpUploader(String endpoint, String authorization) throws IOException {
+            this.endpoint = new URL(endpoint);
+            this.authorization = authorization;
+        }
+
+        @Override
+        public int upload(byte[] body, String idempotencyKey) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            try {
+                connection.setRequestMethod("POST");
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setRequestProperty("Content-Encoding", "gzip");
+                connection.setRequestProperty("Idempotency-Key", idempotencyKey);
+                if (authorization != null) {
+                    connection.setRequestProperty("Authorization", authorization);
+                }
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                int status = connection.getResponseCode();
+                // 读完响应体，连接才能复用
+                InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (in != null) {
+                    try {
+                        byte[] discard = new byte[1024];
+                        while (in.read(discard) >= 0) {
+                            // 丢弃
+                        }
+                    } finally {
+                        in.close();
+                    }
+                }
+                return status;
+            } catch (IOException e) {
+                // 出错的连接不再复用
+                connection.disconnect();
+                throw e;
+            }
+        }
+    }
+}
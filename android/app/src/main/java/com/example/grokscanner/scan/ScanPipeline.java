@@ -0,0 +1,315 @@
+package com.example.grokscanner.scan;
+
+import com.example.grokscanner.pda.ScannerAdapter;
+import com.example.grokscanner.pda.VendorScan;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 扫描处理管线
+ * 广播解析、可配置的处理阶段、校验、去重、GS1解析、主数据查找、预期集合比对、序号分配、日志写入、发件箱和发送入队，不依赖Android类，可在JVM上测试和基准测试。
+ * 除统计外的方法都应在同一个扫描线程上调用。
+ */
+public class ScanPipeline {
+    /**
+     * 需要平台处理的事件，在扫描线程上调用
+     */
+    public interface Listener {
+        /**
+         * 读取器服务已连接，需要配置读取器
+         */
+        void onServiceConnected();
+
+        /**
+         * 扫描数据广播中找不到条码数据
+         */
+        void onNoData();
+
+        /**
+         * 读取器返回了一次解码结果 (扫描数据或解码失败)，用于连续扫描的节奏控制
+         * @param decoded 是否解码成功
+         */
+        void onDecodeResult(boolean decoded);
+    }
+
+    /**
+     * 扫描入队的观察者 (负载测试)，在扫描线程上调用
+     */
+    public interface Observer {
+        /**
+         * 识别合成扫描，在校验和去重之后、查找主数据之前调用
+         * 合成扫描在记录中带有运行号，不查找主数据、不计入预期集合，也不写入日志和发件箱。
+         * @return 合成扫描的运行号，不是合成扫描时返回0
+         */
+        int getSyntheticRunId(ScanRecord record);
+
+        /**
+         * 合成扫描已分配序号并发送
+         */
+        void onQueued(long seq, ScanRecord record);
+    }
+
+    private final ScannerAdapter adapter;
+    private final DebugState debugState;
+    private final ScanMetrics metrics;
+    private final DuplicateFilter duplicateFilter;
+    private final ScanValidator validator;
+    private final Gs1Parser gs1Parser;
+    private final LookupIndex lookupIndex;
+    private final ExpectedSet expectedSet;
+    private final ScanDelivery delivery;
+    private final Listener listener;
+    private final ScanLog log;
+    private final AtomicLong sequence = new AtomicLong();
+    private final VendorScan vendorScan = new VendorScan();
+    private ScanJournal journal;
+    private ScanOutbox outbox;
+    private volatile Observer observer;
+    private volatile ScanStages stages = ScanStages.EMPTY;
+    private final MutableScanRecord mutableRecord = new MutableScanRecord();
+
+    // 当前广播的到达时间和Action (仅在扫描线程上读写)
+    private long currentReceiveNanos = 0;
+    private long lastReceivedTimestamp = 0;
+    private String lastReceivedAction = "None";
+
+    public ScanPipeline(ScannerAdapter adapter, DebugState debugState, ScanMetrics metrics,
+                        ScanValidator validator, DuplicateFilter duplicateFilter, Gs1Parser gs1Parser,
+                        LookupIndex lookupIndex, ExpectedSet expectedSet, ScanDelivery delivery,
+                        ScanLog log, Listener listener) {
+        this.adapter = adapter;
+        this.debugState = debugState;
+        this.metrics = metrics;
+        this.validator = validator;
+        this.duplicateFilter = duplicateFilter;
+        this.gs1Parser = gs1Parser;
+        this.lookupIndex = lookupIndex;
+        this.expectedSet = expectedSet;
+        this.delivery = delivery;
+        this.listener = listener;
+        this.log = log;
+    }
+
+    /**
+     * 设置持久化日志，序号从日志中最大的序号继续
+     */
+    public void setJournal(ScanJournal journal) {
+        this.journal = journal;
+        if (journal != null) {
+            sequence.set(Math.max(sequence.get(), journal.getLastSeq()));
+        }
+    }
+
+    /**
+     * 设置离线发件箱，扫描在发送给Flutter端的同时排队上传；序号同样从发件箱日志中最大的序号继续
+     */
+    public void setOutbox(ScanOutbox outbox) {
+        this.outbox = outbox;
+        if (outbox != null) {
+            sequence.set(Math.max(sequence.get(), outbox.getLastSeq()));
+        }
+    }
+
+    /**
+     * 设置入队观察者，null表示移除
+     */
+    public void setObserver(Observer observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * 替换处理阶段，下一条扫描开始生效
+     */
+    public void setStages(ScanStages stages) {
+        this.stages = stages != null ? stages : ScanStages.EMPTY;
+    }
+
+    public ScanStages getStages() {
+        return stages;
+    }
+
+    public ScannerAdapter getAdapter() {
+        return adapter;
+    }
+
+    /**
+     * 处理一个广播
+     * @param action 广播Action，可为null
+     * @param extras 广播附加数据，可为null；只在本次调用期间使用
+     */
+    public void onIntent(String action, ScanExtras extras) {
+        currentReceiveNanos = System.nanoTime();
+        metrics.recordIntent();
+        lastReceivedAction = action != null ? action : "null";
+        lastReceivedTimestamp = System.currentTimeMillis();
+        log.log(ScanLog.DEBUG, ScanLog.EVT_INTENT_RECEIVED, lastReceivedAction);
+        debugState.put("lastReceivedAction", lastReceivedAction);
+        debugState.put("lastReceivedTime", lastReceivedTimestamp);
+
+        // 记录所有收到的Intent extras (仅在调试状态启用时)
+        if (debugState.isEnabled()) {
+            StringBuilder extrasLog = new StringBuilder();
+            if (extras != null) {
+                for (String key : extras.keys()) {
+                    Object value = extras.get(key);
+                    String valueStr = (value != null) ? value.toString() : "null";
+                    extrasLog.append(key).append("=").append(valueStr).append(", ");
+                    debugState.put("lastExtra_" + key, valueStr);
+                }
+            }
+            debugState.put("lastExtras", extrasLog.toString());
+        }
+
+        // 处理ReaderService连接
+        if (adapter.isServiceConnected(action)) {
+            log.log(ScanLog.INFO, ScanLog.EVT_SERVICE_CONNECTED);
+            debugState.put("lastEvent", "ReaderService Connected");
+            listener.onServiceConnected();
+            return;
+        }
+
+        // 处理解码失败
+        if (adapter.isDecodeError(action)) {
+            log.log(ScanLog.WARN, ScanLog.EVT_DECODE_ERROR, lastReceivedAction);
+            debugState.put("lastEvent", "Decode Error");
+            metrics.recordError();
+            listener.onDecodeResult(false);
+            return;
+        }
+
+        // 处理扫描数据 - 由适配器直接从已知键取出，每个广播最多一条
+        // 调试信息关闭时不拼接字符串
+        boolean debug = debugState.isEnabled();
+        if (debug) {
+            debugState.put("lastEvent", "Scan Data Received (" + adapter.getName() + ")");
+        }
+        vendorScan.reset();
+        if (adapter.extract(action, extras, vendorScan)) {
+            listener.onDecodeResult(true);
+            process(vendorScan.toRecord(), debug ? adapter.getName() + " (Key: " + vendorScan.dataKey + ")" : adapter.getName());
+        } else {
+            metrics.recordError();
+            log.log(ScanLog.WARN, ScanLog.EVT_NO_DATA, lastReceivedAction);
+            debugState.put("lastError", "No barcode data found in any known key");
+            listener.onNoData();
+        }
+    }
+
+    /**
+     * 直接注入一条扫描，不经过广播解析 (模拟扫描)
+     */
+    public void inject(ScanRecord record, String source) {
+        currentReceiveNanos = System.nanoTime();
+        lastReceivedTimestamp = System.currentTimeMillis();
+        log.log(ScanLog.DEBUG, ScanLog.EVT_SCAN_INJECTED, source);
+        process(record, source);
+    }
+
+    // 处理条码数据，以原始字节为准，文本只在需要时解码
+    private void process(ScanRecord record, String source) {
+        long resolvedNanos = System.nanoTime();
+        metrics.recordStage(ScanMetrics.STAGE_KEY_RESOLUTION, currentReceiveNanos, resolvedNanos);
+
+        // 配置的过滤、转换、附加信息和路由阶段，在校验和去重之前按顺序执行
+        ScanStages currentStages = stages;
+        if (!currentStages.isEmpty()) {
+            mutableRecord.reset(record);
+            int dropped = currentStages.run(mutableRecord);
+            if (dropped >= 0) {
+                log.log(ScanLog.DEBUG, ScanLog.EVT_STAGE_DROPPED, currentStages.getName(dropped), mutableRecord.length());
+                debugState.put("lastStageDropped", currentStages.getName(dropped));
+                return;
+            }
+            record = mutableRecord.toRecord();
+        }
+        byte[] payload = record.bytes();
+
+        // 校验码制规则和校验位，误读在此丢弃或标记，不再发送给Flutter端后才被拒绝
+        int symbology = validator.resolveSymbology(record.getCodeType(), record.getSymbology());
+        int invalid = validator.validate(payload, symbology);
+        if (invalid != ScanValidator.VALID) {
+            log.log(ScanLog.WARN, ScanLog.EVT_INVALID, ScanValidator.reasonName(invalid), symbology, payload.length);
+            debugState.put("lastInvalidReason", ScanValidator.reasonName(invalid));
+            if (validator.isDropping()) {
+                return;
+            }
+            record.setInvalidReason(invalid);
+        }
+
+        // 重复扫描在分配序号前丢弃，不进入日志也不发送给Flutter
+        if (duplicateFilter.isDuplicate(DuplicateFilter.hash(payload), lastReceivedTimestamp, currentReceiveNanos)) {
+            long suppressed = duplicateFilter.getSuppressedCount();
+            log.log(ScanLog.DEBUG, ScanLog.EVT_DUPLICATE, payload.length, suppressed);
+            debugState.put("duplicatesSuppressed", suppressed);
+            return;
+        }
+
+        // GS1元素串在原生端一次切分，Flutter端按位置取字段，不再用正则重新解析
+        if (gs1Parser.shouldParse(symbology, payload)) {
+            int count = gs1Parser.parse(payload);
+            if (count >= 0) {
+                record.setGs1Fields(gs1Parser.copyFields());
+            } else {
+                record.setGs1Error(count);
+                log.log(ScanLog.WARN, ScanLog.EVT_GS1_ERROR, Gs1Parser.errorName(count),
+                        gs1Parser.getErrorOffset(), gs1Parser.getFieldCount());
+            }
+        }
+
+        // 负载测试的合成扫描照常经过校验、去重和GS1解析，但不影响主数据、预期集合和持久化的数据
+        Observer currentObserver = observer;
+        if (currentObserver != null) {
+            int runId = currentObserver.getSyntheticRunId(record);
+            if (runId != 0) {
+                record.setSynthetic(runId);
+            }
+        }
+        boolean synthetic = record.isSynthetic();
+
+        // 主数据和预期集合的键: GS1条码为GTIN (AI 01)，其他条码为完整内容
+        int keyOffset = 0;
+        int keyLength = payload.length;
+        int[] gs1 = record.getGs1Fields();
+        int gtin = gs1 != null ? Gs1Parser.indexOf(gs1, Gs1Parser.AI_GTIN) : -1;
+        if (gtin >= 0) {
+            keyOffset = gs1[gtin + 1];
+            keyLength = gs1[gtin + 2];
+        }
+
+        // 在原生端查找主数据并随扫描一起发送，Flutter端不再为每条扫描异步查询数据库
+        if (lookupIndex.isLoaded() && !synthetic) {
+            lookupIndex.enrich(record, payload, keyOffset, keyLength);
+        }
+
+        // 与拣货单等预期集合比对，Flutter端只收到结果
+        int verdict = synthetic ? ExpectedSet.VERDICT_NONE : expectedSet.check(payload, keyOffset, keyLength);
+        if (verdict != ExpectedSet.VERDICT_NONE) {
+            record.setExpectedVerdict(verdict);
+            if (verdict != ExpectedSet.VERDICT_EXPECTED) {
+                log.log(ScanLog.DEBUG, ScanLog.EVT_NOT_EXPECTED, ExpectedSet.verdictName(verdict), payload.length);
+            }
+        }
+        if (debugState.isEnabled()) {
+            debugState.put("lastBarcodeData", record.text());
+            debugState.put("lastCodeType", record.getCodeType());
+        }
+        debugState.put("barcodeSource", source);
+
+        // 每条扫描分配序号，只通过主通道发送一次；未确认时才由ScanDelivery走备用通道重发
+        long seq = sequence.incrementAndGet();
+        if (journal != null && !synthetic) {
+            journal.append(seq, lastReceivedTimestamp, lastReceivedAction, record.getCodeType(), payload);
+        }
+        long queuedNanos = System.nanoTime();
+        metrics.recordStage(ScanMetrics.STAGE_PROCESSING, resolvedNanos, queuedNanos);
+        metrics.recordScan(queuedNanos);
+        delivery.send(seq, lastReceivedTimestamp, record, currentReceiveNanos);
+        if (synthetic) {
+            currentObserver.onQueued(seq, record);
+        } else if (outbox != null) {
+            outbox.offer(seq, lastReceivedTimestamp, record.getCodeType(), payload);
+        }
+        log.log(ScanLog.DEBUG, ScanLog.EVT_SCAN_QUEUED, seq, payload.length);
+        debugState.put("lastScanSeq", seq);
+    }
+}
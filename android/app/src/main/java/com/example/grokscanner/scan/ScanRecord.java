@@ -0,0 +1,248 @@
+package com.example.grokscanner.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一条扫描结果: 原始字节、码制编号和码制名称
+ * 文本和字节按需相互转换，转换结果只计算一次；多个线程同时转换时结果相同，无需加锁。
+ */
+public class ScanRecord {
+    /** 未知码制 */
+    public static final int CODE_TYPE_UNKNOWN = -1;
+
+    /** 只发送文本 (data)，与旧版Flutter端兼容 */
+    public static final int PAYLOAD_TEXT = 0;
+    /** 只发送原始字节 (bytes，Flutter端为Uint8List)，由Flutter端决定如何解码 */
+    public static final int PAYLOAD_BYTES = 1;
+    /** 同时发送文本和原始字节 */
+    public static final int PAYLOAD_BOTH = 2;
+
+    private byte[] bytes;
+    private String text;
+    private final int codeType;
+    private final String symbology;
+    private int invalidReason = ScanValidator.VALID;
+    private int[] gs1Fields;
+    private int gs1Error = 0;
+    private LookupIndex.Table lookupTable;
+    private int lookupRecord = -1;
+    private int expectedVerdict = ExpectedSet.VERDICT_NONE;
+    private String route;
+    private Map<String, String> tags;
+    private int syntheticRunId = 0;
+
+    private ScanRecord(byte[] bytes, String text, int codeType, String symbology) {
+        this.bytes = bytes;
+        this.text = text;
+        this.codeType = codeType;
+        this.symbology = symbology;
+    }
+
+    /**
+     * 由原始字节创建，文本在需要时才解码
+     * @param bytes 原始字节，不复制，调用方之后不应修改
+     */
+    public static ScanRecord ofBytes(byte[] bytes, int codeType, String symbology) {
+        return new ScanRecord(bytes, null, codeType, symbology);
+    }
+
+    /**
+     * 由文本创建，字节在需要时按UTF-8编码
+     */
+    public static ScanRecord ofText(String text, int codeType, String symbology) {
+        return new ScanRecord(null, text, codeType, symbology);
+    }
+
+    /**
+     * 原始字节
+     */
+    public byte[] bytes() {
+        byte[] value = bytes;
+        if (value == null) {
+            value = text.getBytes(StandardCharsets.UTF_8);
+            bytes = value;
+        }
+        return value;
+    }
+
+    /**
+     * 条码文本，见 {@link PayloadDecoder}
+     */
+    public String text() {
+        String value = text;
+        if (value == null) {
+            value = PayloadDecoder.decode(bytes);
+            text = value;
+        }
+        return value;
+    }
+
+    /**
+     * 文本是否已经可用，不触发解码
+     */
+    public boolean hasText() {
+        return text != null;
+    }
+
+    public int getCodeType() {
+        return codeType;
+    }
+
+    public String getSymbology() {
+        return symbology;
+    }
+
+    /**
+     * 标记为未通过校验但仍然发送
+     * @param reason ScanValidator.REASON_* 常量
+     */
+    public void setInvalidReason(int reason) {
+        invalidReason = reason;
+    }
+
+    public int getInvalidReason() {
+        return invalidReason;
+    }
+
+    /**
+     * 设置GS1解析结果
+     * @param fields 见 {@link Gs1Parser#copyFields()}，位置相对于原始字节
+     */
+    public void setGs1Fields(int[] fields) {
+        gs1Fields = fields;
+    }
+
+    public int[] getGs1Fields() {
+        return gs1Fields;
+    }
+
+    /**
+     * 标记GS1解析失败，原始数据照常发送
+     * @param error Gs1Parser.ERR_* 常量
+     */
+    public void setGs1Error(int error) {
+        gs1Error = error;
+    }
+
+    /**
+     * 附加本地主数据查找结果，字段在写入扫描记录时才解码
+     * @param table 匹配时使用的索引，替换索引后仍然有效
+     * @param record 记录下标
+     */
+    public void setLookup(LookupIndex.Table table, int record) {
+        lookupTable = table;
+        lookupRecord = record;
+    }
+
+    /**
+     * 设置与预期集合比对的结果
+     * @param verdict ExpectedSet.VERDICT_* 常量
+     */
+    public void setExpectedVerdict(int verdict) {
+        expectedVerdict = verdict;
+    }
+
+    public int getExpectedVerdict() {
+        return expectedVerdict;
+    }
+
+    /**
+     * 设置处理阶段给出的路由和标签
+     * @param route 路由名称，可为null
+     * @param tags 标签，可为null
+     */
+    public void setRouting(String route, Map<String, String> tags) {
+        this.route = route;
+        this.tags = tags;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * 标记为负载测试注入的合成扫描
+     * @param runId 负载测试的运行号
+     */
+    public void setSynthetic(int runId) {
+        syntheticRunId = runId;
+    }
+
+    public boolean isSynthetic() {
+        return syntheticRunId != 0;
+    }
+
+    /**
+     * 按发送格式写入Flutter端的扫描记录
+     * @param out 扫描记录
+     * @param payloadMode PAYLOAD_* 常量
+     */
+    public void writeTo(Map<String, Object> out, int payloadMode) {
+        if (payloadMode != PAYLOAD_BYTES) {
+            out.put("data", text());
+        }
+        if (payloadMode != PAYLOAD_TEXT) {
+            // StandardMessageCodec 将 byte[] 直接写为 Uint8List，不经过字符串转换
+            out.put("bytes", bytes());
+        }
+        if (codeType != CODE_TYPE_UNKNOWN) {
+            out.put("codeType", codeType);
+        }
+        if (symbology != null) {
+            out.put("symbology", symbology);
+        }
+        if (invalidReason != ScanValidator.VALID) {
+            out.put("invalid", ScanValidator.reasonName(invalidReason));
+        }
+        if (gs1Fields != null) {
+            // 写为Int32List，每4个整数一个字段；GS1数据只含ASCII，位置对文本同样有效
+            out.put("gs1", gs1Fields);
+        }
+        if (gs1Error != 0) {
+            out.put("gs1Error", Gs1Parser.errorName(gs1Error));
+        }
+        if (lookupTable != null) {
+            Map<String, Object> lookup = new HashMap<>();
+            lookupTable.writeFields(lookupRecord, lookup);
+            out.put("lookup", lookup);
+        }
+        if (expectedVerdict != ExpectedSet.VERDICT_NONE) {
+            out.put("expected", ExpectedSet.verdictName(expectedVerdict));
+        }
+        if (route != null) {
+            out.put("route", route);
+        }
+        if (tags != null) {
+            out.put("tags", tags);
+        }
+        if (syntheticRunId != 0) {
+            // Flutter端据此不计入业务数据
+            out.put("synthetic", syntheticRunId);
+        }
+    }
+
+    /**
+     * 解析Flutter端传来的发送格式名称
+     */
+    public static int parsePayloadMode(String name) {
+        if ("bytes".equals(name)) {
+            return PAYLOAD_BYTES;
+        } else if ("both".equals(name)) {
+            return PAYLOAD_BOTH;
+        }
+        return PAYLOAD_TEXT;
+    }
+
+    public static String payloadModeName(int mode) {
+        switch (mode) {
+            case PAYLOAD_BYTES:
+                return "bytes";
+            case PAYLOAD_BOTH:
+                return "both";
+            default:
+                return "text";
+        }
+    }
+}
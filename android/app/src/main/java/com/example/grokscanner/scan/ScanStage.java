@@ -0,0 +1,23 @@
+package com.example.grokscanner.scan;
+
+/**
+ * 扫描处理阶段 (过滤、转换、附加信息、路由)
+ * 在扫描线程上按顺序调用，可以修改记录内容；实现不应在每条扫描时分配对象。
+ */
+public interface ScanStage {
+    /** 继续执行下一个阶段 */
+    int CONTINUE = 0;
+    /** 丢弃该扫描，后面的阶段不再执行 */
+    int DROP = 1;
+
+    /**
+     * 阶段类型名称，用于统计
+     */
+    String getType();
+
+    /**
+     * 处理一条扫描
+     * @return CONTINUE 或 DROP
+     */
+    int process(MutableScanRecord scan);
+}
@@ -0,0 +1,402 @@
+package com.example.grokscanner.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 编译后的处理阶段序列
+ * 由Flutter端的配置 (或Java代码) 一次性生成扁平数组，扫描时按下标依次调用，每个阶段单独统计次数和耗时。
+ * 配置更换时整体替换，不修改正在使用的实例。
+ *
+ * 内置阶段 (配置中的 type):
+ * <pre>
+ * filter       pattern (正则，部分匹配)、action (drop: 丢弃匹配的 / keep: 只保留匹配的)、minLength、maxLength
+ * stripPrefix  prefix
+ * stripSuffix  suffix
+ * stripAimId   去掉开头的AIM码制标识 (如 "]C1"、"]E0")
+ * case         mode (upper / lower)，只转换ASCII字母
+ * replace      pattern、replacement (正则替换全部，replacement 可引用 $1)
+ * tag          key、value、pattern (可选，匹配时才附加，value 可引用 $1)
+ * route        route、pattern (可选)；已有路由时跳过，先匹配的优先
+ * </pre>
+ * 每个阶段可以有 name，默认为 "序号:type"。
+ */
+public final class ScanStages {
+    public static final ScanStages EMPTY = new ScanStages(new ScanStage[0], new String[0]);
+
+    private final ScanStage[] stages;
+    private final String[] names;
+    private final AtomicLongArray processed;
+    private final AtomicLongArray dropped;
+    private final AtomicLongArray changed;
+    private final LatencyHistogram[] latency;
+
+    private ScanStages(ScanStage[] stages, String[] names) {
+        this.stages = stages;
+        this.names = names;
+        processed = new AtomicLongArray(stages.length);
+        dropped = new AtomicLongArray(stages.length);
+        changed = new AtomicLongArray(stages.length);
+        latency = new LatencyHistogram[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 由Java实现的阶段组成序列
+     */
+    public static ScanStages of(ScanStage... stages) {
+        String[] names = new String[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            names[i] = i + ":" + stages[i].getType();
+        }
+        return new ScanStages(stages.clone(), names);
+    }
+
+    /**
+     * 编译Flutter端的阶段配置
+     * @param specs 按顺序的阶段配置，见类说明
+     * @throws IllegalArgumentException 类型未知、缺少参数或正则错误
+     */
+    public static ScanStages compile(List<Map<String, Object>> specs) {
+        if (specs == null || specs.isEmpty()) {
+            return EMPTY;
+        }
+        List<ScanStage> stages = new ArrayList<>(specs.size());
+        String[] names = new String[specs.size()];
+        for (int i = 0; i < specs.size(); i++) {
+            Map<String, Object> spec = specs.get(i);
+            String type = string(spec, "type", true);
+            stages.add(create(type, spec));
+            String name = string(spec, "name", false);
+            names[i] = name != null ? name : i + ":" + type;
+        }
+        return new ScanStages(stages.toArray(new ScanStage[0]), names);
+    }
+
+    public boolean isEmpty() {
+        return stages.length == 0;
+    }
+
+    /**
+     * 依次执行各阶段，在扫描线程上调用
+     * @return 丢弃该扫描的阶段下标，未丢弃时返回-1
+     */
+    public int run(MutableScanRecord scan) {
+        for (int i = 0; i < stages.length; i++) {
+            int version = scan.getVersion();
+            long start = System.nanoTime();
+            int result = stages[i].process(scan);
+            latency[i].recordNanos(System.nanoTime() - start);
+            processed.incrementAndGet(i);
+            if (scan.getVersion() != version) {
+                changed.incrementAndGet(i);
+            }
+            if (result == ScanStage.DROP) {
+                dropped.incrementAndGet(i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getName(int stage) {
+        return names[stage];
+    }
+
+    /**
+     * 每个阶段的名称、类型、处理数、丢弃数、修改数和耗时
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>(stages.length);
+        for (int i = 0; i < stages.length; i++) {
+            Map<String, Object> stage = new HashMap<>();
+            stage.put("name", names[i]);
+            stage.put("type", stages[i].getType());
+            stage.put("processed", processed.get(i));
+            stage.put("dropped", dropped.get(i));
+            stage.put("changed", changed.get(i));
+            stage.put("latency", latency[i].summary());
+            stats.add(stage);
+        }
+        return stats;
+    }
+
+    private static ScanStage create(String type, Map<String, Object> spec) {
+        switch (type) {
+            case "filter":
+                return new FilterStage(pattern(spec, false), "keep".equals(string(spec, "action", false)),
+                        integer(spec, "minLength", 0), integer(spec, "maxLength", Integer.MAX_VALUE));
+            case "stripPrefix":
+                return new StripStage(type, string(spec, "prefix", true), true);
+            case "stripSuffix":
+                return new StripStage(type, string(spec, "suffix", true), false);
+            case "stripAimId":
+                return new AimIdStage();
+            case "case": {
+                String mode = string(spec, "mode", true);
+                if (!"upper".equals(mode) && !"lower".equals(mode)) {
+                    throw new IllegalArgumentException("Unknown case mode: " + mode);
+                }
+                return new CaseStage("upper".equals(mode));
+            }
+            case "replace":
+                return new ReplaceStage(pattern(spec, true), string(spec, "replacement", true));
+            case "tag":
+                return new TagStage(pattern(spec, false), string(spec, "key", true), string(spec, "value", true));
+            case "route":
+                return new RouteStage(pattern(spec, false), string(spec, "route", true));
+            default:
+                throw new IllegalArgumentException("Unknown stage type: " + type);
+        }
+    }
+
+    private static String string(Map<String, Object> spec, String key, boolean required) {
+        Object value = spec.get(key);
+        if (value == null) {
+            if (required) {
+                throw new IllegalArgumentException("Stage parameter missing: " + key);
+            }
+            return null;
+        }
+        return value.toString();
+    }
+
+    private static int integer(Map<String, Object> spec, String key, int fallback) {
+        Object value = spec.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : fallback;
+    }
+
+    private static Pattern pattern(Map<String, Object> spec, boolean required) {
+        String regex = string(spec, "pattern", required);
+        if (regex == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid pattern: " + e.getDescription());
+        }
+    }
+
+    // 将 value 中的 $n 替换为匹配的分组
+    private static String expand(String value, Matcher matcher) {
+        if (matcher == null || value.indexOf('$') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '$' && i + 1 < value.length() && Character.isDigit(value.charAt(i + 1))) {
+                int group = value.charAt(++i) - '0';
+                if (group <= matcher.groupCount() && matcher.group(group) != null) {
+                    out.append(matcher.group(group));
+                }
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static final class FilterStage implements ScanStage {
+        private final Matcher matcher;
+        private final boolean keep;
+        private final int minLength;
+        private final int maxLength;
+
+        FilterStage(Pattern pattern, boolean keep, int minLength, int maxLength) {
+            this.matcher = pattern != null ? pattern.matcher("") : null;
+            this.keep = keep;
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public String getType() {
+            return "filter";
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            if (scan.length() < minLength || scan.length() > maxLength) {
+                return DROP;
+            }
+            if (matcher == null) {
+                return CONTINUE;
+            }
+            boolean found = matcher.reset(scan.text()).find();
+            return found == keep ? CONTINUE : DROP;
+        }
+    }
+
+    private static final class StripStage implements ScanStage {
+        private final String type;
+        private final byte[] affix;
+        private final boolean prefix;
+
+        StripStage(String type, String affix, boolean prefix) {
+            this.type = type;
+            this.affix = affix.getBytes(StandardCharsets.UTF_8);
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            int length = scan.length();
+            if (affix.length == 0 || length < affix.length) {
+                return CONTINUE;
+            }
+            byte[] data = scan.data();
+            int start = prefix ? 0 : length - affix.length;
+            for (int i = 0; i < affix.length; i++) {
+                if (data[start + i] != affix[i]) {
+                    return CONTINUE;
+                }
+            }
+            if (prefix) {
+                scan.removeHead(affix.length);
+            } else {
+                scan.setLength(length - affix.length);
+            }
+            return CONTINUE;
+        }
+    }
+
+    private static final class AimIdStage implements ScanStage {
+        @Override
+        public String getType() {
+            return "stripAimId";
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            if (scan.length() >= 3 && scan.data()[0] == ']') {
+                scan.removeHead(3);
+            }
+            return CONTINUE;
+        }
+    }
+
+    private static final class CaseStage implements ScanStage {
+        private final boolean upper;
+
+        CaseStage(boolean upper) {
+            this.upper = upper;
+        }
+
+        @Override
+        public String getType() {
+            return "case";
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            byte[] data = scan.data();
+            byte from = upper ? (byte) 'a' : (byte) 'A';
+            byte to = upper ? (byte) 'z' : (byte) 'Z';
+            boolean modified = false;
+            for (int i = 0; i < scan.length(); i++) {
+                byte b = data[i];
+                if (b >= from && b <= to) {
+                    data[i] = (byte) (b ^ 0x20);
+                    modified = true;
+                }
+            }
+            if (modified) {
+                scan.markModified();
+            }
+            return CONTINUE;
+        }
+    }
+
+    private static final class ReplaceStage implements ScanStage {
+        private final Matcher matcher;
+        private final String replacement;
+
+        ReplaceStage(Pattern pattern, String replacement) {
+            this.matcher = pattern.matcher("");
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String getType() {
+            return "replace";
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            String text = scan.text();
+            if (matcher.reset(text).find()) {
+                String result = matcher.replaceAll(replacement);
+                if (!result.equals(text)) {
+                    scan.setText(result);
+                }
+            }
+            return CONTINUE;
+        }
+    }
+
+    private static final class TagStage implements ScanStage {
+        private final Matcher matcher;
+        private final String key;
+        private final String value;
+
+        TagStage(Pattern pattern, String key, String value) {
+            this.matcher = pattern != null ? pattern.matcher("") : null;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getType() {
+            return "tag";
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            if (matcher == null) {
+                scan.putTag(key, value);
+            } else if (matcher.reset(scan.text()).find()) {
+                scan.putTag(key, expand(value, matcher));
+            }
+            return CONTINUE;
+        }
+    }
+
+    private static final class RouteStage implements ScanStage {
+        private final Matcher matcher;
+        private final String route;
+
+        RouteStage(Pattern pattern, String route) {
+            this.matcher = pattern != null ? pattern.matcher("") : null;
+            this.route = route;
+        }
+
+        @Override
+        public String getType() {
+            return "route";
+        }
+
+        @Override
+        public int process(MutableScanRecord scan) {
+            if (scan.getRoute() == null && (matcher == null || matcher.reset(scan.text()).find())) {
+                scan.setRoute(route);
+            }
+            return CONTINUE;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.grokscanner.scan;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 条码校验
+ * 在发送给Flutter端之前检查码制允许/禁止列表、长度范围、字符集和校验位 (EAN-8/13、UPC-A/E、ITF-14、Code 39)，
+ * 直接在原始字节上计算，不分配对象。不合格的扫描按模式丢弃或带上原因标记后继续发送。
+ * 规则由平台线程替换为新的不可变快照，扫描线程读取时无需加锁。
+ */
+public class ScanValidator {
+    public static final int MODE_OFF = 0;
+    /** 不合格的扫描照常发送，附带 invalid 原因 */
+    public static final int MODE_FLAG = 1;
+    /** 不合格的扫描直接丢弃 */
+    public static final int MODE_DROP = 2;
+
+    public static final int VALID = 0;
+    public static final int REASON_EMPTY = 1;
+    public static final int REASON_SYMBOLOGY = 2;
+    public static final int REASON_LENGTH = 3;
+    public static final int REASON_CHARSET = 4;
+    public static final int REASON_CHECK_DIGIT = 5;
+    private static final int REASON_COUNT = 6;
+
+    private static final String[] REASON_NAMES = {
+        "valid",
+        "empty",
+        "symbology",
+        "length",
+        "charset",
+        "checkDigit",
+    };
+
+    private static final String CODE39_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%";
+    private static final int CODE_TYPE_CACHE_SIZE = 256;
+
+    /**
+     * 校验规则快照
+     */
+    private static final class Rules {
+        int mode = MODE_OFF;
+        int allowMask = 0;
+        int denyMask = 0;
+        final int[] minLength = new int[Symbology.COUNT];
+        final int[] maxLength = new int[Symbology.COUNT];
+        final boolean[] checkDigit = new boolean[Symbology.COUNT];
+        boolean code39FullAscii = false;
+
+        Rules() {
+            checkDigit[Symbology.EAN8] = true;
+            checkDigit[Symbology.EAN13] = true;
+            checkDigit[Symbology.UPCA] = true;
+            checkDigit[Symbology.UPCE] = true;
+            checkDigit[Symbology.ITF] = true;
+            checkDigit[Symbology.ITF14] = true;
+        }
+
+        Rules copy() {
+            Rules rules = new Rules();
+            rules.mode = mode;
+            rules.allowMask = allowMask;
+            rules.denyMask = denyMask;
+            System.arraycopy(minLength, 0, rules.minLength, 0, Symbology.COUNT);
+            System.arraycopy(maxLength, 0, rules.maxLength, 0, Symbology.COUNT);
+            System.arraycopy(checkDigit, 0, rules.checkDigit, 0, Symbology.COUNT);
+            rules.code39FullAscii = code39FullAscii;
+            return rules;
+        }
+    }
+
+    private volatile Rules rules = new Rules();
+    // 厂商码制编号 → 码制，-1表示尚未识别；首次遇到时按码制名称识别后缓存
+    private final int[] codeTypes = new int[CODE_TYPE_CACHE_SIZE];
+
+    private final AtomicLongArray reasons = new AtomicLongArray(REASON_COUNT);
+    private final AtomicLongArray rejectsBySymbology = new AtomicLongArray(Symbology.COUNT);
+    private final AtomicLongArray flaggedOrDropped = new AtomicLongArray(2);
+
+    public ScanValidator() {
+        Arrays.fill(codeTypes, -1);
+    }
+
+    /**
+     * 设置校验模式，保留其他规则
+     * @param mode MODE_* 常量
+     */
+    public synchronized void setMode(int mode) {
+        Rules next = rules.copy();
+        next.mode = mode;
+        rules = next;
+    }
+
+    /**
+     * 设置允许和禁止的码制
+     * @param allowed 允许的码制，为空时允许全部
+     * @param denied 禁止的码制
+     */
+    public synchronized void setSymbologies(int[] allowed, int[] denied) {
+        Rules next = rules.copy();
+        next.allowMask = mask(allowed);
+        next.denyMask = mask(denied);
+        rules = next;
+    }
+
+    /**
+     * 设置某个码制的规则
+     * @param symbology Symbology 常量
+     * @param minLength 最短长度，0表示不限制
+     * @param maxLength 最长长度，0表示不限制
+     * @param checkDigit 是否检查校验位 (Code 39 的 mod 43 校验位默认不检查)，null表示保持当前设置
+     * @param fullAscii 仅用于 Code 39，是否允许完整ASCII字符，null表示保持当前设置
+     */
+    public synchronized void setRule(int symbology, int minLength, int maxLength, Boolean checkDigit, Boolean fullAscii) {
+        if (symbology <= Symbology.UNKNOWN || symbology >= Symbology.COUNT) {
+            return;
+        }
+        Rules next = rules.copy();
+        next.minLength[symbology] = Math.max(0, minLength);
+        next.maxLength[symbology] = Math.max(0, maxLength);
+        if (checkDigit != null) {
+            next.checkDigit[symbology] = checkDigit;
+        }
+        if (symbology == Symbology.CODE39 && fullAscii != null) {
+            next.code39FullAscii = fullAscii;
+        }
+        rules = next;
+    }
+
+    /**
+     * 指定厂商码制编号对应的码制，覆盖按名称识别的结果
+     */
+    public void mapCodeType(int codeType, int symbology) {
+        if (codeType >= 0 && codeType < CODE_TYPE_CACHE_SIZE) {
+            codeTypes[codeType] = symbology;
+        }
+    }
+
+    public int getMode() {
+        return rules.mode;
+    }
+
+    /**
+     * 是否丢弃不合格的扫描；否则只做标记
+     */
+    public boolean isDropping() {
+        return rules.mode == MODE_DROP;
+    }
+
+    /**
+     * 由厂商码制编号和码制名称确定码制
+     * @param codeType 厂商码制编号，未知时为 ScanRecord.CODE_TYPE_UNKNOWN
+     * @param name 厂商码制名称，可为null
+     */
+    public int resolveSymbology(int codeType, String name) {
+        boolean cacheable = codeType >= 0 && codeType < CODE_TYPE_CACHE_SIZE;
+        if (cacheable) {
+            int cached = codeTypes[codeType];
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+        int symbology = Symbology.fromName(name);
+        if (cacheable && name != null) {
+            codeTypes[codeType] = symbology;
+        }
+        return symbology;
+    }
+
+    /**
+     * 校验一条扫描，并计入统计
+     * @param data 原始字节
+     * @param symbology Symbology 常量
+     * @return VALID 或 REASON_* 常量；校验关闭时总是返回 VALID
+     */
+    public int validate(byte[] data, int symbology) {
+        Rules current = rules;
+        if (current.mode == MODE_OFF) {
+            return VALID;
+        }
+        int reason = check(current, data, symbology);
+        reasons.incrementAndGet(reason);
+        if (reason != VALID) {
+            rejectsBySymbology.incrementAndGet(symbology >= 0 && symbology < Symbology.COUNT ? symbology : Symbology.UNKNOWN);
+            flaggedOrDropped.incrementAndGet(current.mode == MODE_DROP ? 1 : 0);
+        }
+        return reason;
+    }
+
+    public static String reasonName(int reason) {
+        return reason >= 0 && reason < REASON_COUNT ? REASON_NAMES[reason] : "unknown";
+    }
+
+    /**
+     * 解析Flutter端传来的模式名称: off / flag / drop
+     */
+    public static int parseMode(String name) {
+        if ("flag".equals(name)) {
+            return MODE_FLAG;
+        } else if ("drop".equals(name)) {
+            return MODE_DROP;
+        }
+        return MODE_OFF;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Rules current = rules;
+        stats.put("mode", current.mode == MODE_DROP ? "drop" : current.mode == MODE_FLAG ? "flag" : "off");
+        Map<String, Object> byReason = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < REASON_COUNT; i++) {
+            long count = reasons.get(i);
+            total += count;
+            byReason.put(REASON_NAMES[i], count);
+        }
+        stats.put("validated", total);
+        stats.put("reasons", byReason);
+        Map<String, Object> bySymbology = new HashMap<>();
+        for (int i = 0; i < Symbology.COUNT; i++) {
+            long count = rejectsBySymbology.get(i);
+            if (count > 0) {
+                bySymbology.put(Symbology.name(i), count);
+            }
+        }
+        stats.put("rejectsBySymbology", bySymbology);
+        stats.put("flagged", flaggedOrDropped.get(0));
+        stats.put("dropped", flaggedOrDropped.get(1));
+        return stats;
+    }
+
+    private static int check(Rules rules, byte[] data, int symbology) {
+        int length = data.length;
+        if (length == 0) {
+            return REASON_EMPTY;
+        }
+        int bit = symbologyBit(symbology);
+        if ((rules.allowMask != 0 && (rules.allowMask & bit) == 0) || (rules.denyMask & bit) != 0) {
+            return REASON_SYMBOLOGY;
+        }
+        if (symbology <= Symbology.UNKNOWN || symbology >= Symbology.COUNT) {
+            return VALID;
+        }
+        int min = rules.minLength[symbology];
+        int max = rules.maxLength[symbology];
+        if ((min > 0 && length < min) || (max > 0 && length > max)) {
+            return REASON_LENGTH;
+        }
+        boolean checkDigit = rules.checkDigit[symbology];
+        switch (symbology) {
+            case Symbology.EAN8:
+                return checkGtin(data, 8, checkDigit);
+            case Symbology.EAN13:
+                return checkGtin(data, 13, checkDigit);
+            case Symbology.UPCA:
+                return checkGtin(data, 12, checkDigit);
+            case Symbology.ITF14:
+                return checkGtin(data, 14, checkDigit);
+            case Symbology.UPCE:
+                return checkUpcE(data, checkDigit);
+            case Symbology.ITF:
+                if (!isDigits(data)) {
+                    return REASON_CHARSET;
+                }
+                if ((length & 1) != 0) {
+                    return REASON_LENGTH;
+                }
+                // ITF-14 (GTIN-14) 才有标准校验位
+                return length == 14 && checkDigit && !gtinCheckDigitValid(data) ? REASON_CHECK_DIGIT : VALID;
+            case Symbology.CODE128:
+            case Symbology.GS1_128:
+                for (byte b : data) {
+                    if (b < 0) {
+                        return REASON_CHARSET;
+                    }
+                }
+                return VALID;
+            case Symbology.CODE39:
+                return checkCode39(data, checkDigit, rules.code39FullAscii);
+            default:
+                return VALID;
+        }
+    }
+
+    private static int checkGtin(byte[] data, int expectedLength, boolean checkDigit) {
+        if (!isDigits(data)) {
+            return REASON_CHARSET;
+        }
+        if (data.length != expectedLength) {
+            return REASON_LENGTH;
+        }
+        return checkDigit && !gtinCheckDigitValid(data) ? REASON_CHECK_DIGIT : VALID;
+    }
+
+    // GTIN 校验位: 从右往左(不含校验位)奇数位乘3，偶数位乘1
+    private static boolean gtinCheckDigitValid(byte[] data) {
+        int last = data.length - 1;
+        int sum = 0;
+        for (int i = last - 1, weight = 3; i >= 0; i--, weight = 4 - weight) {
+            sum += (data[i] - '0') * weight;
+        }
+        return (10 - sum % 10) % 10 == data[last] - '0';
+    }
+
+    // UPC-E: 8位 (数字系统 + 6位 + 校验位) 展开为UPC-A后校验；6位时无法校验，只检查字符
+    private static int checkUpcE(byte[] data, boolean checkDigit) {
+        if (!isDigits(data)) {
+            return REASON_CHARSET;
+        }
+        if (data.length == 6) {
+            return VALID;
+        }
+        if (data.length != 8) {
+            return REASON_LENGTH;
+        }
+        if (data[0] != '0' && data[0] != '1') {
+            return REASON_CHARSET;
+        }
+        if (!checkDigit) {
+            return VALID;
+        }
+        int ns = data[0] - '0';
+        int d1 = data[1] - '0';
+        int d2 = data[2] - '0';
+        int d3 = data[3] - '0';
+        int d4 = data[4] - '0';
+        int d5 = data[5] - '0';
+        int d6 = data[6] - '0';
+        // 展开后的UPC-A前11位按 3,1,3,1... 加权，展开方式由最后一位数据决定
+        int sum = 3 * ns + d1 + 3 * d2;
+        switch (d6) {
+            case 0:
+            case 1:
+            case 2:
+                // ns d1 d2 d6 0 0 0 0 d3 d4 d5
+                sum += d6 + 3 * d3 + d4 + 3 * d5;
+                break;
+            case 3:
+                // ns d1 d2 d3 0 0 0 0 0 d4 d5
+                sum += d3 + d4 + 3 * d5;
+                break;
+            case 4:
+                // ns d1 d2 d3 d4 0 0 0 0 0 d5
+                sum += d3 + 3 * d4 + 3 * d5;
+                break;
+            default:
+                // ns d1 d2 d3 d4 d5 0 0 0 0 d6
+                sum += d3 + 3 * d4 + d5 + 3 * d6;
+                break;
+        }
+        return (10 - sum % 10) % 10 == data[7] - '0' ? VALID : REASON_CHECK_DIGIT;
+    }
+
+    private static int checkCode39(byte[] data, boolean checkDigit, boolean fullAscii) {
+        int start = 0;
+        int end = data.length;
+        // 去掉可能保留的起止符
+        if (end >= 2 && data[0] == '*' && data[end - 1] == '*') {
+            start = 1;
+            end--;
+        }
+        if (end <= start) {
+            return REASON_LENGTH;
+        }
+        for (int i = start; i < end; i++) {
+            byte b = data[i];
+            if (fullAscii ? b < 0 : CODE39_CHARS.indexOf(b) < 0) {
+                return REASON_CHARSET;
+            }
+        }
+        if (!checkDigit || fullAscii) {
+            return VALID;
+        }
+        if (end - start < 2) {
+            return REASON_LENGTH;
+        }
+        int sum = 0;
+        for (int i = start; i < end - 1; i++) {
+            sum += CODE39_CHARS.indexOf(data[i]);
+        }
+        return sum % 43 == CODE39_CHARS.indexOf(data[end - 1]) ? VALID : REASON_CHECK_DIGIT;
+    }
+
+    private static boolean isDigits(byte[] data) {
+        for (byte b : data) {
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int symbologyBit(int symbology) {
+        return symbology > Symbology.UNKNOWN && symbology < Symbology.COUNT ? 1 << symbology : 0;
+    }
+
+    private static int mask(int[] symbologies) {
+        int mask = 0;
+        if (symbologies != null) {
+            for (int symbology : symbologies) {
+                mask |= symbologyBit(symbology);
+            }
+        }
+        return mask;
+    }
+}
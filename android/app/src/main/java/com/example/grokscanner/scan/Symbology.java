@@ -0,0 +1,114 @@
+package com.example.grokscanner.scan;
+
+/**
+ * 条码码制
+ * 厂商的码制编号各不相同，由 {@link ScanValidator} 按编号或码制名称映射到这里的常量。
+ */
+public final class Symbology {
+    public static final int UNKNOWN = 0;
+    public static final int EAN8 = 1;
+    public static final int EAN13 = 2;
+    public static final int UPCA = 3;
+    public static final int UPCE = 4;
+    public static final int ITF = 5;
+    public static final int ITF14 = 6;
+    public static final int CODE128 = 7;
+    public static final int GS1_128 = 8;
+    public static final int CODE39 = 9;
+    public static final int CODABAR = 10;
+    public static final int QR = 11;
+    public static final int DATAMATRIX = 12;
+    public static final int PDF417 = 13;
+    public static final int COUNT = 14;
+
+    private static final String[] NAMES = {
+        "unknown",
+        "ean8",
+        "ean13",
+        "upca",
+        "upce",
+        "itf",
+        "itf14",
+        "code128",
+        "gs1_128",
+        "code39",
+        "codabar",
+        "qr",
+        "datamatrix",
+        "pdf417",
+    };
+
+    // 厂商码制名称去掉符号并转小写后的别名，与常量一一对应
+    private static final String[][] ALIASES = {
+        {},
+        {"ean8", "jan8"},
+        {"ean13", "jan13"},
+        {"upca"},
+        {"upce", "upce0", "upce1"},
+        {"itf", "interleaved2of5", "i2of5", "int2of5", "interleaved25"},
+        {"itf14"},
+        {"code128"},
+        {"gs1128", "ucc128", "ean128", "uccean128"},
+        {"code39", "code3of9"},
+        {"codabar", "nw7"},
+        {"qr", "qrcode"},
+        {"datamatrix", "dm"},
+        {"pdf417"},
+    };
+
+    private Symbology() {
+    }
+
+    public static String name(int symbology) {
+        return symbology >= 0 && symbology < COUNT ? NAMES[symbology] : NAMES[UNKNOWN];
+    }
+
+    /**
+     * 按 {@link #name(int)} 的名称查找，用于Flutter端的配置
+     * @return 码制常量，找不到时返回 UNKNOWN
+     */
+    public static int parse(String name) {
+        for (int i = 0; i < COUNT; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return fromName(name);
+    }
+
+    /**
+     * 识别厂商提供的码制名称，忽略大小写、空格和连字符，不分配对象
+     * @param name 如 "EAN-13"、"Code 128"、"UPC-E0"
+     */
+    public static int fromName(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        for (int i = 1; i < COUNT; i++) {
+            for (String alias : ALIASES[i]) {
+                if (matches(name, alias)) {
+                    return i;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // 逐字符比较，跳过名称中的非字母数字字符
+    private static boolean matches(String name, String alias) {
+        int j = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            } else if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9')) {
+                continue;
+            }
+            if (j >= alias.length() || alias.charAt(j) != c) {
+                return false;
+            }
+            j++;
+        }
+        return j == alias.length();
+    }
+}
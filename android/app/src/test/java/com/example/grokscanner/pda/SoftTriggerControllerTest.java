@@ -0,0 +1,155 @@
+package com.example.grokscanner.pda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 用模拟的读取器验证软触发的节奏自适应和按积压暂停、恢复
+ */
+public class SoftTriggerControllerTest {
+    private static final int RESULT_NONE = 0;
+    private static final int RESULT_DECODED = 1;
+    private static final int RESULT_MISSED = 2;
+
+    /**
+     * 模拟读取器，每次触发后立即按 result 报告解码结果
+     */
+    private final class FakeReader implements ReaderControl {
+        final AtomicInteger triggers = new AtomicInteger();
+        volatile int result = RESULT_NONE;
+
+        @Override
+        public void Get_ReaderOutputConfiguration(ReaderOutputConfiguration config) {
+        }
+
+        @Override
+        public void Set_ReaderOutputConfiguration(ReaderOutputConfiguration config) {
+        }
+
+        @Override
+        public boolean SoftScanTrigger() {
+            triggers.incrementAndGet();
+            if (result != RESULT_NONE) {
+                controller.onDecodeResult(result == RESULT_DECODED);
+            }
+            return true;
+        }
+    }
+
+    private final FakeReader reader = new FakeReader();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger pauses = new AtomicInteger();
+    private final AtomicInteger resumes = new AtomicInteger();
+    private SoftTriggerController controller;
+
+    @Before
+    public void setUp() {
+        controller = new SoftTriggerController(reader, pending::get, new SoftTriggerController.Listener() {
+            @Override
+            public void onPaused(int backlog) {
+                pauses.incrementAndGet();
+            }
+
+            @Override
+            public void onResumed(int backlog, long pausedNanos) {
+                resumes.incrementAndGet();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    @Test
+    public void backsOffToMaxIntervalWhenNothingDecodes() {
+        reader.result = RESULT_MISSED;
+        controller.start(10, 40, 8, 4);
+        await(() -> intervalMs() == 40.0);
+        assertTrue((long) controller.getStats().get("misses") >= 6);
+        assertEquals(0L, controller.getStats().get("decodes"));
+    }
+
+    @Test
+    public void countsTriggerWithoutResultAsMiss() {
+        controller.start(10, 40, 8, 4);
+        await(() -> (long) controller.getStats().get("misses") >= 2);
+        assertTrue(intervalMs() > 10.0);
+    }
+
+    @Test
+    public void speedsUpToMinIntervalOnDecode() {
+        reader.result = RESULT_MISSED;
+        controller.start(10, 80, 8, 4);
+        await(() -> intervalMs() == 80.0);
+
+        reader.result = RESULT_DECODED;
+        // 每次解码间隔减半: 80 → 40 → 20 → 10
+        await(() -> intervalMs() == 10.0);
+        assertTrue((long) controller.getStats().get("decodes") >= 3);
+    }
+
+    @Test
+    public void pausesAtHighWatermarkAndResumesAtLowWatermark() throws InterruptedException {
+        reader.result = RESULT_DECODED;
+        controller.start(10, 40, 8, 4);
+        await(() -> reader.triggers.get() >= 2);
+
+        pending.set(8);
+        await(() -> pauses.get() == 1);
+        assertEquals(true, controller.getStats().get("paused"));
+        int triggers = reader.triggers.get();
+        // 积压仍高于下限时保持暂停 (多个检查周期)
+        pending.set(5);
+        Thread.sleep(SoftTriggerController.BACKLOG_POLL_MS * 4);
+        assertEquals(triggers, reader.triggers.get());
+        assertEquals(0, resumes.get());
+
+        pending.set(4);
+        await(() -> resumes.get() == 1);
+        await(() -> reader.triggers.get() > triggers);
+        assertEquals(false, controller.getStats().get("paused"));
+        assertEquals(1L, controller.getStats().get("pauses"));
+    }
+
+    @Test
+    public void stopCancelsPendingTrigger() throws InterruptedException {
+        controller.start(20, 20, 8, 4);
+        await(() -> reader.triggers.get() >= 1);
+        controller.stop();
+        // 等待可能正在执行的触发结束
+        Thread.sleep(20);
+        int triggers = reader.triggers.get();
+        Thread.sleep(100);
+        assertEquals(triggers, reader.triggers.get());
+        assertFalse(controller.isRunning());
+    }
+
+    private double intervalMs() {
+        return (double) controller.getStats().get("intervalMs");
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for condition");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.grokscanner.scan;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 验证批量发送在EventSink未就绪时不会把同一批扫描重复发送
+ */
+public class ScanBatcherTest {
+    /**
+     * 手动执行的调度器，测试中调用 {@link #runAll()} 代替帧和延迟
+     */
+    private static final class ManualScheduler implements FrameScheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void postFrame(Runnable task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final List<Long> delivered = new ArrayList<>();
+    private boolean sinkReady = false;
+    private final ScanBatcher batcher = new ScanBatcher(scheduler, batch -> {
+        if (!sinkReady) {
+            return false;
+        }
+        for (Map<String, Object> entry : batch) {
+            delivered.add((Long) entry.get("seq"));
+        }
+        return true;
+    });
+
+    @Test
+    public void undeliveredBatchIsNotSentAgainWithNextBatch() {
+        batcher.configure(true, true, 32, 50, 16);
+        batcher.offer(1, 1000, ScanRecord.ofBytes(new byte[]{'1'}, ScanRecord.CODE_TYPE_UNKNOWN, null));
+        batcher.offer(2, 1001, ScanRecord.ofBytes(new byte[]{'2'}, ScanRecord.CODE_TYPE_UNKNOWN, null));
+        scheduler.runAll();
+        assertEquals(0, batcher.getStats().get("buffered"));
+        assertEquals(2L, batcher.getStats().get("undelivered"));
+
+        // 1、2 由 ScanDelivery 补发，之后的批次只包含新扫描
+        sinkReady = true;
+        batcher.offer(3, 1002, ScanRecord.ofBytes(new byte[]{'3'}, ScanRecord.CODE_TYPE_UNKNOWN, null));
+        scheduler.runAll();
+        assertEquals(Collections.singletonList(3L), delivered);
+        assertEquals(1L, batcher.getStats().get("delivered"));
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.grokscanner.scan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 验证扫描日志的CRC恢复、分段轮换和确认状态的持久化
+ */
+public class ScanJournalTest {
+    // 按最小分段 (128KB) 创建，每个分段约120条1KB的扫描
+    private static final int SEGMENT_SIZE = 0;
+    private static final byte[] LARGE_PAYLOAD = new byte[1000];
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void recoversUpToCorruptRecord() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 4);
+        for (long seq = 1; seq <= 3; seq++) {
+            assertTrue(journal.append(seq, 1000 + seq, "scan", 1, new byte[]{'0', (byte) ('0' + seq)}));
+        }
+        // 记录长度: 头8 + 固定27 + action 4 + payload 2，破坏第3条记录的payload
+        int recordSize = 8 + 27 + 4 + 2;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0), "rw")) {
+            file.seek(recordSize * 3 - 1);
+            file.write('x');
+        }
+
+        ScanJournal recovered = new ScanJournal(directory, SEGMENT_SIZE, 4);
+        assertEquals(1L, recovered.getStats().get("corrupt"));
+        assertEquals(2L, recovered.getLastSeq());
+        assertEquals(Arrays.asList(1L, 2L), replaySeqs(recovered));
+
+        // 损坏的记录被新记录覆盖，再次恢复时不再报告损坏
+        assertTrue(recovered.append(3, 2000, "scan", 1, new byte[]{'0', '3'}));
+        ScanJournal reopened = new ScanJournal(directory, SEGMENT_SIZE, 4);
+        assertEquals(0L, reopened.getStats().get("corrupt"));
+        assertEquals(Arrays.asList(1L, 2L, 3L), replaySeqs(reopened));
+    }
+
+    @Test
+    public void replaysScanFields() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 4);
+        journal.append(7, 12345, "com.example.SCAN", 11, new byte[]{'A', 'B'});
+        List<String> scans = new ArrayList<>();
+        new ScanJournal(directory, SEGMENT_SIZE, 4).replay((seq, timestamp, action, codeType, payload) ->
+                scans.add(seq + "/" + timestamp + "/" + action + "/" + codeType + "/" + new String(payload)));
+        assertEquals(Arrays.asList("7/12345/com.example.SCAN/11/AB"), scans);
+    }
+
+    @Test
+    public void appendIsNotBlockedDuringReplay() throws Exception {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 4);
+        journal.append(1, 1000, "scan", 1, new byte[]{'1'});
+        journal.append(2, 1001, "scan", 1, new byte[]{'2'});
+        // 回调中由另一个线程 (扫描线程) 追加，回调持有日志锁时会超时
+        List<Boolean> appended = new ArrayList<>();
+        int count = journal.replay((seq, timestamp, action, codeType, payload) -> {
+            FutureTask<Boolean> task = new FutureTask<>(() -> journal.append(seq + 10, 2000, "scan", 1, payload));
+            new Thread(task).start();
+            try {
+                appended.add(task.get(5, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertEquals(2, count);
+        assertEquals(Arrays.asList(true, true), appended);
+        assertEquals(Arrays.asList(1L, 2L, 11L, 12L), replaySeqs(journal));
+    }
+
+    @Test
+    public void deletesFullyAckedSegments() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 8);
+        long second = appendUntilRotation(journal, 1, LARGE_PAYLOAD);
+        long third = appendUntilRotation(journal, second + 1, LARGE_PAYLOAD);
+        assertEquals(3, segmentFiles().size());
+
+        journal.ack(range(1, second - 1));
+        assertEquals(2, journal.getStats().get("segments"));
+        assertEquals(2, segmentFiles().size());
+
+        // 当前写入分段即使全部确认也保留
+        journal.ack(range(second, third));
+        assertEquals(1, journal.getStats().get("segments"));
+        assertEquals(0, journal.getStats().get("unacked"));
+    }
+
+    @Test
+    public void acksSurviveRestart() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 8);
+        long second = appendUntilRotation(journal, 1, LARGE_PAYLOAD);
+        journal.ack(Arrays.asList(2L, 3L, second));
+
+        ScanJournal recovered = new ScanJournal(directory, SEGMENT_SIZE, 8);
+        List<Long> seqs = replaySeqs(recovered);
+        assertEquals(second - 3, seqs.size());
+        assertFalse(seqs.contains(2L));
+        assertFalse(seqs.contains(3L));
+        assertFalse(seqs.contains(second));
+        assertEquals(second, recovered.getLastSeq());
+    }
+
+    @Test
+    public void ackCheckpointSurvivesDeletionOfSegmentHoldingAcks() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 8);
+        long second = appendUntilRotation(journal, 1, LARGE_PAYLOAD);
+        // 第1分段的偶数序号的确认记录写在第2分段
+        List<Long> even = new ArrayList<>();
+        for (long seq = 2; seq < second; seq += 2) {
+            even.add(seq);
+        }
+        journal.ack(even);
+        // 轮换到第3分段时写入第1分段的确认状态，再确认第2、3分段的全部扫描，第2分段被删除
+        long third = appendUntilRotation(journal, second + 1, LARGE_PAYLOAD);
+        journal.ack(range(second, third));
+        assertEquals(2, segmentFiles().size());
+
+        ScanJournal recovered = new ScanJournal(directory, SEGMENT_SIZE, 8);
+        List<Long> expected = new ArrayList<>();
+        for (long seq = 1; seq < second; seq += 2) {
+            expected.add(seq);
+        }
+        assertEquals(expected, replaySeqs(recovered));
+        assertEquals(third, recovered.getLastSeq());
+    }
+
+    @Test
+    public void dropsOldestSegmentBeyondLimit() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 2);
+        long second = appendUntilRotation(journal, 1, LARGE_PAYLOAD);
+        appendUntilRotation(journal, second + 1, LARGE_PAYLOAD);
+        assertEquals(2, segmentFiles().size());
+        assertEquals(second - 1, journal.getStats().get("lost"));
+        assertEquals(second, (long) replaySeqs(journal).get(0));
+    }
+
+    @Test
+    public void newSegmentSkipsIndexOfUnreadableSegment() throws IOException {
+        // 无法映射的分段 (这里是同名目录) 不能被新分段覆盖
+        File unreadable = new File(directory, "journal-00000000000000000000.seg");
+        assertTrue(unreadable.mkdir());
+        try {
+            ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 4);
+            assertTrue(journal.append(1, 1000, "scan", 1, new byte[]{'1'}));
+            assertTrue(unreadable.isDirectory());
+            assertTrue(new File(directory, "journal-00000000000000000001.seg").isFile());
+        } finally {
+            unreadable.delete();
+        }
+    }
+
+    @Test
+    public void rejectsAppendWhenAckCheckpointDoesNotFit() throws IOException {
+        ScanJournal journal = new ScanJournal(directory, SEGMENT_SIZE, 8);
+        // 空payload的扫描填满两个分段，隔一条确认一条，确认状态约3700个区间，超过一个分段的容量
+        long second = appendUntilRotation(journal, 1, null);
+        long third = appendUntilRotation(journal, second + 1, null);
+        List<Long> odd = new ArrayList<>();
+        for (long seq = 1; seq < third; seq += 2) {
+            odd.add(seq);
+        }
+        journal.ack(odd);
+        long seq = third + 1;
+        while (journal.append(seq, 1000, "", 1, null)) {
+            seq++;
+        }
+        assertEquals(1L, journal.getStats().get("checkpointFailed"));
+        assertEquals(3, segmentFiles().size());
+
+        // 确认其余扫描后旧分段被删除，可以继续追加
+        List<Long> even = new ArrayList<>();
+        for (long s = 2; s < third; s += 2) {
+            even.add(s);
+        }
+        journal.ack(even);
+        assertTrue(journal.append(seq, 1000, "", 1, null));
+        assertEquals(2, segmentFiles().size());
+    }
+
+    // 从seq开始追加扫描直到新建分段，返回新分段的第一个序号
+    private long appendUntilRotation(ScanJournal journal, long seq, byte[] payload) {
+        File last = lastSegment();
+        do {
+            assertTrue(journal.append(seq++, 1000, "scan", 1, payload));
+        } while (lastSegment().equals(last));
+        return seq - 1;
+    }
+
+    private File lastSegment() {
+        List<File> files = segmentFiles();
+        return files.get(files.size() - 1);
+    }
+
+    private List<File> segmentFiles() {
+        List<File> files = new ArrayList<>();
+        File[] listed = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        if (listed != null) {
+            Arrays.sort(listed);
+            for (File file : listed) {
+                if (file.isFile()) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static List<Long> replaySeqs(ScanJournal journal) {
+        List<Long> seqs = new ArrayList<>();
+        journal.replay((seq, timestamp, action, codeType, payload) -> seqs.add(seq));
+        return seqs;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> seqs = new ArrayList<>();
+        for (long seq = from; seq <= to; seq++) {
+            seqs.add(seq);
+        }
+        return seqs;
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.grokscanner.scan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 用本地HTTP服务器验证发件箱的上传、重试和重启恢复
+ */
+public class ScanOutboxTest {
+    private static final String DEVICE = "device-1";
+
+    /**
+     * 服务器收到的一次请求
+     */
+    private static final class Request {
+        final String contentEncoding;
+        final String idempotencyKey;
+        final String authorization;
+        final String body;
+
+        Request(String contentEncoding, String idempotencyKey, String authorization, String body) {
+            this.contentEncoding = contentEncoding;
+            this.idempotencyKey = idempotencyKey;
+            this.authorization = authorization;
+            this.body = body;
+        }
+    }
+
+    private HttpServer server;
+    private String endpoint;
+    private File directory;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    // 依次返回的状态码，用完后返回200
+    private final ConcurrentLinkedQueue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final List<ScanOutbox> outboxes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbox").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/scans", exchange -> {
+            byte[] raw = readAll(exchange.getRequestBody());
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            String body = "gzip".equals(encoding)
+                    ? new String(readAll(new GZIPInputStream(new ByteArrayInputStream(raw))), StandardCharsets.UTF_8)
+                    : new String(raw, StandardCharsets.UTF_8);
+            requests.add(new Request(encoding, exchange.getRequestHeaders().getFirst("Idempotency-Key"),
+                    exchange.getRequestHeaders().getFirst("Authorization"), body));
+            Integer status = statuses.poll();
+            exchange.sendResponseHeaders(status != null ? status : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/scans";
+    }
+
+    @After
+    public void tearDown() {
+        for (ScanOutbox outbox : outboxes) {
+            outbox.shutdown();
+        }
+        server.stop(0);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void uploadsGzipBatchWithIdempotencyKey() throws IOException {
+        ScanOutbox outbox = open();
+        outbox.configure(new ScanOutbox.HttpUploader(endpoint, "Bearer token"), 3, 0, 60000);
+        outbox.offer(1, 1000, 3, bytes("A-1"));
+        outbox.offer(2, 1001, 3, bytes("A-\"2\""));
+        outbox.offer(3, 1002, 3, bytes("A-3"));
+
+        await(() -> requests.size() == 1 && unacked(outbox) == 0);
+        Request request = requests.get(0);
+        assertEquals("gzip", request.contentEncoding);
+        assertEquals("Bearer token", request.authorization);
+        assertEquals(DEVICE + "-1-3-1000", request.idempotencyKey);
+        assertTrue(request.body, request.body.startsWith("{\"device\":\"device-1\",\"batch\":\"device-1-1-3-1000\""));
+        assertTrue(request.body, request.body.contains(
+                "{\"id\":\"device-1-1\",\"seq\":1,\"timestamp\":1000,\"codeType\":3,\"data\":\"A-1\"}"));
+        assertTrue(request.body, request.body.contains("\"data\":\"A-\\\"2\\\"\""));
+        assertTrue(request.body, request.body.contains("\"id\":\"device-1-3\""));
+        assertEquals(3L, outbox.getStats().get("uploadedScans"));
+    }
+
+    @Test
+    public void sendsRawBytesOfBinaryPayloads() throws IOException {
+        // 非UTF-8的二进制内容，长度1-4覆盖Base64的各种填充
+        byte[][] binary = {
+            {(byte) 0xff},
+            {(byte) 0x80, 0x00},
+            {0x1b, (byte) 0xc3, (byte) 0x28},
+            {(byte) 0xfe, 0x01, (byte) 0x9d, (byte) 0xe0},
+        };
+        ScanOutbox outbox = open();
+        outbox.configure(new ScanOutbox.HttpUploader(endpoint, null), binary.length + 1, 0, 60000);
+        for (int i = 0; i < binary.length; i++) {
+            outbox.offer(i + 1, 1000, 1, binary[i]);
+        }
+        outbox.offer(binary.length + 1, 1000, 1, bytes("货位-1"));
+
+        await(() -> requests.size() == 1 && unacked(outbox) == 0);
+        String body = requests.get(0).body;
+        Matcher matcher = Pattern.compile("\"seq\":(\\d+),[^}]*\"bytes\":\"([^\"]*)\"").matcher(body);
+        int found = 0;
+        while (matcher.find()) {
+            int seq = Integer.parseInt(matcher.group(1));
+            assertArrayEquals(body, binary[seq - 1], Base64.getDecoder().decode(matcher.group(2)));
+            found++;
+        }
+        assertEquals(body, binary.length, found);
+        // UTF-8文本只有 data
+        assertTrue(body, body.contains("\"data\":\"货位-1\"}"));
+    }
+
+    @Test
+    public void retriesSameBatchAfterServerError() throws IOException {
+        statuses.add(503);
+        ScanOutbox outbox = open();
+        outbox.configure(new ScanOutbox.HttpUploader(endpoint, null), 2, 0, 60000);
+        outbox.offer(1, 1000, 1, bytes("B-1"));
+        outbox.offer(2, 1001, 1, bytes("B-2"));
+
+        await(() -> Long.valueOf(1).equals(outbox.getStats().get("failedUploads")));
+        Map<String, Object> stats = outbox.getStats();
+        assertEquals(1, requests.size());
+        assertEquals(1, stats.get("consecutiveFailures"));
+        long nextRetryMs = (Long) stats.get("nextRetryMs");
+        assertTrue("retry delay " + nextRetryMs, nextRetryMs > 0 && nextRetryMs <= ScanOutbox.BACKOFF_BASE_MS);
+        assertEquals(2, unacked(outbox));
+
+        // 退避结束后原样重发同一批
+        await(() -> requests.size() == 2 && unacked(outbox) == 0);
+        assertEquals(requests.get(0).idempotencyKey, requests.get(1).idempotencyKey);
+        assertEquals(requests.get(0).body, requests.get(1).body);
+        assertEquals(0, outbox.getStats().get("consecutiveFailures"));
+        assertEquals(2L, outbox.getStats().get("uploadedScans"));
+    }
+
+    @Test
+    public void conflictCountsAsDelivered() throws IOException {
+        statuses.add(409);
+        ScanOutbox outbox = open();
+        outbox.configure(new ScanOutbox.HttpUploader(endpoint, null), 1, 0, 60000);
+        outbox.offer(1, 1000, 1, bytes("C-1"));
+
+        await(() -> unacked(outbox) == 0);
+        Map<String, Object> stats = outbox.getStats();
+        assertEquals(409, stats.get("lastStatus"));
+        assertEquals(1L, stats.get("uploadedScans"));
+        assertEquals(0L, stats.get("rejectedScans"));
+        assertEquals(0L, stats.get("failedUploads"));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void rejectedBatchIsDropped() throws IOException {
+        statuses.add(400);
+        ScanOutbox outbox = open();
+        outbox.configure(new ScanOutbox.HttpUploader(endpoint, null), 1, 0, 60000);
+        outbox.offer(1, 1000, 1, bytes("D-1"));
+        outbox.offer(2, 1001, 1, bytes("D-2"));
+
+        await(() -> requests.size() == 2 && unacked(outbox) == 0);
+        assertEquals(1L, outbox.getStats().get("rejectedScans"));
+        assertEquals(1L, outbox.getStats().get("uploadedScans"));
+    }
+
+    @Test
+    public void uploadsJournalledScansAfterRestart() throws IOException {
+        ScanOutbox first = open();
+        // 服务器一直出错，扫描只留在日志中
+        for (int i = 0; i < 10; i++) {
+            statuses.add(503);
+        }
+        first.configure(new ScanOutbox.HttpUploader(endpoint, null), 3, 0, 60000);
+        first.offer(1, 1000, 1, bytes("E-1"));
+        first.offer(2, 1001, 1, bytes("E-2"));
+        first.offer(3, 1002, 1, bytes("E-3"));
+        await(() -> requests.size() == 1);
+        first.shutdown();
+        statuses.clear();
+        requests.clear();
+
+        ScanOutbox second = open();
+        assertEquals(3L, second.getLastSeq());
+        assertEquals(3, second.getStats().get("queued"));
+        assertFalse(second.isEnabled());
+        second.configure(new ScanOutbox.HttpUploader(endpoint, null), 3, 0, 60000);
+
+        await(() -> unacked(second) == 0);
+        String body = requests.get(requests.size() - 1).body;
+        for (int seq = 1; seq <= 3; seq++) {
+            assertTrue(body, body.contains("\"id\":\"device-1-" + seq + "\",\"seq\":" + seq));
+        }
+        assertTrue(body, body.contains("\"data\":\"E-2\""));
+    }
+
+    private ScanOutbox open() throws IOException {
+        ScanOutbox outbox = new ScanOutbox(new ScanJournal(directory, 0, 4), DEVICE);
+        outboxes.add(outbox);
+        return outbox;
+    }
+
+    private static int unacked(ScanOutbox outbox) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> journal = (Map<String, Object>) outbox.getStats().get("journal");
+        return (Integer) journal.get("unacked");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for condition");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
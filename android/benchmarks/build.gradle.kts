@@ -0,0 +1,50 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+// 扫描处理管线的JVM基准测试，直接编译app中不依赖Android的 scan 和 pda 包
+// 运行: ./gradlew :benchmarks:jmh
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include("com/example/grokscanner/scan/**")
+            include("com/example/grokscanner/pda/**")
+            // 原厂SDK封装依赖 android.content.Context
+            exclude("com/example/grokscanner/pda/ReaderManager.java")
+        }
+    }
+    // 离线工具 (如主数据索引生成)，不打包进app
+    create("tools") {
+        java.setSrcDirs(listOf("src/tools/java"))
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output
+    }
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // 每次扫描的分配字节数
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// 由CSV导出生成主数据查找索引
+// 运行: ./gradlew :benchmarks:buildLookupIndex -Pcsv=products.csv -Pindex=lookup.idx
+tasks.register<JavaExec>("buildLookupIndex") {
+    classpath = sourceSets["tools"].runtimeClasspath
+    mainClass.set("com.example.grokscanner.scan.LookupIndexBuilder")
+    args(
+        project.findProperty("csv")?.toString() ?: "products.csv",
+        project.findProperty("index")?.toString() ?: "lookup.idx"
+    )
+}
@@ -0,0 +1,61 @@
+package com.example.grokscanner.benchmark;
+
+import com.example.grokscanner.scan.ScanDelivery;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代替 EventSink 的发送通道，收到扫描后立即确认，使未确认缓冲区保持稳定
+ */
+public class AckingTransport implements ScanDelivery.Transport {
+    // 重复使用的单元素确认列表
+    private final long[] ackSeq = new long[1];
+    private final List<Long> ackList = new AbstractList<Long>() {
+        @Override
+        public Long get(int index) {
+            return ackSeq[0];
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+    };
+    private ScanDelivery delivery;
+    private long sent = 0;
+    private long checksum = 0;
+
+    public void attach(ScanDelivery delivery) {
+        this.delivery = delivery;
+    }
+
+    @Override
+    public boolean sendPrimary(Map<String, Object> scan) {
+        sent++;
+        checksum += scan.size();
+        Object seq = scan.get("seq");
+        if (delivery != null && seq instanceof Long) {
+            ackSeq[0] = (Long) seq;
+            delivery.ack(ackList);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean sendFallback(Map<String, Object> scan) {
+        return sendPrimary(scan);
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * 已发送记录的累计字段数，供基准测试返回以免被优化掉
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+}
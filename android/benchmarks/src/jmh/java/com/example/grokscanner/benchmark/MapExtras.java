@@ -0,0 +1,28 @@
+package com.example.grokscanner.benchmark;
+
+import com.example.grokscanner.scan.ScanExtras;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 以 Map 实现的 ScanExtras，代替 Bundle 在JVM上构造广播附加数据
+ */
+public class MapExtras implements ScanExtras {
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    public MapExtras put(String key, Object value) {
+        values.put(key, value);
+        return this;
+    }
+
+    @Override
+    public Object get(String key) {
+        return values.get(key);
+    }
+
+    @Override
+    public Iterable<String> keys() {
+        return values.keySet();
+    }
+}
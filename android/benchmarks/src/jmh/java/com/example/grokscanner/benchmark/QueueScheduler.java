@@ -0,0 +1,31 @@
+package com.example.grokscanner.benchmark;
+
+import com.example.grokscanner.scan.FrameScheduler;
+
+import java.util.ArrayDeque;
+
+/**
+ * 代替主线程 Handler 的调度器，任务先排队，由基准测试在每次扫描后执行，相当于一帧
+ */
+public class QueueScheduler implements FrameScheduler {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void postFrame(Runnable task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        tasks.add(task);
+    }
+
+    /**
+     * 执行当前已排队的任务，执行期间新加入的任务留到下次
+     */
+    public void runPending() {
+        for (int count = tasks.size(); count > 0; count--) {
+            tasks.poll().run();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.grokscanner.benchmark;
+
+import com.example.grokscanner.pda.CipherLabAdapter;
+import com.example.grokscanner.pda.GeneralString;
+import com.example.grokscanner.pda.GenericAdapter;
+import com.example.grokscanner.scan.DataKeyResolver;
+import com.example.grokscanner.scan.DebugState;
+import com.example.grokscanner.scan.DuplicateFilter;
+import com.example.grokscanner.scan.ExpectedSet;
+import com.example.grokscanner.scan.Gs1Parser;
+import com.example.grokscanner.scan.GtinKey;
+import com.example.grokscanner.scan.LookupIndex;
+import com.example.grokscanner.scan.ScanBatcher;
+import com.example.grokscanner.scan.ScanDelivery;
+import com.example.grokscanner.scan.ScanLog;
+import com.example.grokscanner.scan.ScanMetrics;
+import com.example.grokscanner.scan.ScanPipeline;
+import com.example.grokscanner.scan.ScanRecord;
+import com.example.grokscanner.scan.ScanValidator;
+import com.example.grokscanner.scan.Symbology;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 扫描处理管线基准测试
+ * 每次调用处理一个广播并执行一帧的调度任务 (发送、确认、调试发布)，即一条扫描的完整成本。
+ * 配合 gc profiler 的 gc.alloc.rate.norm 得到每条扫描的分配字节数。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScanPipelineBenchmark {
+    private static final String UNKNOWN_ACTION = "com.unknown.scanner.SCAN";
+    private static final String PROBE_ACTION = "com.unknown.scanner.PROBE_";
+    // 轮换的Action数和数据键数；键数不整除Action数，同一Action再次出现时数据键已变化，每次都要完整探测
+    private static final int PROBE_ACTIONS = 64;
+    private static final int PROBE_KEYS = 3;
+    private static final int LARGE_PAYLOAD_SIZE = 2048;
+    private static final int EXTRA_KEY_COUNT = 24;
+    private static final int PICK_LIST_SIZE = 10000;
+
+    /** 是否启用调试状态 (对应 BuildConfig.SCAN_DEBUG_STATE) */
+    @Param({"false", "true"})
+    public boolean debug;
+
+    /** 条码校验: off / flag */
+    @Param({"off", "flag"})
+    public String validation;
+
+    /** 发送格式: text / bytes */
+    @Param({"text", "bytes"})
+    public String payloadMode;
+
+    private QueueScheduler scheduler;
+    private AckingTransport transport;
+    private ScanPipeline cipherLab;
+    private ScanPipeline generic;
+
+    private MapExtras cipherLabExtras;
+    private MapExtras multiKeyExtras;
+    private MapExtras largeExtras;
+    private MapExtras gs1Extras;
+    private String[] probeActions;
+    private MapExtras[] probeExtras;
+    private int probeCount = 0;
+
+    @Setup
+    public void setUp() {
+        scheduler = new QueueScheduler();
+        transport = new AckingTransport();
+        ScanMetrics metrics = new ScanMetrics();
+        DebugState debugState = new DebugState(debug, scheduler, delta -> { }, DebugState.PUBLISH_PER_FRAME);
+        ScanBatcher batcher = new ScanBatcher(scheduler, batch -> true);
+        ScanDelivery delivery = new ScanDelivery(scheduler, transport, batcher, metrics, ScanDelivery.DEFAULT_CAPACITY);
+        delivery.setPayloadMode(ScanRecord.parsePayloadMode(payloadMode));
+        transport.attach(delivery);
+        // 与生产版本相同的日志级别
+        ScanLog log = new ScanLog(ScanLog.DEFAULT_CAPACITY, ScanLog.INFO);
+        ScanValidator validator = new ScanValidator();
+        validator.setMode(ScanValidator.parseMode(validation));
+        Gs1Parser gs1Parser = new Gs1Parser();
+        gs1Parser.configure(true, new int[] {Symbology.GS1_128, Symbology.DATAMATRIX}, Gs1Parser.DEFAULT_SEPARATOR);
+        // 未安装索引，查找直接跳过
+        LookupIndex lookupIndex = new LookupIndex(new File("build/benchmark-lookup.idx"));
+        // 拣货单: 包含测试用EAN的一万个条码
+        ExpectedSet expectedSet = new ExpectedSet();
+        long[] expected = new long[PICK_LIST_SIZE];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = GtinKey.hash(String.valueOf(4710000000000L + i * 7L).getBytes(StandardCharsets.US_ASCII));
+        }
+        expected[0] = GtinKey.hash("4710088412348".getBytes(StandardCharsets.US_ASCII));
+        expectedSet.load(expected, null, null);
+        ScanPipeline.Listener listener = new ScanPipeline.Listener() {
+            @Override
+            public void onServiceConnected() {
+            }
+
+            @Override
+            public void onNoData() {
+            }
+
+            @Override
+            public void onDecodeResult(boolean decoded) {
+            }
+        };
+
+        cipherLab = new ScanPipeline(new CipherLabAdapter(), debugState, metrics, validator, new DuplicateFilter(), gs1Parser, lookupIndex, expectedSet, delivery, log, listener);
+        DataKeyResolver resolver = new DataKeyResolver("benchmark", GeneralString.COMMON_DATA_KEYS,
+                GeneralString.NON_DATA_KEYS, null);
+        generic = new ScanPipeline(new GenericAdapter(resolver), debugState, metrics, validator, new DuplicateFilter(), gs1Parser, lookupIndex, expectedSet, delivery, log, listener);
+
+        // CipherLab 原厂广播: 文本、原始字节、码制
+        String ean = "4710088412348";
+        cipherLabExtras = new MapExtras()
+                .put(GeneralString.BcReaderData, ean)
+                .put(GeneralString.BcReaderDataArray, ean.getBytes(StandardCharsets.US_ASCII))
+                .put(GeneralString.BcReaderCodeType, 12)
+                .put(GeneralString.BcReaderCodeTypeStr, "EAN-13");
+
+        // 携带大量无关键的广播，数据键已学习
+        multiKeyExtras = new MapExtras();
+        for (int i = 0; i < EXTRA_KEY_COUNT; i++) {
+            multiKeyExtras.put("com.vendor.extra_" + i, i % 2 == 0 ? "value_" + i : (Object) i);
+        }
+        multiKeyExtras.put("barcode_string", ean);
+
+        // 未知Action，数据键每次变化，每个广播都要完整探测
+        probeActions = new String[PROBE_ACTIONS];
+        for (int i = 0; i < probeActions.length; i++) {
+            probeActions[i] = PROBE_ACTION + i;
+        }
+        probeExtras = new MapExtras[PROBE_KEYS];
+        for (int i = 0; i < probeExtras.length; i++) {
+            probeExtras[i] = new MapExtras()
+                    .put("com.vendor.symbology", "CODE128")
+                    .put("com.vendor.length", 13)
+                    .put("com.vendor.payload_" + i, ean);
+        }
+
+        // 大型二维码 (PDF417/DataMatrix) 的二进制内容
+        byte[] large = new byte[LARGE_PAYLOAD_SIZE];
+        new Random(42).nextBytes(large);
+        largeExtras = new MapExtras()
+                .put(GeneralString.BcReaderDataArray, large)
+                .put(GeneralString.BcReaderCodeType, 55)
+                .put(GeneralString.BcReaderCodeTypeStr, "PDF417");
+
+        // GS1-128 物流标签: GTIN、有效期、批号、净重、序列号
+        String gs1 = "]C101047100884123481726123110LOT-4711\u001d3103001250" + "21SN000123456";
+        gs1Extras = new MapExtras()
+                .put(GeneralString.BcReaderData, gs1)
+                .put(GeneralString.BcReaderDataArray, gs1.getBytes(StandardCharsets.US_ASCII))
+                .put(GeneralString.BcReaderCodeTypeStr, "GS1-128");
+    }
+
+    @Benchmark
+    public long cipherLabIntent() {
+        cipherLab.onIntent(GeneralString.Intent_PASS_TO_APP, cipherLabExtras);
+        scheduler.runPending();
+        return transport.getChecksum();
+    }
+
+    @Benchmark
+    public long multiKeyBundle() {
+        generic.onIntent(UNKNOWN_ACTION, multiKeyExtras);
+        scheduler.runPending();
+        return transport.getChecksum();
+    }
+
+    @Benchmark
+    public long unknownActionProbe() {
+        int n = probeCount++ & Integer.MAX_VALUE;
+        generic.onIntent(probeActions[n % PROBE_ACTIONS], probeExtras[n % PROBE_KEYS]);
+        scheduler.runPending();
+        return transport.getChecksum();
+    }
+
+    @Benchmark
+    public long large2dPayload() {
+        cipherLab.onIntent(GeneralString.Intent_PASS_TO_APP, largeExtras);
+        scheduler.runPending();
+        return transport.getChecksum();
+    }
+
+    @Benchmark
+    public long gs1Label() {
+        cipherLab.onIntent(GeneralString.Intent_PASS_TO_APP, gs1Extras);
+        scheduler.runPending();
+        return transport.getChecksum();
+    }
+}
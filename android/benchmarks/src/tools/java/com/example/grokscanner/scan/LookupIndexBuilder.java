@@ -0,0 +1,221 @@
+package com.example.grokscanner.scan;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 由CSV导出生成 {@link LookupIndex} 文件，离线运行
+ * 第一行为表头，第一列为查找键 (条码内容)，其余列为字段；键按 {@link GtinKey} 规范化 (GTIN补0到14位)，
+ * 规范化后重复时保留第一条。
+ * 运行: ./gradlew :benchmarks:buildLookupIndex -Pcsv=products.csv -Pindex=lookup.idx
+ */
+public class LookupIndexBuilder {
+    private static final class Row {
+        final long hash;
+        final byte[] key;
+        final byte[][] fields;
+
+        Row(byte[] key, byte[][] fields) {
+            this.hash = DuplicateFilter.hash(key);
+            this.key = key;
+            this.fields = fields;
+        }
+    }
+
+    private int duplicateCount = 0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: LookupIndexBuilder <input.csv> <output.idx>");
+            System.exit(2);
+        }
+        LookupIndexBuilder builder = new LookupIndexBuilder();
+        int count;
+        try (Reader in = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            count = builder.build(in, new File(args[1]));
+        }
+        System.out.println("Wrote " + count + " records to " + args[1]
+                + " (" + builder.getDuplicateCount() + " duplicate keys skipped)");
+    }
+
+    /**
+     * 读取CSV并写出索引文件
+     * @param csv UTF-8 CSV
+     * @param output 索引文件，先写入临时文件再重命名
+     * @return 记录数
+     */
+    public int build(Reader csv, File output) throws IOException {
+        BufferedReader reader = new BufferedReader(csv);
+        List<String> header = readRow(reader);
+        if (header == null || header.isEmpty()) {
+            throw new IOException("CSV header missing");
+        }
+        int fieldCount = header.size() - 1;
+        List<Row> rows = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        List<String> values;
+        while ((values = readRow(reader)) != null) {
+            if (values.isEmpty() || values.get(0).isEmpty()) {
+                continue;
+            }
+            byte[] key = GtinKey.normalize(values.get(0).getBytes(StandardCharsets.UTF_8));
+            if (!keys.add(new String(key, StandardCharsets.UTF_8))) {
+                duplicateCount++;
+                continue;
+            }
+            byte[][] fields = new byte[fieldCount][];
+            for (int i = 0; i < fieldCount; i++) {
+                String value = i + 1 < values.size() ? values.get(i + 1) : "";
+                fields[i] = value.getBytes(StandardCharsets.UTF_8);
+            }
+            rows.add(new Row(key, fields));
+        }
+        // 按哈希排序，哈希相同时按键排序，与 LookupIndex.Table#find 的二分查找一致
+        Row[] sorted = rows.toArray(new Row[0]);
+        Arrays.sort(sorted, (a, b) -> {
+            int byHash = Long.compare(a.hash, b.hash);
+            return byHash != 0 ? byHash : compareKeys(a.key, b.key);
+        });
+        write(header.subList(1, header.size()), sorted, output);
+        return sorted.length;
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    private static void write(List<String> fieldNames, Row[] rows, File output) throws IOException {
+        int fieldCount = fieldNames.size();
+        int stride = LookupIndex.RECORD_FIXED_SIZE + fieldCount * LookupIndex.FIELD_ENTRY_SIZE;
+
+        ByteArrayOutputStream namesBytes = new ByteArrayOutputStream();
+        DataOutputStream names = new DataOutputStream(namesBytes);
+        for (String name : fieldNames) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            names.writeShort(bytes.length);
+            names.write(bytes);
+        }
+        int recordsOffset = LookupIndex.HEADER_SIZE + namesBytes.size();
+        long poolOffset = recordsOffset + (long) rows.length * stride;
+
+        // 字符串池: 逐条记录依次为键和各字段
+        long poolSize = 0;
+        for (Row row : rows) {
+            poolSize += row.key.length;
+            for (byte[] field : row.fields) {
+                poolSize += field.length;
+            }
+        }
+        if (poolOffset + poolSize > Integer.MAX_VALUE) {
+            throw new IOException("Lookup index too large");
+        }
+
+        File temp = new File(output.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.writeInt(LookupIndex.MAGIC);
+            out.writeInt(LookupIndex.VERSION);
+            out.writeInt(rows.length);
+            out.writeInt(fieldCount);
+            out.writeInt(stride);
+            out.writeInt(recordsOffset);
+            out.writeInt((int) poolOffset);
+            out.writeInt((int) poolSize);
+            namesBytes.writeTo(out);
+            int offset = 0;
+            for (Row row : rows) {
+                out.writeLong(row.hash);
+                out.writeInt(offset);
+                out.writeInt(row.key.length);
+                offset += row.key.length;
+                for (byte[] field : row.fields) {
+                    out.writeInt(offset);
+                    out.writeInt(field.length);
+                    offset += field.length;
+                }
+            }
+            for (Row row : rows) {
+                out.write(row.key);
+                for (byte[] field : row.fields) {
+                    out.write(field);
+                }
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Cannot write lookup index: " + output);
+        }
+    }
+
+    private static int compareKeys(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    // 读取一行CSV，支持双引号包裹的字段、转义的双引号和字段内换行；文件结束时返回null
+    private static List<String> readRow(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (c >= 0) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        value.append('"');
+                    } else {
+                        quoted = false;
+                        if (next >= 0) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+        values.add(value.toString());
+        // 去掉UTF-8 BOM
+        if (!values.isEmpty() && values.get(0).startsWith("\uFEFF")) {
+            values.set(0, values.get(0).substring(1));
+        }
+        return values;
+    }
+}
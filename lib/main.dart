@@ -1,7 +1,9 @@
 import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
 import 'dart:async';
+import 'dart:collection';
 import 'dart:convert';
+import 'dart:typed_data';
 
 void main() {
   runApp(const MyApp());
@@ -37,6 +39,13 @@ class _ScannerPageState extends State<ScannerPage> {
     'com.cympotek.grokscanner/scan_channel',
   );
   StreamSubscription? _scanSubscription;
+
+  // 掃描序號確認: 按序號去重，並批量回報給原生端
+  static const int _maxSeenScanSeqs = 2048;
+  final Set<int> _seenScanSeqs = <int>{};
+  final Queue<int> _seenScanOrder = Queue<int>();
+  final List<int> _pendingScanAcks = <int>[];
+  bool _ackScheduled = false;
   // ------------------------
 
   // --- 調試信息相關 ---
@@ -86,23 +95,27 @@ class _ScannerPageState extends State<ScannerPage> {
   void _setupDebugChannel() {
     // 設置方法調用處理器
     _debugChannel.setMethodCallHandler((call) async {
-      if (call.method == 'debugInfoUpdated') {
+      if (call.method == 'debugInfoDelta') {
+        // 原生端只推送變化的項目，合併到現有調試信息中
         if (mounted) {
           setState(() {
-            _debugInfo = Map<String, dynamic>.from(call.arguments);
-            print('調試信息更新: ${_debugInfo.length} 項');
+            _debugInfo.addAll(Map<String, dynamic>.from(call.arguments));
+            print('調試信息更新: ${call.arguments.length} 項變化');
           });
         }
         return null;
       } else if (call.method == 'directDataReceived') {
-        // 直接從 MethodChannel 接收掃描數據（作為 EventChannel 的備用方案）
-        if (mounted && call.arguments is String) {
-          final String scannedData = call.arguments.trim();
-          print("來自 MethodChannel 的掃描數據: $scannedData");
-          setState(() {
-            _scannValue = scannedData;
-            _message = '掃描成功 (通過 MethodChannel): $scannedData';
-          });
+        // EventChannel 未確認時，原生端通過 MethodChannel 重發（帶序號，重複的會被忽略）
+        if (call.arguments is Map) {
+          final values = _acceptScans([call.arguments]);
+          if (mounted && values.isNotEmpty) {
+            final String scannedData = values.last.trim();
+            print("來自 MethodChannel 的掃描數據: $scannedData");
+            setState(() {
+              _scannValue = scannedData;
+              _message = '掃描成功 (通過 MethodChannel): $scannedData';
+            });
+          }
         }
         return null;
       }
@@ -130,15 +143,77 @@ class _ScannerPageState extends State<ScannerPage> {
 
   // --- Intent 數據處理 ---
   void _onScanReceived(dynamic data) {
-    if (mounted && data is String && data.isNotEmpty) {
+    if (data is List || data is Map) {
+      // 每項包含 seq、timestamp 和 data；批量模式下為按序號排列的列表
+      final values = _acceptScans(data is List ? data : [data]);
+      if (values.isEmpty) return;
+      print("來自 Intent 的掃描數據: ${values.length} 筆");
+      _showScannedData(values.last.trim(), batchSize: values.length);
+    } else if (data is String && data.isNotEmpty) {
       final String scannedData = data.trim();
       print("來自 Intent 的掃描數據: $scannedData");
+      _showScannedData(scannedData);
+    }
+  }
+
+  // 確認收到的掃描並去除重複，返回首次收到的數據
+  List<String> _acceptScans(List<dynamic> entries) {
+    final values = <String>[];
+    for (final entry in entries.whereType<Map>()) {
+      final seq = entry['seq'];
+      final value = _scanText(entry);
+      if (seq is int) {
+        _pendingScanAcks.add(seq);
+        if (!_seenScanSeqs.add(seq)) continue;
+        _seenScanOrder.addLast(seq);
+        if (_seenScanOrder.length > _maxSeenScanSeqs) {
+          _seenScanSeqs.remove(_seenScanOrder.removeFirst());
+        }
+      }
+      // 負載測試的合成掃描只確認，不當作業務數據顯示
+      if (entry['synthetic'] != null) continue;
+      if (value is String && value.isNotEmpty) {
+        values.add(value);
+      }
+    }
+    if (_pendingScanAcks.isNotEmpty && !_ackScheduled) {
+      _ackScheduled = true;
+      scheduleMicrotask(_flushScanAcks);
+    }
+    return values;
+  }
+
+  // 取出掃描文本；原生端只發送原始字節 (Uint8List) 時按 UTF-8 解碼
+  String? _scanText(Map entry) {
+    final data = entry['data'];
+    if (data is String) return data;
+    final bytes = entry['bytes'];
+    if (bytes is Uint8List) return utf8.decode(bytes, allowMalformed: true);
+    return null;
+  }
+
+  Future<void> _flushScanAcks() async {
+    _ackScheduled = false;
+    if (_pendingScanAcks.isEmpty) return;
+    final seqs = List<int>.from(_pendingScanAcks);
+    _pendingScanAcks.clear();
+    try {
+      await _debugChannel.invokeMethod('ackScans', {'seqs': seqs});
+    } catch (e) {
+      print('掃描確認錯誤: $e');
+    }
+  }
+
+  void _showScannedData(String scannedData, {int batchSize = 1}) {
+    if (mounted) {
       setState(() {
         _scannValue = scannedData;
         // Intent 模式下，通常不需要將掃描結果填入 TextField，
         // 但如果需要也可以取消下面這行的註解
         // _controller.text = scannedData;
-        _message = '掃描成功: $scannedData';
+        _message = batchSize > 1
+            ? '掃描成功 ($batchSize 筆): $scannedData'
+            : '掃描成功: $scannedData';
         // 掃描成功後可以清空 TextField 以便下次手動輸入 (如果允許的話)
         _controller.clear();
       });
@@ -476,6 +551,22 @@ class _ScannerPageState extends State<ScannerPage> {
                       },
                       child: const Text('檢查Intent配置'),
                     ),
+                    const SizedBox(width: 10),
+                    ElevatedButton(
+                      onPressed: () async {
+                        try {
+                          final result = await _debugChannel.invokeMethod('getMetrics');
+                          if (mounted) {
+                            setState(() {
+                              _debugInfo['metrics'] = result;
+                            });
+                          }
+                        } catch (e) {
+                          print('獲取延遲統計錯誤: $e');
+                        }
+                      },
+                      child: const Text('延遲統計'),
+                    ),
                   ],
                 ),
                 const SizedBox(height: 10),